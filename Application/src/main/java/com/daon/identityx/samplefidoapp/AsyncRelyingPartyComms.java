@@ -0,0 +1,261 @@
+/*
+* Copyright Daon.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.daon.identityx.samplefidoapp;
+
+import com.daon.identityx.comms.CommsExecutors;
+import com.daon.identityx.controller.model.CreateAccount;
+import com.daon.identityx.controller.model.CreateAccountResponse;
+import com.daon.identityx.controller.model.CreateAuthRequestResponse;
+import com.daon.identityx.controller.model.CreateAuthenticator;
+import com.daon.identityx.controller.model.CreateAuthenticatorResponse;
+import com.daon.identityx.controller.model.CreateRegRequestResponse;
+import com.daon.identityx.controller.model.CreateSession;
+import com.daon.identityx.controller.model.CreateSessionResponse;
+import com.daon.identityx.controller.model.CreateTransactionAuthRequest;
+import com.daon.identityx.controller.model.DeleteAccountResponse;
+import com.daon.identityx.controller.model.GetAuthenticatorResponse;
+import com.daon.identityx.controller.model.ListAuthenticatorsResponse;
+import com.daon.identityx.controller.model.ValidateTransactionAuth;
+import com.daon.identityx.controller.model.ValidateTransactionAuthResponse;
+import com.daon.identityx.exception.CommunicationsException;
+import com.daon.identityx.exception.ServerError;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/***
+ * Implementation of {@link IAsyncRelyingPartyComms} which runs the calls of a blocking
+ * {@link IRelyingPartyComms} on a dedicated, bounded I/O executor.
+ *
+ * Cancelling a future stops a call which is still queued from being made.  A call which is
+ * already in progress is interrupted but the blocking network I/O may still run to completion,
+ * in which case its result is discarded.
+ *
+ * Created by Daon
+ */
+public class AsyncRelyingPartyComms implements IAsyncRelyingPartyComms {
+
+    private final IRelyingPartyComms relyingPartyComms;
+    private final ListeningExecutorService executor;
+
+    public AsyncRelyingPartyComms(IRelyingPartyComms relyingPartyComms) {
+        this(relyingPartyComms, CommsExecutors.newIoExecutor());
+    }
+
+    public AsyncRelyingPartyComms(IRelyingPartyComms relyingPartyComms, ListeningExecutorService executor) {
+        this.relyingPartyComms = relyingPartyComms;
+        this.executor = executor;
+    }
+
+    public IRelyingPartyComms getRelyingPartyComms() {
+        return relyingPartyComms;
+    }
+
+    public ListeningExecutorService getExecutor() {
+        return executor;
+    }
+
+    @Override
+    public ListenableFuture<CreateAccountResponse> createAccount(final CreateAccount createAccount) {
+        return this.submit(new Callable<CreateAccountResponse>() {
+            @Override
+            public CreateAccountResponse call() {
+                return relyingPartyComms.createAccount(createAccount);
+            }
+        });
+    }
+
+    @Override
+    public ListenableFuture<CreateSessionResponse> createSession(final CreateSession createSession) {
+        return this.submit(new Callable<CreateSessionResponse>() {
+            @Override
+            public CreateSessionResponse call() {
+                return relyingPartyComms.createSession(createSession);
+            }
+        });
+    }
+
+    @Override
+    public ListenableFuture<CreateAuthRequestResponse> createAuthRequest() {
+        return this.submit(new Callable<CreateAuthRequestResponse>() {
+            @Override
+            public CreateAuthRequestResponse call() {
+                return relyingPartyComms.createAuthRequest();
+            }
+        });
+    }
+
+    @Override
+    public ListenableFuture<Void> deleteSession(final String sessionId) {
+        return this.submit(new Callable<Void>() {
+            @Override
+            public Void call() {
+                relyingPartyComms.deleteSession(sessionId);
+                return null;
+            }
+        });
+    }
+
+    @Override
+    public ListenableFuture<DeleteAccountResponse> deleteAccount(final String sessionId) {
+        return this.submit(new Callable<DeleteAccountResponse>() {
+            @Override
+            public DeleteAccountResponse call() {
+                return relyingPartyComms.deleteAccount(sessionId);
+            }
+        });
+    }
+
+    @Override
+    public ListenableFuture<CreateAuthRequestResponse> createTransactionAuthRequest(final CreateTransactionAuthRequest createTransactionAuthRequest) {
+        return this.submit(new Callable<CreateAuthRequestResponse>() {
+            @Override
+            public CreateAuthRequestResponse call() {
+                return relyingPartyComms.createTransactionAuthRequest(createTransactionAuthRequest);
+            }
+        });
+    }
+
+    @Override
+    public ListenableFuture<ValidateTransactionAuthResponse> validateTransactionAuthRequest(final ValidateTransactionAuth validateTransactionAuth) {
+        return this.submit(new Callable<ValidateTransactionAuthResponse>() {
+            @Override
+            public ValidateTransactionAuthResponse call() {
+                return relyingPartyComms.validateTransactionAuthRequest(validateTransactionAuth);
+            }
+        });
+    }
+
+    @Override
+    public ListenableFuture<CreateRegRequestResponse> createRegRequest() {
+        return this.submit(new Callable<CreateRegRequestResponse>() {
+            @Override
+            public CreateRegRequestResponse call() {
+                return relyingPartyComms.createRegRequest();
+            }
+        });
+    }
+
+    @Override
+    public ListenableFuture<CreateAuthenticatorResponse> createAuthenticator(final CreateAuthenticator createAuthenticator) {
+        return this.submit(new Callable<CreateAuthenticatorResponse>() {
+            @Override
+            public CreateAuthenticatorResponse call() {
+                return relyingPartyComms.createAuthenticator(createAuthenticator);
+            }
+        });
+    }
+
+    @Override
+    public ListenableFuture<ListAuthenticatorsResponse> listAuthenticators() {
+        return this.submit(new Callable<ListAuthenticatorsResponse>() {
+            @Override
+            public ListAuthenticatorsResponse call() {
+                return relyingPartyComms.listAuthenticators();
+            }
+        });
+    }
+
+    @Override
+    public ListenableFuture<GetAuthenticatorResponse> getAuthenticator(final String authenticatorId) {
+        return this.submit(new Callable<GetAuthenticatorResponse>() {
+            @Override
+            public GetAuthenticatorResponse call() {
+                return relyingPartyComms.getAuthenticator(authenticatorId);
+            }
+        });
+    }
+
+    @Override
+    public ListenableFuture<ListAuthenticatorsResponse> listAuthenticatorSummaries() {
+        return this.submit(new Callable<ListAuthenticatorsResponse>() {
+            @Override
+            public ListAuthenticatorsResponse call() {
+                return relyingPartyComms.listAuthenticatorSummaries();
+            }
+        });
+    }
+
+    @Override
+    public ListenableFuture<String> getAuthenticatorIcon(final String authenticatorId) {
+        return this.submit(new Callable<String>() {
+            @Override
+            public String call() {
+                return relyingPartyComms.getAuthenticatorIcon(authenticatorId);
+            }
+        });
+    }
+
+    @Override
+    public ListenableFuture<String> deleteAuthenticator(final String authenticatorId) {
+        return this.submit(new Callable<String>() {
+            @Override
+            public String call() {
+                return relyingPartyComms.deleteAuthenticator(authenticatorId);
+            }
+        });
+    }
+
+    @Override
+    public ListenableFuture<Boolean> prewarm() {
+        return this.submit(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return relyingPartyComms.prewarm();
+            }
+        });
+    }
+
+    @Override
+    public <T> void addCallback(ListenableFuture<T> future, final FutureCallback<ServerOperationResult<T>> callback,
+                                Executor executor) {
+        Futures.addCallback(future, new FutureCallback<T>() {
+            @Override
+            public void onSuccess(T response) {
+                callback.onSuccess(new ServerOperationResult<>(response));
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                if (t instanceof ServerError) {
+                    callback.onSuccess(new ServerOperationResult<T>(((ServerError) t).getError()));
+                } else if (t instanceof CommunicationsException) {
+                    callback.onSuccess(new ServerOperationResult<T>(((CommunicationsException) t).getError()));
+                } else {
+                    callback.onFailure(t);
+                }
+            }
+        }, executor);
+    }
+
+    /***
+     * Submit the call to the executor.  If the executor is saturated the call is not queued and
+     * the returned future fails with the RejectedExecutionException.
+     */
+    protected <T> ListenableFuture<T> submit(Callable<T> call) {
+        try {
+            return executor.submit(call);
+        } catch (RejectedExecutionException e) {
+            return Futures.immediateFailedFuture(e);
+        }
+    }
+}
@@ -0,0 +1,283 @@
+/*
+* Copyright Daon.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.daon.identityx.samplefidoapp;
+
+import com.daon.identityx.controller.model.CreateAuthRequestResponse;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/***
+ * A small pool of FIDO authentication requests fetched from the server ahead of time, so that
+ * the authentication intent can be sent to the FIDO client as soon as the user asks to log in.
+ *
+ * Each request carries a server challenge which is only valid for a limited time.  A pooled
+ * request is considered stale once it is older than the time to live less the refresh margin; stale
+ * requests are dropped and replaced while the pool is started.  A request is only ever handed out
+ * once.
+ *
+ * Created by Daon
+ */
+public class AuthRequestPool {
+
+    public static final int DEFAULT_CAPACITY = 2;
+    public static final long DEFAULT_TIME_TO_LIVE = 2 * 60 * 1000;
+    public static final long DEFAULT_REFRESH_MARGIN = 20 * 1000;
+
+    private final IAsyncRelyingPartyComms relyingPartyComms;
+    private final int capacity;
+    private final long timeToLive;
+    private final long refreshMargin;
+    private final ScheduledExecutorService scheduler;
+
+    private final Deque<Entry> entries = new ArrayDeque<>();
+    private int pendingFetches;
+    // Incremented by clear() so that requests still being fetched from the old server are dropped
+    private int generation;
+    private boolean started;
+    private ScheduledFuture<?> refreshTask;
+
+    private long hits;
+    private long misses;
+    private long expired;
+    private long fetchFailures;
+
+    public AuthRequestPool(IAsyncRelyingPartyComms relyingPartyComms) {
+        this(relyingPartyComms, DEFAULT_CAPACITY, DEFAULT_TIME_TO_LIVE, DEFAULT_REFRESH_MARGIN);
+    }
+
+    /***
+     * @param relyingPartyComms - used to fetch the authentication requests
+     * @param capacity - the number of requests to hold
+     * @param timeToLive - the time in milliseconds for which the server accepts a request
+     * @param refreshMargin - how long in milliseconds before it expires that a request is replaced
+     */
+    public AuthRequestPool(IAsyncRelyingPartyComms relyingPartyComms, int capacity, long timeToLive, long refreshMargin) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity < 1: " + capacity);
+        }
+        if (refreshMargin < 0 || refreshMargin >= timeToLive) {
+            throw new IllegalArgumentException("refreshMargin must be between 0 and timeToLive");
+        }
+        this.relyingPartyComms = relyingPartyComms;
+        this.capacity = capacity;
+        this.timeToLive = timeToLive;
+        this.refreshMargin = refreshMargin;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("auth-request-pool").setDaemon(true).build());
+    }
+
+    /***
+     * Start filling the pool and keep it filled with fresh requests until {@link #stop()} is called.
+     */
+    public synchronized void start() {
+        started = true;
+        this.refresh();
+    }
+
+    /***
+     * Stop fetching requests.  Requests already in the pool are kept until they go stale.
+     */
+    public synchronized void stop() {
+        started = false;
+        if (refreshTask != null) {
+            refreshTask.cancel(false);
+            refreshTask = null;
+        }
+    }
+
+    /***
+     * Take a fresh request from the pool.  If the pool is started it is topped up in the background.
+     *
+     * @return a fresh authentication request or null if there are none available
+     */
+    public synchronized CreateAuthRequestResponse take() {
+        this.removeStaleEntries(System.currentTimeMillis());
+        Entry entry = entries.pollFirst();
+        if (entry == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        if (started) {
+            this.fill();
+        }
+        return entry == null ? null : entry.response;
+    }
+
+    /***
+     * Drop all pooled requests, and those still being fetched, e.g. when the server settings change.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        generation++;
+        pendingFetches = 0;
+        if (started) {
+            this.refresh();
+        }
+    }
+
+    public synchronized Stats getStats() {
+        return new Stats(hits, misses, expired, fetchFailures, entries.size());
+    }
+
+    private synchronized void refresh() {
+        if (!started) {
+            return;
+        }
+        this.removeStaleEntries(System.currentTimeMillis());
+        this.fill();
+        this.scheduleRefresh();
+    }
+
+    private void fill() {
+        // Work out the shortfall up front as a rejected call fails, and calls back, immediately
+        int required = capacity - entries.size() - pendingFetches;
+        for (int i = 0; i < required; i++) {
+            pendingFetches++;
+            // The challenge may have been created at any point during the call so its age is
+            // measured from when the call started
+            final long fetchStarted = System.currentTimeMillis();
+            final int fetchGeneration = generation;
+            Futures.addCallback(relyingPartyComms.createAuthRequest(), new FutureCallback<CreateAuthRequestResponse>() {
+                @Override
+                public void onSuccess(CreateAuthRequestResponse response) {
+                    onFetched(response, fetchStarted, fetchGeneration);
+                }
+
+                @Override
+                public void onFailure(Throwable t) {
+                    onFetched(null, fetchStarted, fetchGeneration);
+                }
+            }, MoreExecutors.directExecutor());
+        }
+    }
+
+    private synchronized void onFetched(CreateAuthRequestResponse response, long fetchStarted, int fetchGeneration) {
+        if (fetchGeneration != generation) {
+            // Fetched before the pool was cleared - the request may be from another server
+            return;
+        }
+        pendingFetches--;
+        if (response == null) {
+            // Do not retry straight away - the next refresh or take will try again
+            fetchFailures++;
+            return;
+        }
+        entries.addLast(new Entry(response, fetchStarted + timeToLive - refreshMargin));
+        this.scheduleRefresh();
+    }
+
+    private void scheduleRefresh() {
+        if (!started) {
+            return;
+        }
+        long delay = fetchFailures > 0 && entries.isEmpty() ? refreshMargin : timeToLive - refreshMargin;
+        Entry oldest = entries.peekFirst();
+        if (oldest != null) {
+            delay = Math.max(0, oldest.staleAt - System.currentTimeMillis());
+        }
+        if (refreshTask != null) {
+            if (refreshTask.getDelay(TimeUnit.MILLISECONDS) <= delay) {
+                return;
+            }
+            refreshTask.cancel(false);
+        }
+        refreshTask = scheduler.schedule(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (AuthRequestPool.this) {
+                    refreshTask = null;
+                    refresh();
+                }
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private void removeStaleEntries(long now) {
+        Iterator<Entry> iterator = entries.iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().staleAt <= now) {
+                iterator.remove();
+                expired++;
+            }
+        }
+    }
+
+    private static class Entry {
+        final CreateAuthRequestResponse response;
+        final long staleAt;
+
+        Entry(CreateAuthRequestResponse response, long staleAt) {
+            this.response = response;
+            this.staleAt = staleAt;
+        }
+    }
+
+    /**
+     * Snapshot of the pool counters
+     */
+    public static class Stats {
+        private final long hits;
+        private final long misses;
+        private final long expired;
+        private final long fetchFailures;
+        private final int size;
+
+        Stats(long hits, long misses, long expired, long fetchFailures, int size) {
+            this.hits = hits;
+            this.misses = misses;
+            this.expired = expired;
+            this.fetchFailures = fetchFailures;
+            this.size = size;
+        }
+
+        public long getHits() {
+            return hits;
+        }
+
+        public long getMisses() {
+            return misses;
+        }
+
+        public long getExpired() {
+            return expired;
+        }
+
+        public long getFetchFailures() {
+            return fetchFailures;
+        }
+
+        public int getSize() {
+            return size;
+        }
+
+        public String toString() {
+            return "Hits: " + hits + " Misses: " + misses + " Expired: " + expired
+                    + " Fetch failures: " + fetchFailures + " Size: " + size;
+        }
+    }
+}
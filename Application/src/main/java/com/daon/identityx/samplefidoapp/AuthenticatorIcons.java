@@ -0,0 +1,192 @@
+/*
+* Copyright Daon.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.daon.identityx.samplefidoapp;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.util.Log;
+import android.util.LruCache;
+
+import com.daon.identityx.controller.model.AuthenticatorInfo;
+import com.daon.identityx.utils.Base64Codec;
+import com.google.common.util.concurrent.FutureCallback;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+/***
+ * The decoded icons of the authenticators, keyed by AAID as every authenticator of the same model
+ * has the same icon.
+ *
+ * The authenticator list is fetched without icons, so an icon which is not cached is fetched
+ * from the server the first time an authenticator with that AAID is shown.  Only one fetch is
+ * made per AAID at a time, and an AAID whose fetch returned no usable icon is not fetched again
+ * until {@link #forgetMissingIcons()} is called.
+ *
+ * Must only be used from the main thread.
+ *
+ * Created by Daon
+ */
+public class AuthenticatorIcons {
+
+    public static final int DEFAULT_MAX_SIZE = 512 * 1024;
+
+    private static final String DATA_URL_SCHEME = "data:";
+
+    /**
+     * Told when an icon has been fetched so that the views showing it can be redrawn
+     */
+    public interface Listener {
+        void onIconLoaded(String aaid);
+    }
+
+    private final LruCache<String, Bitmap> icons;
+    private final Set<String> pendingFetches = new HashSet<>();
+    // The AAIDs for which there is no icon, or none which could be decoded
+    private final Set<String> missingIcons = new HashSet<>();
+
+    public AuthenticatorIcons() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    /***
+     * @param maxSize - the maximum number of bytes of decoded icons to keep
+     */
+    public AuthenticatorIcons(int maxSize) {
+        this.icons = new LruCache<String, Bitmap>(maxSize) {
+            @Override
+            protected int sizeOf(String aaid, Bitmap icon) {
+                return icon.getByteCount();
+            }
+        };
+    }
+
+    /***
+     * Returns the icon of the authenticator, decoding and caching it if the authenticator was
+     * fetched with its icon.
+     *
+     * @param authenticatorInfo - the authenticator
+     * @return the icon or null if it has not been fetched
+     */
+    public Bitmap get(AuthenticatorInfo authenticatorInfo) {
+        Bitmap icon = icons.get(authenticatorInfo.getAaid());
+        if (icon == null && authenticatorInfo.getIcon() != null && !missingIcons.contains(authenticatorInfo.getAaid())) {
+            icon = this.put(authenticatorInfo.getAaid(), authenticatorInfo.getIcon());
+        }
+        return icon;
+    }
+
+    /***
+     * Fetch the icon of the authenticator unless it is cached, already being fetched or known to
+     * be missing
+     *
+     * @param relyingPartyComms - used to fetch the icon
+     * @param authenticatorInfo - the authenticator
+     * @param mainThreadExecutor - runs the listener on the main thread
+     * @param listener - told when the icon has been fetched
+     */
+    public void fetch(IAsyncRelyingPartyComms relyingPartyComms, AuthenticatorInfo authenticatorInfo,
+                      Executor mainThreadExecutor, final Listener listener) {
+
+        final String aaid = authenticatorInfo.getAaid();
+        if (icons.get(aaid) != null || missingIcons.contains(aaid) || !pendingFetches.add(aaid)) {
+            return;
+        }
+        relyingPartyComms.addCallback(relyingPartyComms.getAuthenticatorIcon(authenticatorInfo.getId()),
+                new FutureCallback<ServerOperationResult<String>>() {
+                    @Override
+                    public void onSuccess(ServerOperationResult<String> result) {
+                        pendingFetches.remove(aaid);
+                        if (result.isSuccessful() && result.getResponse() != null
+                                && put(aaid, result.getResponse()) != null) {
+                            listener.onIconLoaded(aaid);
+                        } else {
+                            missingIcons.add(aaid);
+                        }
+                    }
+
+                    @Override
+                    public void onFailure(Throwable t) {
+                        pendingFetches.remove(aaid);
+                        missingIcons.add(aaid);
+                        Log.w(LogUtils.TAG, "Unable to fetch the icon of " + aaid, t);
+                    }
+                }, mainThreadExecutor);
+    }
+
+    public void clear() {
+        icons.evictAll();
+        missingIcons.clear();
+    }
+
+    /***
+     * Allow the icons which could not be fetched to be fetched again, e.g. when the screen showing
+     * them is opened again.
+     */
+    public void forgetMissingIcons() {
+        missingIcons.clear();
+    }
+
+    private Bitmap put(String aaid, String encodedIcon) {
+        // The icon may be a data URL, data:image/png;base64,..., which is decoded in place
+        int start = encodedIcon.startsWith(DATA_URL_SCHEME) ? encodedIcon.indexOf(',') + 1 : 0;
+        CharSequence base64 = removeWhitespace(encodedIcon, start);
+        if (base64 != encodedIcon) {
+            start = 0;
+        }
+        byte[] bytes;
+        try {
+            bytes = new byte[Base64Codec.STANDARD.decodedLength(base64, start, base64.length())];
+            Base64Codec.STANDARD.decode(base64, start, base64.length(), bytes, 0);
+        } catch (IllegalArgumentException e) {
+            Log.w(LogUtils.TAG, "Invalid icon of " + aaid, e);
+            missingIcons.add(aaid);
+            return null;
+        }
+        Bitmap icon = BitmapFactory.decodeByteArray(bytes, 0, bytes.length);
+        if (icon != null) {
+            icons.put(aaid, icon);
+        } else {
+            missingIcons.add(aaid);
+        }
+        return icon;
+    }
+
+    /***
+     * Icons encoded as MIME base64, e.g. with android.util.Base64.DEFAULT, are broken into lines of
+     * 76 characters, which the decoder does not accept.
+     *
+     * @param encodedIcon - the encoded icon
+     * @param start - the index of the base64 in the icon
+     * @return the icon itself if it has no whitespace after start, otherwise the base64 without it
+     */
+    private static CharSequence removeWhitespace(String encodedIcon, int start) {
+        StringBuilder base64 = null;
+        for (int i = start; i < encodedIcon.length(); i++) {
+            char c = encodedIcon.charAt(i);
+            boolean whitespace = c == '\n' || c == '\r' || c == ' ' || c == '\t';
+            if (whitespace && base64 == null) {
+                base64 = new StringBuilder(encodedIcon.length() - start);
+                base64.append(encodedIcon, start, i);
+            } else if (!whitespace && base64 != null) {
+                base64.append(c);
+            }
+        }
+        return base64 != null ? base64 : encodedIcon;
+    }
+}
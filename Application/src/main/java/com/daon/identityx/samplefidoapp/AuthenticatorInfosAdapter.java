@@ -18,8 +18,6 @@ package com.daon.identityx.samplefidoapp;
 
 import android.content.Context;
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
-import android.util.Base64;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -30,13 +28,31 @@ import android.widget.TextView;
 import com.daon.identityx.controller.model.AuthenticatorInfo;
 
 import java.text.DateFormat;
+import java.util.concurrent.Executor;
 
 /**
  * A layout item used in the creation of the list of authenticators
+ *
+ * The icons come from the {@link AuthenticatorIcons} cache; an icon which is not cached is
+ * fetched and the list is redrawn once it arrives.
  */
-public class AuthenticatorInfosAdapter extends ArrayAdapter<AuthenticatorInfo> {
-    public AuthenticatorInfosAdapter(Context context, AuthenticatorInfo[] authenticatorInfos) {
+public class AuthenticatorInfosAdapter extends ArrayAdapter<AuthenticatorInfo> implements AuthenticatorIcons.Listener {
+
+    private final AuthenticatorIcons icons;
+    private final IAsyncRelyingPartyComms relyingPartyComms;
+    private final Executor mainThreadExecutor;
+
+    public AuthenticatorInfosAdapter(Context context, AuthenticatorInfo[] authenticatorInfos, AuthenticatorIcons icons,
+                                     IAsyncRelyingPartyComms relyingPartyComms, Executor mainThreadExecutor) {
         super(context, 0, authenticatorInfos);
+        this.icons = icons;
+        this.relyingPartyComms = relyingPartyComms;
+        this.mainThreadExecutor = mainThreadExecutor;
+    }
+
+    @Override
+    public void onIconLoaded(String aaid) {
+        notifyDataSetChanged();
     }
 
     @Override
@@ -69,11 +85,11 @@ public class AuthenticatorInfosAdapter extends ArrayAdapter<AuthenticatorInfo> {
         }
         status.setText(authenticatorInfo.getStatus());
 
-        // Create the icon to be displayed
-        BitmapFactory.Options options = new BitmapFactory.Options();
-        options.inMutable = true;
-        byte[] imgBytes = Base64.decode(authenticatorInfo.getIcon(), Base64.DEFAULT);
-        Bitmap bmp = BitmapFactory.decodeByteArray(imgBytes, 0, imgBytes.length, options);
+        // Show the cached icon, or fetch it and leave the image empty until it arrives
+        Bitmap bmp = icons.get(authenticatorInfo);
+        if (bmp == null) {
+            icons.fetch(relyingPartyComms, authenticatorInfo, mainThreadExecutor, this);
+        }
         image.setImageBitmap(bmp);
 
         // Return the completed view to render on screen
@@ -30,6 +30,7 @@ import android.view.View;
 import android.view.View.OnClickListener;
 import android.widget.AdapterView;
 import android.widget.Button;
+import android.widget.ListAdapter;
 import android.widget.ListView;
 import android.widget.Toast;
 
@@ -44,12 +45,18 @@ import com.daon.identityx.exception.ServerError;
 import com.daon.identityx.uaf.FidoOperation;
 import com.daon.identityx.uaf.UafServerResponseCodes;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * A logged in screen
  */
 public class AuthenticatorsActivity extends BaseActivity {
 
     private static final String ARCHIVED_STATUS = "ARCHIVED";
+
+    // Icons are kept across visits to the screen as they do not change
+    private static final AuthenticatorIcons authenticatorIcons = new AuthenticatorIcons();
     private enum Action {NONE, REGISTER, DEREGISTER}
 
     /**
@@ -113,6 +120,8 @@ public class AuthenticatorsActivity extends BaseActivity {
 
         mAuthenticatorsFormView = findViewById(R.id.fido_authenticators_form);
         mProgressView = findViewById(R.id.authenticators_progress);
+        // Icons which were missing on an earlier visit may have been added since
+        authenticatorIcons.forgetMissingIcons();
         this.refreshAuthenticators();
 
     }
@@ -263,7 +272,8 @@ public class AuthenticatorsActivity extends BaseActivity {
             LayoutInflater inflater = getLayoutInflater();
             final ListView lv = (ListView) findViewById(R.id.list_view_authenticators);
 
-            AuthenticatorInfosAdapter adapter = new AuthenticatorInfosAdapter(this, authenticatorInfoList);
+            AuthenticatorInfosAdapter adapter = new AuthenticatorInfosAdapter(this, authenticatorInfoList,
+                    authenticatorIcons, getAsyncRelyingPartyComms(), getMainThreadExecutor());
             lv.setAdapter(adapter);
 
             showProgress(false);
@@ -272,6 +282,27 @@ public class AuthenticatorsActivity extends BaseActivity {
         }
     }
 
+    /***
+     * Take the authenticator out of the list without fetching the list from the server again,
+     * e.g. as the server cannot be reached.
+     *
+     * @param authenticatorInfo - the authenticator to remove
+     */
+    protected void removeFromAuthSelection(AuthenticatorInfo authenticatorInfo) {
+        ListView lv = (ListView) findViewById(R.id.list_view_authenticators);
+        ListAdapter adapter = lv.getAdapter();
+        List<AuthenticatorInfo> remaining = new ArrayList<>();
+        for (int i = 0; adapter != null && i < adapter.getCount(); i++) {
+            AuthenticatorInfo item = (AuthenticatorInfo) adapter.getItem(i);
+            if (!item.getId().equals(authenticatorInfo.getId())) {
+                remaining.add(item);
+            }
+        }
+        mDeregisterButton.setEnabled(false);
+        selectedAuthenticationInfo = null;
+        showAuthSelection(remaining.toArray(new AuthenticatorInfo[remaining.size()]));
+    }
+
     protected void notifyDeactivationComplete() {
 
         Toast.makeText(this, R.string.deregistration_complete, Toast.LENGTH_LONG).show();
@@ -367,7 +398,7 @@ public class AuthenticatorsActivity extends BaseActivity {
         protected ServerOperationResult<ListAuthenticatorsResponse> doInBackground(Void... params) {
             ServerOperationResult<ListAuthenticatorsResponse> result;
             try {
-                ListAuthenticatorsResponse response = getRelyingPartyComms().listAuthenticators();
+                ListAuthenticatorsResponse response = getRelyingPartyComms().listAuthenticatorSummaries();
                 result = new ServerOperationResult<>(response);
             } catch (ServerError e) {
                 result = new ServerOperationResult<>(e.getError());
@@ -481,12 +512,27 @@ public class AuthenticatorsActivity extends BaseActivity {
                 } else {
                     notifyDeactivationComplete();
                 }
+            } else if (isServerUnavailable(response.getError().getCode())
+                    && !hasAuthenticator(selectedAuthenticationInfo.getAaid())) {
+                // There is nothing to deregister on the device, so the authenticator can be deleted
+                // on the server once it can be reached.  If there is, the deregistration request
+                // returned by the server is needed to deregister it so the delete is not queued.
+                getRelyingPartyComms().queueDeleteAuthenticator(selectedAuthenticationInfo.getId());
+                Toast.makeText(AuthenticatorsActivity.this, R.string.deregistration_queued, Toast.LENGTH_LONG).show();
+                currentAction = Action.NONE;
+                removeFromAuthSelection(selectedAuthenticationInfo);
             } else {
                 displayError(response.getError().getMessage());
                 currentAction = Action.NONE;
             }
         }
 
+        private boolean isServerUnavailable(int code) {
+            return code == CommunicationsException.CONNECTION_FAILURE
+                    || code == CommunicationsException.CIRCUIT_OPEN
+                    || code == CommunicationsException.RATE_LIMITED;
+        }
+
         @Override
         protected void onCancelled() {
             mDeregisterAuthenticatorTask = null;
@@ -22,6 +22,9 @@ import android.content.Intent;
 import android.content.pm.PackageManager;
 import android.content.pm.ResolveInfo;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.preference.PreferenceManager;
 import android.util.Log;
 import android.view.Menu;
 import android.view.MenuItem;
@@ -32,6 +35,7 @@ import com.daon.identityx.exception.UafProcessingException;
 import com.daon.identityx.uaf.AndroidClientIntentParameters;
 import com.daon.identityx.uaf.FidoOperation;
 import com.daon.identityx.uaf.IUafClientUtils;
+import com.daon.identityx.uaf.SimulatedUafClientUtils;
 import com.daon.identityx.uaf.UafClientLogUtils;
 import com.daon.identityx.uaf.UafClientUtils;
 
@@ -39,6 +43,9 @@ import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * This abstract base class is the super class of all the activities in the project.
@@ -58,13 +65,29 @@ public abstract class BaseActivity extends Activity {
     // The set of authenticators on the device
     private static Set<String> availableAuthenticatorAaids = new HashSet<>();
 
-    // UAF Client Utility class
-    private static final IUafClientUtils uafClientUtils = new UafClientUtils();
+    // UAF Client Utility class, chosen when the first activity is created
+    private static IUafClientUtils uafClientUtils;
 
     // A link to the interface through which communications to the relying party
     // is routed
     private static IRelyingPartyComms relyingPartyComms;
 
+    // Non-blocking access to the relying party, running calls on a dedicated I/O executor
+    private static IAsyncRelyingPartyComms asyncRelyingPartyComms;
+
+    // The I/O executor of asyncRelyingPartyComms, which also runs the simulated FIDO client
+    private static ExecutorService commsExecutor;
+
+    // Runs callbacks on the UI thread
+    private static final Executor mainThreadExecutor = new Executor() {
+        private final Handler handler = new Handler(Looper.getMainLooper());
+
+        @Override
+        public void execute(Runnable command) {
+            handler.post(command);
+        }
+    };
+
     /**
      * Initialise global interfaces which are made available to all activities which derive from this class
      * @param savedInstanceState the saved instance state
@@ -72,8 +95,18 @@ public abstract class BaseActivity extends Activity {
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        if (uafClientUtils == null) {
+            boolean simulated = PreferenceManager.getDefaultSharedPreferences(this)
+                    .getBoolean(SettingsActivity.PREF_SIMULATED_UAF_CLIENT, false);
+            uafClientUtils = simulated ? new SimulatedUafClientUtils() : new UafClientUtils();
+        }
         if(relyingPartyComms==null) {
-            relyingPartyComms = new RelyingPartyServerComms(this);
+            relyingPartyComms = RelyingPartyServerComms.getInstance(this);
+            AsyncRelyingPartyComms serverAsyncComms = new AsyncRelyingPartyComms(relyingPartyComms);
+            commsExecutor = serverAsyncComms.getExecutor();
+            asyncRelyingPartyComms = serverAsyncComms;
+            // Send any requests left queued by an earlier run of the app
+            relyingPartyComms.sendQueuedRequests();
         }
 
     }
@@ -125,6 +158,10 @@ public abstract class BaseActivity extends Activity {
      *                    one-way and has no result.
      */
     protected void sendUafClientIntent(Intent uafClientIntent, FidoOpCommsType opCommsType) {
+        if (isSimulatedUafClient()) {
+            this.sendSimulatedUafClientIntent(uafClientIntent, opCommsType);
+            return;
+        }
         List<ResolveInfo> clientList = getUafClientList();
 
         if (clientList != null && clientList.size() > 0) {
@@ -138,6 +175,56 @@ public abstract class BaseActivity extends Activity {
         }
     }
 
+    /***
+     * Answer the intent in process with the result the FIDO client would return.  The simulated
+     * client generates keys and signs, so it runs on the comms executor, and the result is
+     * delivered later on the UI thread just as a FIDO client app's would be.
+     *
+     * @param uafClientIntent - the intent
+     * @param opCommsType - whether a result is expected
+     */
+    private void sendSimulatedUafClientIntent(final Intent uafClientIntent, final FidoOpCommsType opCommsType) {
+        final SimulatedUafClientUtils simulatedUafClientUtils = (SimulatedUafClientUtils) uafClientUtils;
+        try {
+            commsExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    Intent result = null;
+                    String errorMsg = null;
+                    try {
+                        result = simulatedUafClientUtils.process(uafClientIntent);
+                    } catch (RuntimeException e) {
+                        Log.d(LogUtils.TAG, "Simulated FIDO client error: " + e.getMessage());
+                        errorMsg = e.getMessage();
+                    }
+                    if (opCommsType == FidoOpCommsType.Return) {
+                        deliverSimulatedUafClientResult(result, errorMsg);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            if (opCommsType == FidoOpCommsType.Return) {
+                this.deliverSimulatedUafClientResult(null, e.getMessage());
+            }
+        }
+    }
+
+    private void deliverSimulatedUafClientResult(final Intent result, final String errorMsg) {
+        mainThreadExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (isFinishing()) {
+                    return;
+                }
+                if (errorMsg != null) {
+                    onActivityResultFailure(errorMsg);
+                } else {
+                    onActivityResult(AndroidClientIntentParameters.requestCode, RESULT_OK, result);
+                }
+            }
+        });
+    }
+
     /**
      * Log a UAF operation completion intent and send it to the UAF client.
      * @param uafOperationCompletionIntent intent
@@ -219,7 +306,15 @@ public abstract class BaseActivity extends Activity {
 
     protected boolean hasFIDOClient() {
 
-        return (getUafClientList().size() > 0);
+        return isSimulatedUafClient() || (getUafClientList().size() > 0);
+    }
+
+    /***
+     * @return true if FIDO messages are answered by the in-process simulated client rather than
+     * a FIDO client app
+     */
+    protected static boolean isSimulatedUafClient() {
+        return uafClientUtils instanceof SimulatedUafClientUtils;
     }
 
     protected static List<ResolveInfo> getUafClientList() {
@@ -251,6 +346,14 @@ public abstract class BaseActivity extends Activity {
         return relyingPartyComms;
     }
 
+    protected static IAsyncRelyingPartyComms getAsyncRelyingPartyComms() {
+        return asyncRelyingPartyComms;
+    }
+
+    protected static Executor getMainThreadExecutor() {
+        return mainThreadExecutor;
+    }
+
     protected static IUafClientUtils getUafClientUtils() {
         return uafClientUtils;
     }
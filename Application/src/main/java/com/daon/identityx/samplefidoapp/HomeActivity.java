@@ -25,6 +25,7 @@ import android.content.Intent;
 import android.os.AsyncTask;
 import android.os.Build;
 import android.os.Bundle;
+import android.util.Log;
 import android.view.View;
 import android.view.View.OnClickListener;
 import android.widget.Button;
@@ -35,6 +36,7 @@ import com.daon.identityx.controller.model.AuthenticatorInfo;
 import com.daon.identityx.controller.model.DeleteAccountResponse;
 import com.daon.identityx.exception.CommunicationsException;
 import com.daon.identityx.exception.ServerError;
+import com.daon.identityx.uaf.DeregistrationRequests;
 import com.daon.identityx.uaf.FidoOperation;
 
 import java.util.ArrayList;
@@ -54,10 +56,11 @@ import java.util.List;
  */
 public class HomeActivity extends BaseActivity {
 
-    private UserLogoutTask mLogoutTask = null;
     private AccountDeleteTask mAccountDeleteTask = null;
 
     private List<AuthenticatorInfo> authsToDeactivate = new ArrayList<>();
+    // True while a single deregistration of all the authenticators is with the FIDO client
+    private boolean deregisteringAll;
 
     // UI references.
     private View mProgressView;
@@ -169,13 +172,13 @@ public class HomeActivity extends BaseActivity {
 
     /**
      * Logout
-     * Basically, delete the session and finish this Activity
+     * Basically, delete the session and finish this Activity.  The session is deleted in the
+     * background as there is nothing to wait for - an expired session is deleted anyway.
      */
     public void logout() {
 
-        showProgress(true);
-        mLogoutTask = new UserLogoutTask();
-        mLogoutTask.execute((Void) null);
+        getRelyingPartyComms().queueDeleteSession(CoreApplication.getSessionId());
+        returnToIntro();
     }
 
     /***
@@ -209,6 +212,10 @@ public class HomeActivity extends BaseActivity {
      */
     protected void processUafClientResponse(String uafResponseJson) {
 
+        if (deregisteringAll) {
+            deregisteringAll = false;
+            this.authsToDeactivate.clear();
+        }
         this.deregisterNextAuthenticator();
     }
 
@@ -217,27 +224,47 @@ public class HomeActivity extends BaseActivity {
      * This will occur if the deregistration has been unsuccessful - this may be
      * because the FIDO Authenticator on the device is not registered.
      *
-     * Keep going, attempting to deregister all remaining authenticators on the device.
+     * Keep going, attempting to deregister all remaining authenticators on the device.  If the
+     * client failed to deregister all of the authenticators at once, they are deregistered one at
+     * a time instead.
      *
      * @param errorMsg - the error message from the FIDO Client
      */
     protected void onActivityResultFailure(String errorMsg) {
 
+        if (deregisteringAll) {
+            deregisteringAll = false;
+            Log.d(LogUtils.TAG, "Deregistration of all authenticators failed, deregistering one at a time: " + errorMsg);
+        }
         this.deregisterNextAuthenticator();
     }
 
     /***
      * Process the list of deactivated FIDO authenticators by
      *      1. filtering the list to remove authenticators not available
-     *      2. starting the process of deregistering the first
+     *      2. deregistering all of them with one request to the FIDO client or, if their
+     *         deregistration requests cannot be merged, starting the process of deregistering the first
      * @param authInfos - the array of authenticator information
      */
     protected void processDeactivatedFIDOAuthenticators(AuthenticatorInfo[] authInfos) {
 
         this.authsToDeactivate.clear();
+        List<String> deregistrationRequests = new ArrayList<>();
         for(AuthenticatorInfo authInfo : authInfos) {
             if (hasAuthenticator(authInfo.getAaid())) {
                 this.authsToDeactivate.add(authInfo);
+                deregistrationRequests.add(authInfo.getFidoDeregistrationRequest());
+            }
+        }
+
+        if (this.authsToDeactivate.size() > 1) {
+            String deregistrationRequest = DeregistrationRequests.merge(deregistrationRequests);
+            if (deregistrationRequest != null) {
+                deregisteringAll = true;
+                setCurrentFidoOperation(FidoOperation.Deregistration);
+                Intent intent = getUafClientUtils().getUafOperationIntent(FidoOperation.Deregistration, deregistrationRequest);
+                sendUafClientIntent(intent, FidoOpCommsType.Return);
+                return;
             }
         }
         this.deregisterNextAuthenticator();
@@ -308,55 +335,6 @@ public class HomeActivity extends BaseActivity {
         displayError(errorMsg);
     }
 
-    /**
-     * Represents an asynchronous logout task used to logout the user
-     */
-    public class UserLogoutTask extends AsyncTask<Void, Void, ServerOperationResult<Boolean>> {
-
-        UserLogoutTask() {
-        }
-
-        @Override
-        protected ServerOperationResult<Boolean> doInBackground(Void... params) {
-
-            ServerOperationResult<Boolean> result;
-            try {
-                getRelyingPartyComms().deleteSession(CoreApplication.getSessionId());
-                result = new ServerOperationResult<>(true);
-            } catch (ServerError e) {
-                result = new ServerOperationResult<>(e.getError());
-            } catch (CommunicationsException e) {
-                result = new ServerOperationResult<>(e.getError());
-            }
-
-            return result;
-        }
-
-        @Override
-        protected void onPostExecute(final ServerOperationResult<Boolean> response) {
-
-            mLogoutTask = null;
-            showProgress(false);
-
-            if (response.isSuccessful()) {
-                returnToIntro();
-            } else {
-                // Expired session - just logout and ignore the error
-                if (response.getError().getCode() == 202) {
-                    returnToIntro();
-                }
-                displayError(response.getError().getMessage());
-            }
-        }
-
-        @Override
-        protected void onCancelled() {
-            mLogoutTask = null;
-            showProgress(false);
-        }
-
-    }
-
     /**
      * Represents an asynchronous task used to delete a user account
      */
@@ -0,0 +1,133 @@
+/*
+* Copyright Daon.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.daon.identityx.samplefidoapp;
+
+import com.daon.identityx.controller.model.CreateAccount;
+import com.daon.identityx.controller.model.CreateAccountResponse;
+import com.daon.identityx.controller.model.CreateAuthRequestResponse;
+import com.daon.identityx.controller.model.CreateAuthenticator;
+import com.daon.identityx.controller.model.CreateAuthenticatorResponse;
+import com.daon.identityx.controller.model.CreateRegRequestResponse;
+import com.daon.identityx.controller.model.CreateSession;
+import com.daon.identityx.controller.model.CreateSessionResponse;
+import com.daon.identityx.controller.model.CreateTransactionAuthRequest;
+import com.daon.identityx.controller.model.DeleteAccountResponse;
+import com.daon.identityx.controller.model.GetAuthenticatorResponse;
+import com.daon.identityx.controller.model.ListAuthenticatorsResponse;
+import com.daon.identityx.controller.model.ValidateTransactionAuth;
+import com.daon.identityx.controller.model.ValidateTransactionAuthResponse;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.ListenableFuture;
+
+import java.util.concurrent.Executor;
+
+/***
+ * Non-blocking version of {@link IRelyingPartyComms}.
+ *
+ * Each call returns immediately with a future which completes with the response, or fails with
+ * the {@link com.daon.identityx.exception.ServerError} or
+ * {@link com.daon.identityx.exception.CommunicationsException} the blocking call would have thrown.
+ * The futures can be combined with {@link com.google.common.util.concurrent.Futures} so that
+ * independent calls run at the same time, and cancelled with {@link java.util.concurrent.Future#cancel(boolean)}.
+ */
+public interface IAsyncRelyingPartyComms {
+
+    /***
+     * @see IRelyingPartyComms#createAccount(CreateAccount)
+     */
+    ListenableFuture<CreateAccountResponse> createAccount(CreateAccount createAccount);
+
+    /***
+     * @see IRelyingPartyComms#createSession(CreateSession)
+     */
+    ListenableFuture<CreateSessionResponse> createSession(CreateSession createSession);
+
+    /***
+     * @see IRelyingPartyComms#createAuthRequest()
+     */
+    ListenableFuture<CreateAuthRequestResponse> createAuthRequest();
+
+    /***
+     * @see IRelyingPartyComms#deleteSession(String)
+     */
+    ListenableFuture<Void> deleteSession(String sessionId);
+
+    /***
+     * @see IRelyingPartyComms#deleteAccount(String)
+     */
+    ListenableFuture<DeleteAccountResponse> deleteAccount(String sessionId);
+
+    /***
+     * @see IRelyingPartyComms#createTransactionAuthRequest(CreateTransactionAuthRequest)
+     */
+    ListenableFuture<CreateAuthRequestResponse> createTransactionAuthRequest(CreateTransactionAuthRequest createTransactionAuthRequest);
+
+    /***
+     * @see IRelyingPartyComms#validateTransactionAuthRequest(ValidateTransactionAuth)
+     */
+    ListenableFuture<ValidateTransactionAuthResponse> validateTransactionAuthRequest(ValidateTransactionAuth validateTransactionAuth);
+
+    /***
+     * @see IRelyingPartyComms#createRegRequest()
+     */
+    ListenableFuture<CreateRegRequestResponse> createRegRequest();
+
+    /***
+     * @see IRelyingPartyComms#createAuthenticator(CreateAuthenticator)
+     */
+    ListenableFuture<CreateAuthenticatorResponse> createAuthenticator(CreateAuthenticator createAuthenticator);
+
+    /***
+     * @see IRelyingPartyComms#listAuthenticators()
+     */
+    ListenableFuture<ListAuthenticatorsResponse> listAuthenticators();
+
+    /***
+     * @see IRelyingPartyComms#getAuthenticator(String)
+     */
+    ListenableFuture<GetAuthenticatorResponse> getAuthenticator(String authenticatorId);
+
+    /***
+     * @see IRelyingPartyComms#listAuthenticatorSummaries()
+     */
+    ListenableFuture<ListAuthenticatorsResponse> listAuthenticatorSummaries();
+
+    /***
+     * @see IRelyingPartyComms#getAuthenticatorIcon(String)
+     */
+    ListenableFuture<String> getAuthenticatorIcon(String authenticatorId);
+
+    /***
+     * @see IRelyingPartyComms#deleteAuthenticator(String)
+     */
+    ListenableFuture<String> deleteAuthenticator(String authenticatorId);
+
+    /***
+     * @see IRelyingPartyComms#prewarm()
+     */
+    ListenableFuture<Boolean> prewarm();
+
+    /***
+     * Deliver the outcome of the future to the callback.  Failures are converted to a
+     * {@link ServerOperationResult} holding the error, as is done by the AsyncTasks of the activities.
+     *
+     * @param future - the future returned by one of the calls
+     * @param callback - the callback to receive the result
+     * @param executor - the executor on which to run the callback, e.g. the main thread
+     */
+    <T> void addCallback(ListenableFuture<T> future, FutureCallback<ServerOperationResult<T>> callback, Executor executor);
+}
@@ -145,6 +145,28 @@ public interface IRelyingPartyComms {
      */
     GetAuthenticatorResponse getAuthenticator(String authenticatorId);
 
+    /***
+     * PROTECTED OPERATION - the server will only process this if a valid session is in place
+     *
+     * Returns the authenticators associated with this account with only the fields needed to
+     * list them - the icon and FIDO deregistration request are left out.  Use
+     * {@link #getAuthenticatorIcon(String)} and {@link #getAuthenticator(String)} to fetch them
+     * when they are needed.
+     *
+     * @return ListAuthenticatorsResponse
+     */
+    ListAuthenticatorsResponse listAuthenticatorSummaries();
+
+    /***
+     * PROTECTED OPERATION - the server will only process this if a valid session is in place
+     *
+     * Returns the Base64 encoded icon of the specified authenticator.
+     *
+     * @param authenticatorId - the ID of the authenticator
+     * @return String
+     */
+    String getAuthenticatorIcon(String authenticatorId);
+
     /***
      * PROTECTED OPERATION - the server will only process this if a valid session is in place
      *
@@ -155,4 +177,39 @@ public interface IRelyingPartyComms {
      * @return String
      */
     String deleteAuthenticator(String authenticatorId);
+
+    /***
+     * Prepare the network path to the server before it is needed by resolving the server's
+     * host name and opening a connection to it, including the TLS handshake, which is then kept
+     * alive for the first request.
+     *
+     * @return true if a connection was opened
+     */
+    boolean prewarm();
+
+    /***
+     * PROTECTED OPERATION - the server will only process this if a valid session is in place
+     *
+     * Queue the deletion of the session, returning straight away.  The request is sent in the
+     * background and is kept until the server can be reached, even if the app is closed.
+     *
+     * @param sessionId - the session to be deleted
+     */
+    void queueDeleteSession(String sessionId);
+
+    /***
+     * PROTECTED OPERATION - the server will only process this if a valid session is in place
+     *
+     * Queue the deletion of the authenticator, returning straight away.  The FIDO deregistration
+     * request returned by the server when the request is eventually sent is not used.
+     *
+     * @param authenticatorId - the ID of the authenticator to delete
+     */
+    void queueDeleteAuthenticator(String authenticatorId);
+
+    /***
+     * Send the queued requests now rather than waiting to try again, e.g. when the network
+     * becomes available
+     */
+    void sendQueuedRequests();
 }
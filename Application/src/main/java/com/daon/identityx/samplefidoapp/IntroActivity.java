@@ -55,6 +55,9 @@ import java.util.List;
  */
 public class IntroActivity extends BaseActivity  {
 
+    // Kept across instances of the activity so that fetched requests are not thrown away
+    private static AuthRequestPool authRequestPool;
+
     private boolean attemptingAuthentication;
     private CreateAuthRequestTask mCreateAuthRequestTask = null;
     private UserLoginWithFIDOTask mUserLoginWithFIDOTask = null;
@@ -104,6 +107,40 @@ public class IntroActivity extends BaseActivity  {
             mFidoLoginButton.setEnabled(false);
         }
         mIntroView.setVisibility(View.VISIBLE);
+
+        if (authRequestPool == null) {
+            authRequestPool = new AuthRequestPool(getAsyncRelyingPartyComms());
+        }
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        // Only fetch authentication requests ahead of time if a FIDO login is possible
+        if (mFidoLoginButton.isEnabled()) {
+            authRequestPool.start();
+        }
+    }
+
+    @Override
+    protected void onPause() {
+        super.onPause();
+        authRequestPool.stop();
+        Log.d(LogUtils.TAG, "Auth request pool - " + authRequestPool.getStats());
+        if (getRelyingPartyComms() instanceof RelyingPartyServerComms) {
+            Log.d(LogUtils.TAG, "Connection pool - "
+                    + ((RelyingPartyServerComms) getRelyingPartyComms()).getConnectionPoolStats());
+        }
+    }
+
+    /***
+     * Drop the pre-fetched authentication requests, e.g. when the server settings change, as
+     * their challenges were issued by the old server.
+     */
+    static void clearAuthRequestPool() {
+        if (authRequestPool != null) {
+            authRequestPool.clear();
+        }
     }
 
     public void attemptFIDOLogin() {
@@ -113,8 +150,29 @@ public class IntroActivity extends BaseActivity  {
 
         showProgress(true);
         attemptingAuthentication = true;
-        mCreateAuthRequestTask = new CreateAuthRequestTask();
-        mCreateAuthRequestTask.execute((Void) null);
+
+        // Use a pre-fetched authentication request if there is one, otherwise create one now
+        CreateAuthRequestResponse pooledResponse = authRequestPool.take();
+        if (pooledResponse != null) {
+            sendAuthRequest(pooledResponse);
+        } else {
+            mCreateAuthRequestTask = new CreateAuthRequestTask();
+            mCreateAuthRequestTask.execute((Void) null);
+        }
+    }
+
+    /***
+     * Send the authentication request to the UAF client
+     *
+     * @param response the create authentication request response
+     */
+    protected void sendAuthRequest(CreateAuthRequestResponse response) {
+        mCreateAuthRequestResponse = response;
+
+        setCurrentFidoOperation(FidoOperation.Authentication);
+        Intent intent = getUafClientUtils().getUafOperationIntent(FidoOperation.Authentication,
+                response.getFidoAuthenticationRequest());
+        sendUafClientIntent(intent, FidoOpCommsType.Return);
     }
 
     protected boolean isAnAsyncTaskRunning() {
@@ -269,13 +327,7 @@ public class IntroActivity extends BaseActivity  {
             mCreateAuthRequestTask = null;
 
             if (result.isSuccessful()) {
-                mCreateAuthRequestResponse = result.getResponse();
-
-                // Send authentication request to the UAF client
-                setCurrentFidoOperation(FidoOperation.Authentication);
-                Intent intent = getUafClientUtils().getUafOperationIntent(FidoOperation.Authentication,
-                        result.getResponse().getFidoAuthenticationRequest());
-                sendUafClientIntent(intent, FidoOpCommsType.Return);
+                sendAuthRequest(result.getResponse());
             } else {
                 endProgressWithError(result.getError().getMessage());
             }
@@ -27,6 +27,7 @@ public class SettingsActivity extends Activity {
     public static final String PREF_SERVER_URL = "pref_server_url";
     public static final String PREF_SERVER_PORT = "pref_server_port";
     public static final String PREF_SERVER_SECURE = "pref_server_secure";
+    public static final String PREF_SIMULATED_UAF_CLIENT = "pref_simulated_uaf_client";
 
     /**
      * Display the {@link SettingsFragment}
@@ -16,13 +16,14 @@
 
 package com.daon.identityx.samplefidoapp;
 
+import android.content.SharedPreferences;
 import android.os.Bundle;
 import android.preference.PreferenceFragment;
 
 /**
  * Displays application settings based on preferences.xml
  */
-public class SettingsFragment extends PreferenceFragment {
+public class SettingsFragment extends PreferenceFragment implements SharedPreferences.OnSharedPreferenceChangeListener {
 
     /**
      * Displays application settings based on preferences.xml
@@ -36,4 +37,29 @@ public class SettingsFragment extends PreferenceFragment {
         addPreferencesFromResource(R.xml.preferences);
     }
 
+    @Override
+    public void onResume() {
+        super.onResume();
+        getPreferenceScreen().getSharedPreferences().registerOnSharedPreferenceChangeListener(this);
+    }
+
+    @Override
+    public void onPause() {
+        super.onPause();
+        getPreferenceScreen().getSharedPreferences().unregisterOnSharedPreferenceChangeListener(this);
+    }
+
+    /**
+     * Drop the authentication requests fetched from the previous server when the server changes
+     * @param sharedPreferences the preferences
+     * @param key the preference which changed
+     */
+    @Override
+    public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String key) {
+        if (SettingsActivity.PREF_SERVER_URL.equals(key) || SettingsActivity.PREF_SERVER_PORT.equals(key)
+                || SettingsActivity.PREF_SERVER_SECURE.equals(key)) {
+            IntroActivity.clearAuthRequestPool();
+        }
+    }
+
 }
@@ -32,6 +32,7 @@ import android.view.View.OnClickListener;
 import android.widget.Button;
 import android.widget.Toast;
 
+import com.daon.identityx.codec.ModelCodec;
 import com.daon.identityx.controller.model.CreateAuthRequestResponse;
 import com.daon.identityx.controller.model.CreateSession;
 import com.daon.identityx.controller.model.CreateSessionResponse;
@@ -82,6 +83,9 @@ public class SplashActivity extends BaseActivity  {
 
         this.start = System.currentTimeMillis();
 
+        // Open the connection to the server while the authenticators are discovered
+        getAsyncRelyingPartyComms().prewarm();
+
         FindClientsAndAuthenticators findOp = new FindClientsAndAuthenticators();
         findOp.execute();
     }
@@ -122,7 +126,13 @@ public class SplashActivity extends BaseActivity  {
             List<ResolveInfo> clientList = getUafClientList();
             this.setCurrentFidoOperation(FidoOperation.Discover);
             Intent intent = getUafClientUtils().getDiscoverIntent();
-            if (clientList != null && clientList.size() > 0) {
+            if (isSimulatedUafClient()) {
+                // Discovery is answered in process and this is called again with the result
+                aaidRetrievalAttempted = true;
+                UafClientLogUtils.logUafDiscoverRequest(intent);
+                this.sendUafClientIntent(intent, FidoOpCommsType.Return);
+                return;
+            } else if (clientList != null && clientList.size() > 0) {
                 intent.setComponent(new ComponentName(clientList.get(uafClientIdx).activityInfo.packageName,
                         clientList.get(uafClientIdx).activityInfo.name));
                 UafClientLogUtils.logUafDiscoverRequest(intent);
@@ -229,6 +239,8 @@ public class SplashActivity extends BaseActivity  {
         @Override
         protected Void doInBackground(Void... params) {
 
+            // Create the JSON adapters now rather than on the first call to the server
+            ModelCodec.warmUp();
             loadUafClientList();
             retrieveAvailableAuthenticatorAaids();
             return null;
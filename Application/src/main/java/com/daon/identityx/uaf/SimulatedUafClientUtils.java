@@ -0,0 +1,71 @@
+/*
+* Copyright Daon.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.daon.identityx.uaf;
+
+import android.content.Intent;
+import android.util.Log;
+
+import com.daon.identityx.samplefidoapp.LogUtils;
+import com.daon.identityx.uaf.simulator.SimulatedUafClient;
+
+/**
+ * Implementation of {@link IUafClientUtils} whose intents are answered in process by a
+ * {@link SimulatedUafClient} rather than by a FIDO client app, so that the app's flows can be run
+ * and timed on a device or emulator without a FIDO client or authenticator.
+ *
+ * The intents are built and their results read exactly as by {@link UafClientUtils}; instead of
+ * being started for a result, an intent is passed to {@link #process(Intent)} which converts it
+ * back to a {@link UafOperation} and returns the result intent the FIDO client would have
+ * returned.
+ *
+ * Created by Daon
+ */
+public class SimulatedUafClientUtils extends UafClientUtils {
+
+    private final SimulatedUafClient uafClient;
+
+    public SimulatedUafClientUtils() {
+        this(new SimulatedUafClient());
+    }
+
+    public SimulatedUafClientUtils(SimulatedUafClient uafClient) {
+        this.uafClient = uafClient;
+    }
+
+    public SimulatedUafClient getUafClient() {
+        return uafClient;
+    }
+
+    /***
+     * Answer an intent built by this class as the FIDO client would
+     *
+     * @param uafIntent - the discover, check policy, UAF operation or completion status intent
+     * @return the result intent, or null for a completion status which has no result
+     */
+    public Intent process(Intent uafIntent) {
+        UafOperation operation = UafOperationIntents.fromIntent(uafIntent);
+        UafOperationResult result = uafClient.process(operation);
+        if (result == null) {
+            Log.d(LogUtils.TAG, "Simulated FIDO client notified of completion: " + operation.getResponseCode());
+            return null;
+        }
+        if (result.getErrorCode() != ErrorCode.NO_ERROR) {
+            Log.d(LogUtils.TAG, "Simulated FIDO client error: " + result.getErrorCode().getDescription());
+        }
+        return UafOperationIntents.toIntent(result);
+    }
+}
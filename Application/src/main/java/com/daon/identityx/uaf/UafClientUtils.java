@@ -21,10 +21,8 @@ import android.content.Intent;
 import android.util.Log;
 
 import com.daon.identityx.exception.UafProcessingException;
-import com.daon.identityx.samplefidoapp.ErrorCode;
 import com.daon.identityx.samplefidoapp.LogUtils;
 import com.daon.identityx.samplefidoapp.R;
-import com.google.gson.Gson;
 
 import org.json.JSONArray;
 import org.json.JSONException;
@@ -51,7 +49,7 @@ public class UafClientUtils implements IUafClientUtils {
             case Authentication:
             case Deregistration:
                 UafOperation uafOperation = this.getFidoUafOperation(uafRequest);
-                Intent uafOperationIntent = uafOperation.toIntent();
+                Intent uafOperationIntent = UafOperationIntents.toIntent(uafOperation);
                 UafClientLogUtils.logUafOperationRequest(uafOperationIntent, fidoOpType);
                 return uafOperationIntent;
             case Discover:
@@ -67,7 +65,7 @@ public class UafClientUtils implements IUafClientUtils {
     @Override
     public Intent getDiscoverIntent() {
         UafOperation discoverOperation = this.getFidoDiscoverOperation();
-        return discoverOperation.toIntent();
+        return UafOperationIntents.toIntent(discoverOperation);
     }
 
     /**
@@ -76,7 +74,7 @@ public class UafClientUtils implements IUafClientUtils {
     @Override
     public Intent getCheckPolicyIntent(String uafRequest) {
         UafOperation checkPolicyOperation = this.getFidoCheckPolicyOperation(uafRequest);
-        return checkPolicyOperation.toIntent();
+        return UafOperationIntents.toIntent(checkPolicyOperation);
     }
 
     /**
@@ -84,8 +82,8 @@ public class UafClientUtils implements IUafClientUtils {
      */
     @Override
     public Intent getUafOperationCompletionStatusIntent(String uafResponseMsg, int serverResponseCode, String serverResponseMsg) {
-        return this.getFidoCompletionOperation(uafResponseMsg, serverResponseCode,
-                serverResponseMsg).toIntent();
+        return UafOperationIntents.toIntent(this.getFidoCompletionOperation(uafResponseMsg, serverResponseCode,
+                serverResponseMsg));
     }
 
     /**
@@ -106,8 +104,7 @@ public class UafClientUtils implements IUafClientUtils {
                     case "UAF_OPERATION_RESULT":
                         String fidoUafMessage = resultIntent.getStringExtra("message");
                         if(fidoUafMessage!=null) {
-                            Gson gson = new Gson();
-                            UAFMessage uafMessage = gson.fromJson(fidoUafMessage, UAFMessage.class);
+                            UAFMessage uafMessage = UafMessageCodec.fromJson(fidoUafMessage);
                             return uafMessage.getUafProtocolMessage();
                         } else {
                             return null;
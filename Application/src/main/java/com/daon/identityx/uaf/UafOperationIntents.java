@@ -0,0 +1,99 @@
+/*
+* Copyright Daon.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.daon.identityx.uaf;
+
+import android.content.Intent;
+
+/**
+ * Converts {@link UafOperation}s and {@link UafOperationResult}s to and from the intents of the
+ * FIDO UAF Android client API.
+ *
+ * Created by Daon
+ */
+public class UafOperationIntents {
+
+    /***
+     * @return the intent which starts the operation in the FIDO client app
+     */
+    public static Intent toIntent(UafOperation operation) {
+        final Intent result = new Intent();
+        result.setAction(AndroidClientIntentParameters.intentAction);
+        result.setType(AndroidClientIntentParameters.intentType);
+
+        if (null != operation.getUafIntentType()) {
+            result.putExtra("UAFIntentType", operation.getUafIntentType().getDescription());
+        }
+        if (operation.getMessage() != null) {
+            result.putExtra("message", UafMessageCodec.toJson(operation.getMessage()));
+        }
+        if (operation.getOrigin() != null) {
+            result.putExtra("origin", operation.getOrigin());
+        }
+        if (operation.getChannelBindings() != null) {
+            result.putExtra("channelBindings", operation.getChannelBindings());
+        }
+        if (operation.getResponseCode() != null) {
+            result.putExtra("responseCode", (short) operation.getResponseCode());
+        }
+        if (operation.getResponseCodeMessage() != null) {
+            result.putExtra("responseCodeMessage", operation.getResponseCodeMessage());
+        }
+
+        return result;
+    }
+
+    /***
+     * @param intent - an intent built by {@link #toIntent(UafOperation)}
+     * @return the operation the intent starts
+     */
+    public static UafOperation fromIntent(Intent intent) {
+        UAFIntentType intentType = UAFIntentType.getByValue(intent.getStringExtra("UAFIntentType"));
+        String message = intent.getStringExtra("message");
+        UAFMessage uafMessage = message != null ? UafMessageCodec.fromJson(message) : null;
+        switch (intentType) {
+            case DISCOVER:
+                return UafOperationFactory.createDiscover();
+            case CHECK_POLICY:
+                return UafOperationFactory.createCheckPolicy(uafMessage, intent.getStringExtra("origin"));
+            case UAF_OPERATION:
+                return UafOperationFactory.createUAFOperation(uafMessage, intent.getStringExtra("origin"),
+                        intent.getStringExtra("channelBindings"));
+            case UAF_OPERATION_COMPLETION_STATUS:
+                return UafOperationFactory.createUAFOperationCompletionStatus(uafMessage,
+                        intent.hasExtra("responseCode") ? intent.getShortExtra("responseCode", (short) 0) : null,
+                        intent.getStringExtra("responseCodeMessage"));
+            default:
+                throw new IllegalArgumentException("Not a UAF operation intent type: " + intentType);
+        }
+    }
+
+    /***
+     * @return the result intent the FIDO client app returns for the result
+     */
+    public static Intent toIntent(UafOperationResult operationResult) {
+        final Intent result = new Intent();
+        result.putExtra("UAFIntentType", operationResult.getUafIntentType().getDescription());
+        result.putExtra("errorCode", operationResult.getErrorCode().getValue());
+        if (operationResult.getMessage() != null) {
+            result.putExtra("message", UafMessageCodec.toJson(operationResult.getMessage()));
+        }
+        if (operationResult.getDiscoveryData() != null) {
+            result.putExtra("discoveryData", operationResult.getDiscoveryData());
+        }
+        return result;
+    }
+}
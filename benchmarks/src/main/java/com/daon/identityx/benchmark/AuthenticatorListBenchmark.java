@@ -0,0 +1,108 @@
+/*
+* Copyright Daon.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.daon.identityx.benchmark;
+
+import com.daon.identityx.codec.IsoDateTypeAdapter;
+import com.daon.identityx.codec.ModelCodec;
+import com.daon.identityx.comms.BufferPool;
+import com.daon.identityx.controller.model.ListAuthenticatorsResponse;
+import com.google.common.base.Charsets;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.stream.JsonReader;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The cost of binding a ListAuthenticatorsResponse, the largest response of the server, for
+ * accounts with from one to hundreds of authenticators.
+ *
+ * The decode and encode benchmarks use {@link ModelCodec} as RelyingPartyClient does; the
+ * reflective benchmark binds the same body with a plain Gson instance, for comparison.
+ *
+ * Created by Daon
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class AuthenticatorListBenchmark {
+
+    @Param({"1", "10", "100", "500"})
+    public int authenticators;
+
+    private ListAuthenticatorsResponse response;
+    private byte[] body;
+    private Gson reflectiveGson;
+    private BufferPool bufferPool;
+
+    @Setup
+    public void setUp() {
+        response = new ListAuthenticatorsResponse();
+        response.setAuthenticatorInfoList(new Payloads().authenticators(authenticators));
+        body = Payloads.encode(response);
+        reflectiveGson = new GsonBuilder().registerTypeAdapter(Date.class, new IsoDateTypeAdapter()).create();
+        bufferPool = new BufferPool();
+        ModelCodec.warmUp();
+    }
+
+    @Benchmark
+    public ListAuthenticatorsResponse decode() {
+        return Payloads.decode(body, ListAuthenticatorsResponse.class);
+    }
+
+    @Benchmark
+    public ListAuthenticatorsResponse decodeReflective() {
+        return reflectiveGson.fromJson(new JsonReader(new InputStreamReader(new ByteArrayInputStream(body), Charsets.UTF_8)),
+                ListAuthenticatorsResponse.class);
+    }
+
+    /***
+     * Encode into a pooled buffer as a request body is
+     */
+    @Benchmark
+    public int encode() throws IOException {
+        BufferPool.Buffer buffer = bufferPool.acquire();
+        try {
+            Writer writer = buffer.asUtf8Writer();
+            ModelCodec.getGson().toJson(response, writer);
+            writer.flush();
+            return buffer.size();
+        } finally {
+            buffer.release();
+        }
+    }
+}
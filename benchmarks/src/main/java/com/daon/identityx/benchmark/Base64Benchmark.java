@@ -0,0 +1,126 @@
+/*
+* Copyright Daon.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.daon.identityx.benchmark;
+
+import com.daon.identityx.utils.Base64;
+import com.daon.identityx.utils.Base64Codec;
+import com.google.common.base.Charsets;
+import com.google.common.io.BaseEncoding;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link Base64Codec} against {@link Base64#encodeToChar(byte[], boolean)} and
+ * {@link Base64#decodeFast(char[])}, for values from the size of a key ID to that of an assertion
+ * with an attestation certificate chain.  Base64Codec writes into buffers held by the benchmark,
+ * so should allocate nothing per operation.
+ *
+ * The base64url benchmarks compare it with Guava's BaseEncoding, which was used for the values of
+ * UAF messages.
+ *
+ * Created by Daon
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class Base64Benchmark {
+
+    private static final BaseEncoding GUAVA_BASE64URL = BaseEncoding.base64Url().omitPadding();
+
+    @Param({"32", "256", "2048", "16384"})
+    public int size;
+
+    private byte[] bytes;
+    private char[] encoded;
+    private byte[] encodedUrlSafe;
+    private String encodedUrlSafeString;
+    private char[] encodeBuffer;
+    private byte[] encodeUrlSafeBuffer;
+    private byte[] decodeBuffer;
+
+    @Setup
+    public void setUp() {
+        bytes = new byte[size];
+        new Random(1).nextBytes(bytes);
+        encoded = Base64.encodeToChar(bytes, false);
+        encodedUrlSafeString = GUAVA_BASE64URL.encode(bytes);
+        encodedUrlSafe = encodedUrlSafeString.getBytes(Charsets.US_ASCII);
+        encodeBuffer = new char[Base64Codec.STANDARD.encodedLength(size)];
+        encodeUrlSafeBuffer = new byte[Base64Codec.URL_SAFE_NO_PADDING.encodedLength(size)];
+        decodeBuffer = new byte[size];
+    }
+
+    @Benchmark
+    public char[] encodeLegacy() {
+        return Base64.encodeToChar(bytes, false);
+    }
+
+    @Benchmark
+    public char[] encode() {
+        Base64Codec.STANDARD.encode(bytes, 0, bytes.length, encodeBuffer, 0);
+        return encodeBuffer;
+    }
+
+    @Benchmark
+    public byte[] decodeLegacy() {
+        return Base64.decodeFast(encoded);
+    }
+
+    @Benchmark
+    public byte[] decode() {
+        Base64Codec.STANDARD.decode(encoded, 0, encoded.length, decodeBuffer, 0);
+        return decodeBuffer;
+    }
+
+    @Benchmark
+    public String encodeUrlSafeGuava() {
+        return GUAVA_BASE64URL.encode(bytes);
+    }
+
+    @Benchmark
+    public byte[] encodeUrlSafe() {
+        Base64Codec.URL_SAFE_NO_PADDING.encode(bytes, 0, bytes.length, encodeUrlSafeBuffer, 0);
+        return encodeUrlSafeBuffer;
+    }
+
+    @Benchmark
+    public byte[] decodeUrlSafeGuava() {
+        return GUAVA_BASE64URL.decode(encodedUrlSafeString);
+    }
+
+    @Benchmark
+    public byte[] decodeUrlSafe() {
+        Base64Codec.URL_SAFE_NO_PADDING.decode(encodedUrlSafe, 0, encodedUrlSafe.length, decodeBuffer, 0);
+        return decodeBuffer;
+    }
+}
@@ -0,0 +1,126 @@
+/*
+* Copyright Daon.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.daon.identityx.benchmark;
+
+import com.daon.identityx.codec.ModelCodec;
+import com.daon.identityx.comms.BufferPool;
+import com.daon.identityx.controller.model.AuthenticationMethod;
+import com.daon.identityx.controller.model.CreateAuthenticator;
+import com.daon.identityx.controller.model.CreateSessionResponse;
+import com.daon.identityx.uaf.UAFMessage;
+import com.daon.identityx.uaf.UafMessageCodec;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The cost of handling the FIDO messages of a registration and a login, from a small assertion to
+ * one with a large attestation certificate chain:
+ *
+ * - encoding the CreateAuthenticator request which carries the RegistrationResponse
+ * - decoding the CreateSessionResponse which carries the AuthenticationResponse
+ * - wrapping a UAF message in the JSON passed to the FIDO client, as UafOperationIntents does
+ * - unwrapping the UAF message returned by the FIDO client, as UafClientUtils.getUafClientResponse does
+ *
+ * Created by Daon
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class FidoMessageBenchmark {
+
+    // The size of the assertion in bytes; the larger ones are those with attestation certificates
+    @Param({"256", "2048", "16384"})
+    public int assertionSize;
+
+    private CreateAuthenticator createAuthenticator;
+    private byte[] createSessionResponseBody;
+    private String uafResponse;
+    private String uafResponseMessage;
+    private BufferPool bufferPool;
+
+    @Setup
+    public void setUp() {
+        Payloads payloads = new Payloads();
+
+        createAuthenticator = new CreateAuthenticator();
+        createAuthenticator.setRegistrationChallengeId(payloads.uuid());
+        createAuthenticator.setFidoReqistrationResponse(payloads.uafResponse("Reg", assertionSize));
+
+        CreateSessionResponse createSessionResponse = new CreateSessionResponse();
+        createSessionResponse.setSessionId(payloads.uuid());
+        createSessionResponse.setLastLoggedIn(new Date(1435400000000L));
+        createSessionResponse.setLoggedInWith(AuthenticationMethod.FIDO_AUTHENTICATION);
+        createSessionResponse.setEmail("user@acme.com");
+        createSessionResponse.setFirstName("Sample");
+        createSessionResponse.setLastName("User");
+        createSessionResponse.setFidoAuthenticationResponse(payloads.uafResponse("Auth", assertionSize));
+        createSessionResponse.setFidoResponseCode(1200L);
+        createSessionResponse.setFidoResponseMsg("OK");
+        createSessionResponseBody = Payloads.encode(createSessionResponse);
+
+        uafResponse = payloads.uafResponse("Auth", assertionSize);
+        uafResponseMessage = UafMessageCodec.toJson(new UAFMessage(uafResponse, null));
+        bufferPool = new BufferPool();
+        ModelCodec.warmUp();
+    }
+
+    @Benchmark
+    public int encodeCreateAuthenticator() throws IOException {
+        BufferPool.Buffer buffer = bufferPool.acquire();
+        try {
+            Writer writer = buffer.asUtf8Writer();
+            ModelCodec.getGson().toJson(createAuthenticator, writer);
+            writer.flush();
+            return buffer.size();
+        } finally {
+            buffer.release();
+        }
+    }
+
+    @Benchmark
+    public CreateSessionResponse decodeCreateSessionResponse() {
+        return Payloads.decode(createSessionResponseBody, CreateSessionResponse.class);
+    }
+
+    @Benchmark
+    public String wrapUafMessage() {
+        return UafMessageCodec.toJson(new UAFMessage(uafResponse, null));
+    }
+
+    @Benchmark
+    public String unwrapUafMessage() {
+        return UafMessageCodec.fromJson(uafResponseMessage).getUafProtocolMessage();
+    }
+}
@@ -0,0 +1,93 @@
+/*
+* Copyright Daon.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.daon.identityx.benchmark;
+
+import com.daon.identityx.codec.IsoTimestampCodec;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link IsoTimestampCodec} against the previous approach of creating a SimpleDateFormat for
+ * every Date field of a server response, over timestamps with different offsets, one of them
+ * still quoted as it is in the JSON.
+ *
+ * Created by Daon
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class IsoTimestampBenchmark {
+
+    private static final String PATTERN = "yyyy-MM-dd'T'HH:mm:ss.SSSZ";
+    private static final String[] TIMESTAMPS = {
+            "2015-06-27T10:15:30.123+0100",
+            "2016-02-29T23:59:59.999-0500",
+            "2014-12-31T00:00:00.000+0000",
+            "\"2015-01-01T12:34:56.789+0530\""
+    };
+
+    private int next;
+
+    @Setup
+    public void setUp() throws ParseException {
+        // Both must give the same result for the comparison to mean anything
+        for (String timestamp : TIMESTAMPS) {
+            long expected = parseLegacy(timestamp);
+            long actual = IsoTimestampCodec.parse(timestamp);
+            if (expected != actual) {
+                throw new IllegalStateException("Mismatch for " + timestamp + ": " + expected + " != " + actual);
+            }
+        }
+    }
+
+    @Benchmark
+    public long parseWithSimpleDateFormat() throws ParseException {
+        return parseLegacy(this.nextTimestamp());
+    }
+
+    @Benchmark
+    public long parse() throws ParseException {
+        return IsoTimestampCodec.parse(this.nextTimestamp());
+    }
+
+    private String nextTimestamp() {
+        next = (next + 1) % TIMESTAMPS.length;
+        return TIMESTAMPS[next];
+    }
+
+    // The previous implementation registered in RelyingPartyServerComms
+    private static long parseLegacy(String timestamp) throws ParseException {
+        SimpleDateFormat formatter = new SimpleDateFormat(PATTERN);
+        return formatter.parse(timestamp.replaceAll("\"", "")).getTime();
+    }
+}
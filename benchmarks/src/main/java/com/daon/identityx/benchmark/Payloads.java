@@ -0,0 +1,126 @@
+/*
+* Copyright Daon.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.daon.identityx.benchmark;
+
+import com.daon.identityx.codec.ModelCodec;
+import com.daon.identityx.controller.model.AuthenticatorInfo;
+import com.google.common.base.Charsets;
+import com.google.common.io.BaseEncoding;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonReader;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStreamReader;
+import java.util.Date;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Builds the payloads of the benchmarks.  The payloads are of the size and shape of those of the
+ * server, and are the same from run to run.
+ *
+ * Created by Daon
+ */
+class Payloads {
+
+    static final String AAID = "D409#0101";
+    static final String APP_ID = "https://acme.com/fido/facets";
+    // The size of the PNG icons of the authenticators, before base64 encoding
+    static final int ICON_SIZE = 2 * 1024;
+
+    private static final BaseEncoding BASE64URL = BaseEncoding.base64Url().omitPadding();
+
+    private final Random random = new Random(1);
+
+    AuthenticatorInfo[] authenticators(int count) {
+        AuthenticatorInfo[] authenticators = new AuthenticatorInfo[count];
+        for (int i = 0; i < count; i++) {
+            AuthenticatorInfo info = new AuthenticatorInfo();
+            info.setId(this.uuid());
+            info.setCreated(new Date(1435400000000L + i * 60000L));
+            info.setLastUsed(new Date(1435500000000L + i * 60000L));
+            info.setName("Simulated Authenticator " + i);
+            info.setDescription("Software authenticator with ECDSA P-256 keys");
+            info.setVendorName("Daon");
+            info.setIcon("data:image/png;base64," + BaseEncoding.base64().encode(this.randomBytes(ICON_SIZE)));
+            info.setStatus("ACTIVE");
+            info.setFidoDeregistrationRequest(this.deregistrationRequest());
+            info.setAaid(AAID);
+            authenticators[i] = info;
+        }
+        return authenticators;
+    }
+
+    /***
+     * @param assertionSize - the size of the assertion, before base64url encoding
+     * @return a RegistrationResponse or AuthenticationResponse as the FIDO client returns it
+     */
+    String uafResponse(String operation, int assertionSize) {
+        JsonObject upv = new JsonObject();
+        upv.addProperty("major", 1);
+        upv.addProperty("minor", 0);
+        JsonObject header = new JsonObject();
+        header.add("upv", upv);
+        header.addProperty("op", operation);
+        header.addProperty("appID", APP_ID);
+        header.addProperty("serverData", BASE64URL.encode(this.randomBytes(64)));
+
+        JsonObject assertion = new JsonObject();
+        assertion.addProperty("assertionScheme", "UAFV1TLV");
+        assertion.addProperty("assertion", BASE64URL.encode(this.randomBytes(assertionSize)));
+        JsonArray assertions = new JsonArray();
+        assertions.add(assertion);
+
+        JsonObject response = new JsonObject();
+        response.add("header", header);
+        response.addProperty("fcParams", BASE64URL.encode(this.randomBytes(160)));
+        response.add("assertions", assertions);
+        JsonArray responses = new JsonArray();
+        responses.add(response);
+        return responses.toString();
+    }
+
+    String uuid() {
+        return new UUID(random.nextLong(), random.nextLong()).toString();
+    }
+
+    private String deregistrationRequest() {
+        return "[{\"header\":{\"upv\":{\"major\":1,\"minor\":0},\"op\":\"Dereg\",\"appID\":\"" + APP_ID + "\"},"
+                + "\"authenticators\":[{\"aaid\":\"" + AAID + "\",\"keyID\":\"" + BASE64URL.encode(this.randomBytes(32)) + "\"}]}]";
+    }
+
+    private byte[] randomBytes(int size) {
+        byte[] bytes = new byte[size];
+        random.nextBytes(bytes);
+        return bytes;
+    }
+
+    /***
+     * Encode the object as the server would send it
+     */
+    static byte[] encode(Object object) {
+        return ModelCodec.getGson().toJson(object).getBytes(Charsets.UTF_8);
+    }
+
+    /***
+     * Decode a response body as RelyingPartyClient does, straight from the stream
+     */
+    static <T> T decode(byte[] body, Class<T> clazz) {
+        return ModelCodec.getGson().fromJson(new JsonReader(new InputStreamReader(new ByteArrayInputStream(body), Charsets.UTF_8)), clazz);
+    }
+}
@@ -0,0 +1,468 @@
+/*
+* Copyright Daon.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.daon.identityx.loadgen;
+
+import com.daon.identityx.comms.CircuitBreaker;
+import com.daon.identityx.comms.CircuitBreakers;
+import com.daon.identityx.comms.HttpConnectionPool;
+import com.daon.identityx.comms.RequestTiming;
+import com.daon.identityx.comms.RetryPolicy;
+import com.daon.identityx.comms.TlsContext;
+import com.daon.identityx.exception.CommunicationsException;
+import com.daon.identityx.exception.ServerError;
+import com.daon.identityx.uaf.simulator.UafClientException;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.io.PrintStream;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Generates load on a relying party server by running scripted flows of the app's calls for a
+ * number of concurrent virtual users.
+ *
+ * Flows arrive at a fixed average rate, with random (Poisson) gaps, whether or not earlier flows
+ * have finished - the server is loaded as by many independent users rather than by a fixed set
+ * of clients which each wait for their last reply.  Each arriving flow is run by a free virtual
+ * user or waits for one.  The latency of a flow is measured from the time it was due to start,
+ * so it includes the time it waited and a slow server is not hidden by fewer flows being sent.
+ *
+ * The latency of each call is recorded per endpoint from the client's request timing.  Calls
+ * made during the warm up are not recorded.  At the end the p50, p99 and p99.9 latency and the
+ * throughput of each endpoint and of the flows are printed.
+ *
+ * Run it with: java -jar load-generator.jar [--url http://localhost:8443/] [--users 50]
+ *     [--rate 10] [--duration 60] [--warmup 10] [--script create-auth-request,create-session]
+ *     [--report-interval 10] [--client-policies]
+ *
+ * Created by Daon
+ */
+public class LoadGenerator {
+
+    public static final String DEFAULT_URL = "http://localhost:8443/";
+    public static final int DEFAULT_USERS = 50;
+    public static final double DEFAULT_RATE = 10;
+    public static final long DEFAULT_DURATION = 60 * 1000;
+    public static final long DEFAULT_WARMUP = 10 * 1000;
+    public static final long DEFAULT_REPORT_INTERVAL = 10 * 1000;
+    // How long flows still running when the last one has been started are waited for
+    public static final long DRAIN_TIMEOUT = 30 * 1000;
+
+    private final String baseUrl;
+    private int users = DEFAULT_USERS;
+    private double rate = DEFAULT_RATE;
+    private long duration = DEFAULT_DURATION;
+    private long warmup = DEFAULT_WARMUP;
+    private long reportInterval = DEFAULT_REPORT_INTERVAL;
+    private List<Step> script = Step.FULL_FLOW;
+    private boolean clientPolicies;
+    private PrintStream out = System.out;
+
+    private final ConcurrentMap<String, Endpoint> endpoints = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, AtomicLong> failures = new ConcurrentHashMap<>();
+    private final LatencyHistogram flowLatency = new LatencyHistogram();
+    private final AtomicLong arrivals = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong lastCompletion = new AtomicLong();
+    private volatile long measureStart;
+
+    /***
+     * @param baseUrl - the base URL of the server, ending with a slash
+     */
+    public LoadGenerator(String baseUrl) {
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl : baseUrl + "/";
+    }
+
+    /***
+     * @param users - the number of virtual users, the most flows which can run at once
+     */
+    public void setUsers(int users) {
+        if (users < 1) {
+            throw new IllegalArgumentException("users < 1: " + users);
+        }
+        this.users = users;
+    }
+
+    /***
+     * @param rate - the average number of flows started per second
+     */
+    public void setRate(double rate) {
+        if (rate <= 0) {
+            throw new IllegalArgumentException("rate <= 0: " + rate);
+        }
+        this.rate = rate;
+    }
+
+    /***
+     * @param duration - the time in milliseconds for which flows are started and recorded, after the warm up
+     */
+    public void setDuration(long duration) {
+        this.duration = duration;
+    }
+
+    /***
+     * @param warmup - the time in milliseconds for which flows are run but not recorded
+     */
+    public void setWarmup(long warmup) {
+        this.warmup = warmup;
+    }
+
+    /***
+     * @param reportInterval - the time in milliseconds between progress reports, 0 for none
+     */
+    public void setReportInterval(long reportInterval) {
+        this.reportInterval = reportInterval;
+    }
+
+    /***
+     * Set the steps of each flow.  If the flow does not start by creating an account each virtual
+     * user is first given an account with a registered authenticator.
+     */
+    public void setScript(List<Step> script) {
+        if (script.isEmpty()) {
+            throw new IllegalArgumentException("The script has no steps");
+        }
+        this.script = script;
+    }
+
+    /***
+     * By default the virtual users do not retry, open circuits or limit their rate, so the load on
+     * the server is the load asked for
+     *
+     * @param clientPolicies - true to keep the retry, circuit breaker and rate limit settings of the app
+     */
+    public void setClientPolicies(boolean clientPolicies) {
+        this.clientPolicies = clientPolicies;
+    }
+
+    public void setOutput(PrintStream out) {
+        this.out = out;
+    }
+
+    /***
+     * Run the load and print the results
+     *
+     * @throws InterruptedException if interrupted while running
+     */
+    public void run() throws InterruptedException {
+        HttpConnectionPool.configure(users, HttpConnectionPool.DEFAULT_KEEP_ALIVE_DURATION);
+        HttpConnectionPool connectionPool = new HttpConnectionPool(users, HttpConnectionPool.DEFAULT_KEEP_ALIVE_DURATION);
+        TlsContext tlsContext = new TlsContext();
+        BlockingQueue<User> idleUsers = new ArrayBlockingQueue<>(users);
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(users, users, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<Runnable>(),
+                new ThreadFactoryBuilder().setNameFormat("loadgen-user-%d").setDaemon(true).build());
+
+        for (int i = 0; i < users; i++) {
+            idleUsers.add(this.createUser(connectionPool, tlsContext));
+        }
+        if (script.get(0) != Step.CREATE_ACCOUNT) {
+            this.enrol(executor, idleUsers);
+        }
+
+        out.println(String.format(Locale.US, "Running %.1f flows/s for %ds (after %ds warm up) with %d virtual users against %s",
+                rate, duration / 1000, warmup / 1000, users, baseUrl));
+        StringBuilder flow = new StringBuilder("Flow:");
+        for (Step step : script) {
+            flow.append(' ').append(step.getName());
+        }
+        out.println(flow);
+
+        long start = System.nanoTime();
+        measureStart = start + TimeUnit.MILLISECONDS.toNanos(warmup);
+        long end = measureStart + TimeUnit.MILLISECONDS.toNanos(duration);
+        long nextReport = start + TimeUnit.MILLISECONDS.toNanos(reportInterval);
+        Random random = new Random();
+        long next = start;
+        while (true) {
+            // Exponential gaps between arrivals give a Poisson arrival process
+            next += (long) (-Math.log(1 - random.nextDouble()) / rate * TimeUnit.SECONDS.toNanos(1));
+            if (next >= end) {
+                break;
+            }
+            long now;
+            while ((now = System.nanoTime()) < next) {
+                if (reportInterval > 0 && now >= nextReport) {
+                    this.reportProgress(start, now, executor);
+                    nextReport += TimeUnit.MILLISECONDS.toNanos(reportInterval);
+                }
+                LockSupport.parkNanos(Math.min(next, reportInterval > 0 ? nextReport : next) - now);
+                if (Thread.interrupted()) {
+                    executor.shutdownNow();
+                    throw new InterruptedException();
+                }
+            }
+            arrivals.incrementAndGet();
+            executor.execute(new Flow(next, idleUsers));
+        }
+
+        executor.shutdown();
+        if (!executor.awaitTermination(DRAIN_TIMEOUT, TimeUnit.MILLISECONDS)) {
+            out.println("Flows still waiting or running after " + DRAIN_TIMEOUT / 1000 + "s: "
+                    + (executor.getQueue().size() + executor.getActiveCount()));
+            executor.shutdownNow();
+        }
+        this.printResults(connectionPool);
+    }
+
+    private User createUser(HttpConnectionPool connectionPool, TlsContext tlsContext) {
+        final User user = new User(new VirtualUser(baseUrl, connectionPool, tlsContext));
+        if (!clientPolicies) {
+            user.client.setRetryPolicy(RetryPolicy.NONE);
+            user.client.setCircuitBreakers(new CircuitBreakers(Integer.MAX_VALUE, CircuitBreaker.DEFAULT_OPEN_DURATION,
+                    Integer.MAX_VALUE, 1e9));
+        }
+        user.client.setRequestTimingListener(new RequestTiming.Listener() {
+            @Override
+            public void onRequestTiming(RequestTiming timing) {
+                if (user.measured) {
+                    getEndpoint(timing.getEndpoint()).record(timing);
+                }
+            }
+        });
+        return user;
+    }
+
+    /***
+     * Give every virtual user an account with a registered authenticator, in parallel
+     */
+    private void enrol(ThreadPoolExecutor executor, BlockingQueue<User> idleUsers) throws InterruptedException {
+        out.println("Enrolling " + users + " virtual users");
+        final CountDownLatch enrolled = new CountDownLatch(users);
+        final AtomicLong enrolmentFailures = new AtomicLong();
+        for (final User user : idleUsers) {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        for (Step step : Step.ENROLMENT) {
+                            user.client.run(step);
+                        }
+                    } catch (RuntimeException e) {
+                        enrolmentFailures.incrementAndGet();
+                    } finally {
+                        enrolled.countDown();
+                    }
+                }
+            });
+        }
+        enrolled.await();
+        if (enrolmentFailures.get() > 0) {
+            out.println("Virtual users which could not be enrolled: " + enrolmentFailures.get());
+        }
+    }
+
+    private Endpoint getEndpoint(String name) {
+        Endpoint endpoint = endpoints.get(name);
+        if (endpoint == null) {
+            Endpoint newEndpoint = new Endpoint();
+            endpoint = endpoints.putIfAbsent(name, newEndpoint);
+            if (endpoint == null) {
+                endpoint = newEndpoint;
+            }
+        }
+        return endpoint;
+    }
+
+    private void recordFailure(Step step, RuntimeException e) {
+        String reason;
+        if (e instanceof ServerError) {
+            reason = "server error " + ((ServerError) e).getError().getCode() + " " + ((ServerError) e).getError().getMessage();
+        } else if (e instanceof CommunicationsException) {
+            reason = "communications error " + ((CommunicationsException) e).getError().getCode() + " "
+                    + ((CommunicationsException) e).getError().getMessage();
+        } else if (e instanceof UafClientException) {
+            reason = "FIDO client error " + ((UafClientException) e).getErrorCode().getDescription() + " " + e.getMessage();
+        } else if (e instanceof IllegalStateException) {
+            reason = "not run: " + e.getMessage();
+        } else {
+            reason = e.toString();
+        }
+        String key = step.getName() + " - " + reason;
+        AtomicLong count = failures.get(key);
+        if (count == null) {
+            AtomicLong newCount = new AtomicLong();
+            count = failures.putIfAbsent(key, newCount);
+            if (count == null) {
+                count = newCount;
+            }
+        }
+        count.incrementAndGet();
+    }
+
+    private void reportProgress(long start, long now, ThreadPoolExecutor executor) {
+        out.println(String.format(Locale.US, "%5ds Started: %d Completed: %d Failed: %d Running: %d Waiting: %d",
+                TimeUnit.NANOSECONDS.toSeconds(now - start), arrivals.get(), completed.get(), failed.get(),
+                executor.getActiveCount(), executor.getQueue().size()));
+    }
+
+    private void printResults(HttpConnectionPool connectionPool) {
+        double seconds = Math.max(1, lastCompletion.get() - measureStart) / 1e9;
+        out.println();
+        out.println(String.format(Locale.US, "Flows completed: %d Failed: %d Throughput: %.1f flows/s",
+                completed.get(), failed.get(), completed.get() / seconds));
+        out.println("Flow latency: " + flowLatency);
+        out.println();
+        out.println(String.format(Locale.US, "%-36s %9s %7s %9s %9s %9s %9s %9s",
+                "Endpoint", "Requests", "Errors", "Req/s", "p50 ms", "p99 ms", "p99.9 ms", "Max ms"));
+        for (Map.Entry<String, Endpoint> entry : new TreeMap<>(endpoints).entrySet()) {
+            LatencyHistogram latency = entry.getValue().latency;
+            out.println(String.format(Locale.US, "%-36s %9d %7d %9.1f %9.2f %9.2f %9.2f %9.2f",
+                    entry.getKey(), latency.getCount(), entry.getValue().errors.get(), latency.getCount() / seconds,
+                    latency.getPercentile(50) / 1000.0, latency.getPercentile(99) / 1000.0,
+                    latency.getPercentile(99.9) / 1000.0, latency.getMax() / 1000.0));
+        }
+        if (!failures.isEmpty()) {
+            out.println();
+            out.println("Failures:");
+            for (Map.Entry<String, AtomicLong> entry : new TreeMap<>(failures).entrySet()) {
+                out.println("  " + entry.getKey() + ": " + entry.getValue().get());
+            }
+        }
+        out.println();
+        out.println("Connections: " + connectionPool.getStats());
+    }
+
+    /**
+     * A flow waiting to be run
+     */
+    private class Flow implements Runnable {
+        private final long scheduledStart;
+        private final BlockingQueue<User> idleUsers;
+
+        Flow(long scheduledStart, BlockingQueue<User> idleUsers) {
+            this.scheduledStart = scheduledStart;
+            this.idleUsers = idleUsers;
+        }
+
+        @Override
+        public void run() {
+            // There is a user for each thread so one is always free
+            User user = idleUsers.poll();
+            boolean measured = scheduledStart >= measureStart;
+            boolean succeeded = true;
+            user.measured = measured;
+            try {
+                for (Step step : script) {
+                    try {
+                        user.client.run(step);
+                    } catch (RuntimeException e) {
+                        succeeded = false;
+                        if (measured) {
+                            recordFailure(step, e);
+                        }
+                        break;
+                    }
+                }
+            } finally {
+                idleUsers.offer(user);
+            }
+            if (!measured) {
+                return;
+            }
+            long now = System.nanoTime();
+            if (succeeded) {
+                flowLatency.record(now - scheduledStart);
+                completed.incrementAndGet();
+            } else {
+                failed.incrementAndGet();
+            }
+            long last = lastCompletion.get();
+            while (now > last && !lastCompletion.compareAndSet(last, now)) {
+                last = lastCompletion.get();
+            }
+        }
+    }
+
+    private static class User {
+        private final VirtualUser client;
+        // Whether the calls of the flow being run are recorded
+        private volatile boolean measured;
+
+        User(VirtualUser client) {
+            this.client = client;
+        }
+    }
+
+    /**
+     * The calls recorded for one endpoint
+     */
+    private static class Endpoint {
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final AtomicLong errors = new AtomicLong();
+
+        void record(RequestTiming timing) {
+            latency.record(timing.getTotalTime());
+            if (timing.getStatus() < 200 || timing.getStatus() >= 400) {
+                errors.incrementAndGet();
+            }
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        String url = DEFAULT_URL;
+        for (int i = 0; i + 1 < args.length; i++) {
+            if ("--url".equals(args[i])) {
+                url = args[i + 1];
+            }
+        }
+        LoadGenerator loadGenerator = new LoadGenerator(url);
+        for (int i = 0; i < args.length; i++) {
+            String name = args[i];
+            if ("--client-policies".equals(name)) {
+                loadGenerator.setClientPolicies(true);
+                continue;
+            }
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException("No value for option: " + name);
+            }
+            String value = args[++i];
+            if ("--url".equals(name)) {
+                continue;
+            } else if ("--users".equals(name)) {
+                loadGenerator.setUsers(Integer.parseInt(value));
+            } else if ("--rate".equals(name)) {
+                loadGenerator.setRate(Double.parseDouble(value));
+            } else if ("--duration".equals(name)) {
+                loadGenerator.setDuration(TimeUnit.SECONDS.toMillis(Long.parseLong(value)));
+            } else if ("--warmup".equals(name)) {
+                loadGenerator.setWarmup(TimeUnit.SECONDS.toMillis(Long.parseLong(value)));
+            } else if ("--report-interval".equals(name)) {
+                loadGenerator.setReportInterval(TimeUnit.SECONDS.toMillis(Long.parseLong(value)));
+            } else if ("--script".equals(name)) {
+                loadGenerator.setScript(Step.parseScript(value));
+            } else {
+                throw new IllegalArgumentException("Unknown option: " + name);
+            }
+        }
+        loadGenerator.run();
+    }
+}
@@ -0,0 +1,68 @@
+/*
+* Copyright Daon.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.daon.identityx.loadgen;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * The steps of a scripted flow, each one call the app makes to the relying party server.
+ *
+ * Created by Daon
+ */
+public enum Step {
+    CREATE_ACCOUNT,
+    CREATE_REG_REQUEST,
+    CREATE_AUTHENTICATOR,
+    CREATE_AUTH_REQUEST,
+    CREATE_SESSION,
+    CREATE_TRANSACTION_AUTH_REQUEST,
+    VALIDATE_TRANSACTION_AUTH;
+
+    /***
+     * The flow of a new user of the app: sign up, register an authenticator, log in with it
+     * and confirm a transaction
+     */
+    public static final List<Step> FULL_FLOW = Arrays.asList(values());
+
+    /***
+     * The steps which give a virtual user an account with a registered authenticator
+     */
+    public static final List<Step> ENROLMENT = Arrays.asList(CREATE_ACCOUNT, CREATE_REG_REQUEST, CREATE_AUTHENTICATOR);
+
+    /***
+     * @return the name of the step as given on the command line, e.g. create-reg-request
+     */
+    public String getName() {
+        return this.name().toLowerCase(Locale.US).replace('_', '-');
+    }
+
+    /***
+     * @param script - a comma separated list of step names, e.g. create-auth-request,create-session
+     * @return the steps
+     * @throws IllegalArgumentException if a step is not known
+     */
+    public static List<Step> parseScript(String script) {
+        List<Step> steps = new ArrayList<>();
+        for (String name : script.split(",")) {
+            steps.add(Step.valueOf(name.trim().toUpperCase(Locale.US).replace('-', '_')));
+        }
+        return steps;
+    }
+}
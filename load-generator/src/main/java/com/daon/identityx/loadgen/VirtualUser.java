@@ -0,0 +1,183 @@
+/*
+* Copyright Daon.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.daon.identityx.loadgen;
+
+import com.daon.identityx.comms.HttpConnectionPool;
+import com.daon.identityx.comms.RelyingPartyClient;
+import com.daon.identityx.comms.TlsContext;
+import com.daon.identityx.controller.model.CreateAccount;
+import com.daon.identityx.controller.model.CreateAccountResponse;
+import com.daon.identityx.controller.model.CreateAuthRequestResponse;
+import com.daon.identityx.controller.model.CreateAuthenticator;
+import com.daon.identityx.controller.model.CreateRegRequestResponse;
+import com.daon.identityx.controller.model.CreateSession;
+import com.daon.identityx.controller.model.CreateTransactionAuthRequest;
+import com.daon.identityx.controller.model.ValidateTransactionAuth;
+import com.daon.identityx.uaf.simulator.SimulatedUafClient;
+
+import java.net.MalformedURLException;
+import java.util.UUID;
+
+/**
+ * One simulated user of the app.  The user makes the same calls, through the same client code, as
+ * the app does, and keeps the state the app would keep between them - the session and the FIDO
+ * request being answered.  FIDO requests are answered by a {@link SimulatedUafClient}, with real
+ * keys, as the user's device; each new account is made on a new device.
+ *
+ * A virtual user runs one flow at a time.
+ *
+ * Created by Daon
+ */
+public class VirtualUser extends RelyingPartyClient {
+
+    private static final String PASSWORD = "Passw0rd!";
+    private static final String TRANSACTION_CONTENT_TYPE = "text/plain";
+
+    private final String baseUrl;
+    private SimulatedUafClient uafClient = new SimulatedUafClient();
+
+    private volatile String sessionId;
+    private String email;
+    private String fidoRequest;
+    private String fidoRequestId;
+
+    private int transactions;
+
+    /***
+     * @param baseUrl - the base URL of the server, ending with a slash
+     */
+    public VirtualUser(String baseUrl, HttpConnectionPool connectionPool, TlsContext tlsContext) {
+        super(connectionPool, tlsContext);
+        this.baseUrl = baseUrl;
+    }
+
+    @Override
+    protected String getBaseUrl() throws MalformedURLException {
+        return baseUrl;
+    }
+
+    @Override
+    protected String getSessionId() {
+        return sessionId;
+    }
+
+    /***
+     * Make the call of the step
+     *
+     * @throws IllegalStateException if an earlier step the step depends on has not been run
+     * @throws com.daon.identityx.uaf.simulator.UafClientException if the FIDO request could not be answered
+     * @throws com.daon.identityx.exception.CommunicationsException if the server could not be reached
+     * @throws com.daon.identityx.exception.ServerError if the server rejected the call
+     */
+    public void run(Step step) {
+        switch (step) {
+            case CREATE_ACCOUNT:
+                this.createAccount();
+                break;
+            case CREATE_REG_REQUEST:
+                this.requireSession();
+                CreateRegRequestResponse regRequest = this.createRegRequest();
+                this.setFidoRequest(regRequest.getFidoRegistrationRequest(), regRequest.getRegistrationRequestId());
+                break;
+            case CREATE_AUTHENTICATOR:
+                this.registerAuthenticator();
+                break;
+            case CREATE_AUTH_REQUEST:
+                CreateAuthRequestResponse authRequest = this.createAuthRequest();
+                this.setFidoRequest(authRequest.getFidoAuthenticationRequest(), authRequest.getAuthenticationRequestId());
+                break;
+            case CREATE_SESSION:
+                this.authenticate();
+                break;
+            case CREATE_TRANSACTION_AUTH_REQUEST:
+                this.requireSession();
+                CreateTransactionAuthRequest createTransactionAuthRequest = new CreateTransactionAuthRequest();
+                createTransactionAuthRequest.setTransactionContentType(TRANSACTION_CONTENT_TYPE);
+                createTransactionAuthRequest.setTransactionContent("Pay " + (++transactions * 10) + ".00 EUR to ACME Ltd.");
+                CreateAuthRequestResponse transactionRequest = this.createTransactionAuthRequest(createTransactionAuthRequest);
+                this.setFidoRequest(transactionRequest.getFidoAuthenticationRequest(),
+                        transactionRequest.getAuthenticationRequestId());
+                break;
+            case VALIDATE_TRANSACTION_AUTH:
+                this.requireSession();
+                ValidateTransactionAuth validateTransactionAuth = new ValidateTransactionAuth();
+                validateTransactionAuth.setAuthenticationRequestId(fidoRequestId);
+                validateTransactionAuth.setFidoAuthenticationResponse(this.answerAuthenticationRequest());
+                this.validateTransactionAuthRequest(validateTransactionAuth);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown step: " + step);
+        }
+    }
+
+    private void createAccount() {
+        CreateAccount createAccount = new CreateAccount();
+        createAccount.setEmail("user-" + UUID.randomUUID() + "@loadgen.example.com");
+        createAccount.setPassword(PASSWORD);
+        createAccount.setFirstName("Load");
+        createAccount.setLastName("Generator");
+        createAccount.setRegistrationRequested(false);
+        CreateAccountResponse response = this.createAccount(createAccount);
+        email = createAccount.getEmail();
+        sessionId = response.getSessionId();
+        uafClient = new SimulatedUafClient();
+        this.setFidoRequest(null, null);
+    }
+
+    private void registerAuthenticator() {
+        this.requireSession();
+        if (fidoRequest == null) {
+            throw new IllegalStateException("No registration request to answer");
+        }
+        CreateAuthenticator createAuthenticator = new CreateAuthenticator();
+        createAuthenticator.setRegistrationChallengeId(fidoRequestId);
+        createAuthenticator.setFidoReqistrationResponse(uafClient.process(fidoRequest, SimulatedUafClient.DEFAULT_CHANNEL_BINDINGS));
+        this.setFidoRequest(null, null);
+        this.createAuthenticator(createAuthenticator);
+    }
+
+    private void authenticate() {
+        CreateSession createSession = new CreateSession();
+        createSession.setAuthenticationRequestId(fidoRequestId);
+        createSession.setFidoAuthenticationResponse(this.answerAuthenticationRequest());
+        sessionId = this.createSession(createSession).getSessionId();
+    }
+
+    private String answerAuthenticationRequest() {
+        if (fidoRequest == null) {
+            throw new IllegalStateException("No authentication request to answer");
+        }
+        String response = uafClient.process(fidoRequest, SimulatedUafClient.DEFAULT_CHANNEL_BINDINGS);
+        this.setFidoRequest(null, null);
+        return response;
+    }
+
+    private void requireSession() {
+        if (sessionId == null) {
+            throw new IllegalStateException("No session");
+        }
+    }
+
+    private void setFidoRequest(String fidoRequest, String fidoRequestId) {
+        this.fidoRequest = fidoRequest;
+        this.fidoRequestId = fidoRequestId;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+}
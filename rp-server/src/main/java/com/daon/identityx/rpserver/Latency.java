@@ -0,0 +1,78 @@
+/*
+* Copyright Daon.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.daon.identityx.rpserver;
+
+import java.util.Random;
+
+/**
+ * The time the stand-in server takes to answer a request.
+ *
+ * Server response times have a long tail, so latencies are drawn from a log-normal distribution
+ * with the given median: a sigma of 0 gives a fixed latency, 0.5 puts the 99th percentile at
+ * about 3.2 times the median.
+ *
+ * Created by Daon
+ */
+public class Latency {
+
+    public static final Latency NONE = new Latency(0, 0);
+
+    private final long medianMs;
+    private final double sigma;
+    private final Random random = new Random();
+
+    /***
+     * @param medianMs - the median latency in milliseconds
+     * @param sigma - the spread of the latencies, the standard deviation of their logarithm
+     */
+    public Latency(long medianMs, double sigma) {
+        if (medianMs < 0) {
+            throw new IllegalArgumentException("medianMs < 0: " + medianMs);
+        }
+        if (sigma < 0) {
+            throw new IllegalArgumentException("sigma < 0: " + sigma);
+        }
+        this.medianMs = medianMs;
+        this.sigma = sigma;
+    }
+
+    public long getMedianMs() {
+        return medianMs;
+    }
+
+    public double getSigma() {
+        return sigma;
+    }
+
+    /***
+     * @return the latency of the next request in milliseconds
+     */
+    public long next() {
+        if (medianMs == 0 || sigma == 0) {
+            return medianMs;
+        }
+        double gaussian;
+        synchronized (random) {
+            gaussian = random.nextGaussian();
+        }
+        return Math.round(medianMs * Math.exp(sigma * gaussian));
+    }
+
+    public String toString() {
+        return "Median: " + medianMs + "ms Sigma: " + sigma;
+    }
+}
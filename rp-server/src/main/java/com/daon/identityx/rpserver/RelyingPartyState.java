@@ -0,0 +1,308 @@
+/*
+* Copyright Daon.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.daon.identityx.rpserver;
+
+import com.daon.identityx.controller.model.AuthenticatorInfo;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The accounts, sessions, authenticators and outstanding FIDO requests of the stand-in server,
+ * held in memory.
+ *
+ * Created by Daon
+ */
+public class RelyingPartyState {
+
+    public static final long DEFAULT_SESSION_TIMEOUT_MS = 30 * 60 * 1000;
+    public static final long DEFAULT_REQUEST_TIMEOUT_MS = 5 * 60 * 1000;
+
+    private final ConcurrentMap<String, Account> accounts = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Session> sessions = new ConcurrentHashMap<>();
+    // Registrations by key ID, to find the account of a FIDO authentication
+    private final ConcurrentMap<String, Registration> registrations = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, PendingRequest> pendingRequests = new ConcurrentHashMap<>();
+
+    private static final int EXPIRY_SWEEP_INTERVAL = 1024;
+
+    private final AtomicLong requestsAdded = new AtomicLong();
+    private final long sessionTimeoutMs;
+    private final long requestTimeoutMs;
+
+    public RelyingPartyState() {
+        this(DEFAULT_SESSION_TIMEOUT_MS, DEFAULT_REQUEST_TIMEOUT_MS);
+    }
+
+    /***
+     * @param sessionTimeoutMs - how long a session lasts after it was last used
+     * @param requestTimeoutMs - how long a FIDO request can be answered for
+     */
+    public RelyingPartyState(long sessionTimeoutMs, long requestTimeoutMs) {
+        this.sessionTimeoutMs = sessionTimeoutMs;
+        this.requestTimeoutMs = requestTimeoutMs;
+    }
+
+    /***
+     * @return the new account or null if there is already an account with the email
+     */
+    public Account createAccount(String email, String password, String firstName, String lastName) {
+        Account account = new Account(email, password, firstName, lastName);
+        return accounts.putIfAbsent(email, account) == null ? account : null;
+    }
+
+    public Account getAccount(String email) {
+        return accounts.get(email);
+    }
+
+    /***
+     * Delete the account and its sessions
+     *
+     * @return the authenticators of the account
+     */
+    public List<Registration> deleteAccount(Account account) {
+        accounts.remove(account.email, account);
+        for (Iterator<Session> i = sessions.values().iterator(); i.hasNext(); ) {
+            if (i.next().account == account) {
+                i.remove();
+            }
+        }
+        List<Registration> deleted;
+        synchronized (account) {
+            deleted = new ArrayList<>(account.registrations.values());
+            account.registrations.clear();
+        }
+        for (Registration registration : deleted) {
+            registrations.remove(registration.keyId, registration);
+        }
+        return deleted;
+    }
+
+    public Session createSession(Account account) {
+        Session session = new Session(UUID.randomUUID().toString(), account, account.lastLoggedIn);
+        account.lastLoggedIn = new Date();
+        sessions.put(session.id, session);
+        return session;
+    }
+
+    /***
+     * Find the session and mark it as used
+     *
+     * @return the session, null if there is no such session, or {@link Session#EXPIRED}
+     */
+    public Session useSession(String id) {
+        Session session = id == null ? null : sessions.get(id);
+        if (session == null) {
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        if (now - session.lastUsed > sessionTimeoutMs) {
+            sessions.remove(id, session);
+            return Session.EXPIRED;
+        }
+        session.lastUsed = now;
+        return session;
+    }
+
+    public boolean deleteSession(String id) {
+        return sessions.remove(id) != null;
+    }
+
+    public Registration addRegistration(Account account, AuthenticatorInfo info, String keyId) {
+        Registration registration = new Registration(account, info, keyId);
+        synchronized (account) {
+            account.registrations.put(info.getId(), registration);
+        }
+        registrations.put(keyId, registration);
+        return registration;
+    }
+
+    public Registration getRegistrationByKeyId(String keyId) {
+        return registrations.get(keyId);
+    }
+
+    public Registration removeRegistration(Account account, String id) {
+        Registration registration;
+        synchronized (account) {
+            registration = account.registrations.remove(id);
+        }
+        if (registration != null) {
+            registrations.remove(registration.keyId, registration);
+        }
+        return registration;
+    }
+
+    /***
+     * Record a FIDO request which is waiting for its response
+     *
+     * @param account - the account the request was made for, or null for a login
+     * @return the ID of the request
+     */
+    public String addPendingRequest(Account account) {
+        String id = UUID.randomUUID().toString();
+        pendingRequests.put(id, new PendingRequest(account, System.currentTimeMillis() + requestTimeoutMs));
+        // Requests which are never answered are swept out now and then rather than on every call
+        if (requestsAdded.incrementAndGet() % EXPIRY_SWEEP_INTERVAL == 0) {
+            this.removeExpiredRequests();
+        }
+        return id;
+    }
+
+    /***
+     * Remove the FIDO request as it has been answered
+     *
+     * @param id - the ID of the request
+     * @param account - the account the request must have been made for, or null for a login
+     * @return false if there is no such request for the account
+     */
+    public boolean takePendingRequest(String id, Account account) {
+        PendingRequest request = id == null ? null : pendingRequests.remove(id);
+        return request != null && request.account == account && request.expires >= System.currentTimeMillis();
+    }
+
+    private void removeExpiredRequests() {
+        long now = System.currentTimeMillis();
+        for (Iterator<PendingRequest> i = pendingRequests.values().iterator(); i.hasNext(); ) {
+            if (i.next().expires < now) {
+                i.remove();
+            }
+        }
+    }
+
+    /**
+     * A user's account
+     */
+    public static class Account {
+        private final String email;
+        private final String password;
+        private final String firstName;
+        private final String lastName;
+        private volatile Date lastLoggedIn;
+        // Guarded by the account
+        private final Map<String, Registration> registrations = new LinkedHashMap<>();
+
+        Account(String email, String password, String firstName, String lastName) {
+            this.email = email;
+            this.password = password;
+            this.firstName = firstName;
+            this.lastName = lastName;
+        }
+
+        public String getEmail() {
+            return email;
+        }
+
+        public boolean checkPassword(String password) {
+            return this.password.equals(password);
+        }
+
+        public String getFirstName() {
+            return firstName;
+        }
+
+        public String getLastName() {
+            return lastName;
+        }
+
+        public synchronized List<Registration> getRegistrations() {
+            return new ArrayList<>(registrations.values());
+        }
+
+        public synchronized Registration getRegistration(String id) {
+            return registrations.get(id);
+        }
+    }
+
+    /**
+     * A logged in session
+     */
+    public static class Session {
+
+        public static final Session EXPIRED = new Session(null, null, null);
+
+        private final String id;
+        private final Account account;
+        private final Date previousLogin;
+        private volatile long lastUsed = System.currentTimeMillis();
+
+        Session(String id, Account account, Date previousLogin) {
+            this.id = id;
+            this.account = account;
+            this.previousLogin = previousLogin;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public Account getAccount() {
+            return account;
+        }
+
+        /***
+         * @return when the account was logged in to before this session, or null
+         */
+        public Date getPreviousLogin() {
+            return previousLogin;
+        }
+    }
+
+    /**
+     * A FIDO authenticator registered to an account
+     */
+    public static class Registration {
+        private final Account account;
+        private final AuthenticatorInfo info;
+        private final String keyId;
+
+        Registration(Account account, AuthenticatorInfo info, String keyId) {
+            this.account = account;
+            this.info = info;
+            this.keyId = keyId;
+        }
+
+        public Account getAccount() {
+            return account;
+        }
+
+        public AuthenticatorInfo getInfo() {
+            return info;
+        }
+
+        public String getKeyId() {
+            return keyId;
+        }
+    }
+
+    private static class PendingRequest {
+        private final Account account;
+        private final long expires;
+
+        PendingRequest(Account account, long expires) {
+            this.account = account;
+            this.expires = expires;
+        }
+    }
+}
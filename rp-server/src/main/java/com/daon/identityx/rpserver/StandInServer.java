@@ -0,0 +1,722 @@
+/*
+* Copyright Daon.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.daon.identityx.rpserver;
+
+import com.daon.identityx.codec.ModelCodec;
+import com.daon.identityx.controller.model.*;
+import com.daon.identityx.controller.model.Error;
+import com.daon.identityx.utils.Base64Codec;
+import com.google.common.base.Charsets;
+import com.google.common.io.BaseEncoding;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.net.InetSocketAddress;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A stand-in for the relying party server, for running the app and measuring the client without
+ * an IdentityX backend.
+ *
+ * It implements every resource used by the app - accounts, sessions, regRequests, authRequests,
+ * authenticators, listAuthenticators, transactionAuthRequests and transactionAuthValidation -
+ * with accounts, sessions and authenticators kept in memory.  Responses are the size of those of
+ * the real server: FIDO requests carry a full header, challenge and policy, and authenticators
+ * carry an icon.  Each response is delayed by a {@link Latency}, set for the server and for each
+ * resource, without holding a thread, so a single machine can serve thousands of concurrent
+ * requests.
+ *
+ * GET responses have an ETag and are answered with 304 Not Modified when it matches, responses
+ * are gzip compressed when the client accepts it, and the authenticator resources accept the
+ * fields parameter.
+ *
+ * The FIDO messages are not verified - see {@link UafMessages}.
+ *
+ * Run it with: java -jar rp-server.jar [--port 8443] [--latency 50] [--latency-sigma 0.5]
+ *     [--latency-authRequests 120] [--icon-size 6144] [--threads 8] [--gzip-threshold 1024]
+ *
+ * Created by Daon
+ */
+public class StandInServer {
+
+    public static final int DEFAULT_PORT = 8443;
+    public static final int DEFAULT_ICON_SIZE = 6 * 1024;
+    public static final int DEFAULT_GZIP_THRESHOLD = 1024;
+    public static final String DEFAULT_APP_ID = "https://localhost/uaf/facets";
+
+    // The UAF status code of a successful operation
+    private static final long UAF_OK = 1200;
+    private static final String ACTIVE = "ACTIVE";
+    private static final String SESSION_IDENTIFIER_HEADER = "Session-Id";
+    private static final String JSON_CONTENT_TYPE = "application/json; charset=utf-8";
+
+    private static final Error EMAIL_ALREADY_REGISTERED = new Error(105, "An account with this email already exists");
+    private static final Error UNKNOWN_FIDO_REQUEST = new Error(204, "The FIDO request does not exist or has expired");
+    private static final Error UNKNOWN_AUTHENTICATOR = new Error(205, "The authenticator does not exist");
+
+    private final int port;
+    private final RelyingPartyState state = new RelyingPartyState();
+    private final Map<String, Latency> resourceLatencies = new ConcurrentHashMap<>();
+    private volatile Latency latency = Latency.NONE;
+    private volatile int gzipThreshold = DEFAULT_GZIP_THRESHOLD;
+    private int iconSize = DEFAULT_ICON_SIZE;
+    private int threads = Runtime.getRuntime().availableProcessors() * 2;
+
+    private final AtomicLong requests = new AtomicLong();
+    private HttpServer server;
+    private ExecutorService handlerExecutor;
+    private ScheduledExecutorService responseScheduler;
+    private UafMessages uafMessages;
+
+    /***
+     * @param port - the port to listen on, 0 for any free port
+     */
+    public StandInServer(int port) {
+        this.port = port;
+    }
+
+    /***
+     * Delay every response by the latency, unless it is set for the resource
+     */
+    public void setLatency(Latency latency) {
+        this.latency = latency;
+    }
+
+    /***
+     * Delay the responses of the resource, e.g. "authRequests", by the latency
+     */
+    public void setLatency(String resource, Latency latency) {
+        resourceLatencies.put(resource, latency);
+    }
+
+    /***
+     * @param gzipThreshold - the size from which responses are compressed, or -1 to never compress
+     */
+    public void setGzipThreshold(int gzipThreshold) {
+        this.gzipThreshold = gzipThreshold;
+    }
+
+    /***
+     * Must be set before the server is started
+     *
+     * @param iconSize - the approximate size in bytes of the icon of each authenticator
+     */
+    public void setIconSize(int iconSize) {
+        this.iconSize = iconSize;
+    }
+
+    /***
+     * Must be set before the server is started
+     *
+     * @param threads - the number of threads handling requests
+     */
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    public synchronized void start() throws IOException {
+        // The response headers and body are written separately, so without this each response
+        // waits for the client's delayed ACK of its headers, about 40ms
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+        uafMessages = new UafMessages(DEFAULT_APP_ID, iconSize);
+        handlerExecutor = Executors.newFixedThreadPool(threads,
+                new ThreadFactoryBuilder().setNameFormat("rp-server-%d").setDaemon(true).build());
+        responseScheduler = Executors.newScheduledThreadPool(Math.max(1, threads / 2),
+                new ThreadFactoryBuilder().setNameFormat("rp-server-response-%d").setDaemon(true).build());
+        server = HttpServer.create(new InetSocketAddress(port), 1024);
+        server.setExecutor(handlerExecutor);
+        server.createContext("/", new Handler());
+        server.start();
+    }
+
+    public synchronized void stop() {
+        if (server == null) {
+            return;
+        }
+        server.stop(0);
+        responseScheduler.shutdownNow();
+        handlerExecutor.shutdownNow();
+        server = null;
+    }
+
+    /***
+     * @return the port the server is listening on
+     */
+    public synchronized int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public long getRequestCount() {
+        return requests.get();
+    }
+
+    public RelyingPartyState getState() {
+        return state;
+    }
+
+    private class Handler implements HttpHandler {
+
+        @Override
+        public void handle(final HttpExchange exchange) throws IOException {
+            long received = System.nanoTime();
+            requests.incrementAndGet();
+            String[] path = exchange.getRequestURI().getPath().replaceAll("^/+|/+$", "").split("/");
+            String resource = path[0];
+            String id = path.length > 1 ? path[1] : null;
+
+            Response response;
+            try {
+                response = route(exchange, resource, id);
+            } catch (ErrorResponse e) {
+                response = e.response;
+            } catch (JsonParseException | IOException e) {
+                response = Response.error(400, Error.UNEXPECTED_ERROR);
+            } catch (RuntimeException e) {
+                response = Response.error(500, Error.UNEXPECTED_ERROR);
+            }
+
+            Latency resourceLatency = resourceLatencies.get(resource);
+            long delayNanos = TimeUnit.MILLISECONDS.toNanos((resourceLatency != null ? resourceLatency : latency).next())
+                    - (System.nanoTime() - received);
+            final Response toSend = response;
+            if (delayNanos <= 0) {
+                send(exchange, toSend);
+                return;
+            }
+            responseScheduler.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        send(exchange, toSend);
+                    } catch (IOException e) {
+                        // The client has gone
+                        exchange.close();
+                    }
+                }
+            }, delayNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private Response route(HttpExchange exchange, String resource, String id) throws IOException {
+        String method = exchange.getRequestMethod();
+        if ("OPTIONS".equals(method)) {
+            return Response.json(200, "{}");
+        }
+        switch (resource) {
+            case "accounts":
+                if ("POST".equals(method) && id == null) {
+                    return this.createAccount(readBody(exchange, CreateAccount.class));
+                }
+                if ("DELETE".equals(method) && id != null) {
+                    return this.deleteAccount(id);
+                }
+                break;
+            case "sessions":
+                if ("POST".equals(method) && id == null) {
+                    return this.createSession(readBody(exchange, CreateSession.class));
+                }
+                if ("DELETE".equals(method) && id != null) {
+                    if (!state.deleteSession(id)) {
+                        throw new ErrorResponse(404, Error.NON_EXISTENT_SESSION);
+                    }
+                    return Response.json(200, "{}");
+                }
+                break;
+            case "regRequests":
+                if ("GET".equals(method) && id == null) {
+                    RelyingPartyState.Account account = this.getSessionAccount(exchange);
+                    CreateRegRequestResponse response = new CreateRegRequestResponse();
+                    response.setFidoRegistrationRequest(uafMessages.createRegistrationRequest(account.getEmail()));
+                    response.setRegistrationRequestId(state.addPendingRequest(account));
+                    return Response.json(200, response);
+                }
+                break;
+            case "authRequests":
+                if ("GET".equals(method) && id == null) {
+                    CreateAuthRequestResponse response = new CreateAuthRequestResponse();
+                    response.setFidoAuthenticationRequest(uafMessages.createAuthenticationRequest(null, null));
+                    response.setAuthenticationRequestId(state.addPendingRequest(null));
+                    return Response.json(200, response);
+                }
+                break;
+            case "transactionAuthRequests":
+                if ("POST".equals(method) && id == null) {
+                    return this.createTransactionAuthRequest(this.getSessionAccount(exchange),
+                            readBody(exchange, CreateTransactionAuthRequest.class));
+                }
+                break;
+            case "transactionAuthValidation":
+                if ("POST".equals(method) && id == null) {
+                    return this.validateTransactionAuth(this.getSessionAccount(exchange),
+                            readBody(exchange, ValidateTransactionAuth.class));
+                }
+                break;
+            case "authenticators":
+                if ("POST".equals(method) && id == null) {
+                    return this.createAuthenticator(this.getSessionAccount(exchange),
+                            readBody(exchange, CreateAuthenticator.class));
+                }
+                if ("GET".equals(method) && id != null) {
+                    RelyingPartyState.Registration registration = this.getSessionAccount(exchange).getRegistration(id);
+                    if (registration == null) {
+                        throw new ErrorResponse(404, UNKNOWN_AUTHENTICATOR);
+                    }
+                    GetAuthenticatorResponse response = new GetAuthenticatorResponse();
+                    response.setAuthenticatorInfo(registration.getInfo());
+                    return Response.json(200, selectFields(response, exchange));
+                }
+                if ("DELETE".equals(method) && id != null) {
+                    RelyingPartyState.Registration registration = state.removeRegistration(this.getSessionAccount(exchange), id);
+                    if (registration == null) {
+                        throw new ErrorResponse(404, UNKNOWN_AUTHENTICATOR);
+                    }
+                    return Response.json(200, uafMessages.createDeregistrationRequest(registration.getInfo().getAaid(),
+                            registration.getKeyId()));
+                }
+                break;
+            case "listAuthenticators":
+                if ("GET".equals(method) && id == null) {
+                    List<RelyingPartyState.Registration> registrations = this.getSessionAccount(exchange).getRegistrations();
+                    AuthenticatorInfo[] infos = new AuthenticatorInfo[registrations.size()];
+                    for (int i = 0; i < infos.length; i++) {
+                        infos[i] = registrations.get(i).getInfo();
+                    }
+                    ListAuthenticatorsResponse response = new ListAuthenticatorsResponse();
+                    response.setAuthenticatorInfoList(infos);
+                    return Response.json(200, selectFields(response, exchange));
+                }
+                break;
+            default:
+                throw new ErrorResponse(404, Error.METHOD_NOT_IMPLEMENTED);
+        }
+        throw new ErrorResponse(405, Error.METHOD_NOT_IMPLEMENTED);
+    }
+
+    private Response createAccount(CreateAccount request) {
+        if (isEmpty(request.getEmail())) {
+            throw new ErrorResponse(400, Error.EMAIL_NOT_PROVIDED);
+        }
+        if (isEmpty(request.getPassword())) {
+            throw new ErrorResponse(400, Error.PASSWORD_NOT_PROVIDED);
+        }
+        if (isEmpty(request.getFirstName())) {
+            throw new ErrorResponse(400, Error.FIRST_NAME_NOT_PROVIDED);
+        }
+        if (isEmpty(request.getLastName())) {
+            throw new ErrorResponse(400, Error.LAST_NAME_NOT_PROVIDED);
+        }
+        RelyingPartyState.Account account = state.createAccount(request.getEmail(), request.getPassword(),
+                request.getFirstName(), request.getLastName());
+        if (account == null) {
+            throw new ErrorResponse(409, EMAIL_ALREADY_REGISTERED);
+        }
+
+        CreateAccountResponse response = new CreateAccountResponse();
+        response.setSessionId(state.createSession(account).getId());
+        if (request.isRegistrationRequested()) {
+            response.setFidoRegistrationRequest(uafMessages.createRegistrationRequest(account.getEmail()));
+            response.setRegistrationRequestId(state.addPendingRequest(account));
+        }
+        return Response.json(201, response);
+    }
+
+    private Response deleteAccount(String sessionId) {
+        RelyingPartyState.Account account = this.getAccount(sessionId);
+        List<RelyingPartyState.Registration> registrations = state.deleteAccount(account);
+        AuthenticatorInfo[] deregistrations = new AuthenticatorInfo[registrations.size()];
+        for (int i = 0; i < deregistrations.length; i++) {
+            RelyingPartyState.Registration registration = registrations.get(i);
+            AuthenticatorInfo info = copy(registration.getInfo());
+            info.setFidoDeregistrationRequest(uafMessages.createDeregistrationRequest(info.getAaid(), registration.getKeyId()));
+            deregistrations[i] = info;
+        }
+        DeleteAccountResponse response = new DeleteAccountResponse();
+        response.setFidoDeregistrationRequests(deregistrations);
+        return Response.json(200, response);
+    }
+
+    private Response createSession(CreateSession request) {
+        RelyingPartyState.Account account;
+        AuthenticationMethod method;
+        if (!isEmpty(request.getEmail()) && !isEmpty(request.getPassword())) {
+            account = state.getAccount(request.getEmail());
+            if (account == null || !account.checkPassword(request.getPassword())) {
+                throw new ErrorResponse(401, Error.INVALID_CREDENTIALS);
+            }
+            method = AuthenticationMethod.USERNAME_PASSWORD;
+        } else if (!isEmpty(request.getFidoAuthenticationResponse())) {
+            if (isEmpty(request.getAuthenticationRequestId())) {
+                throw new ErrorResponse(400, Error.AUTHENTICATION_REQUEST_ID_NOT_PROVIDED);
+            }
+            if (!state.takePendingRequest(request.getAuthenticationRequestId(), null)) {
+                throw new ErrorResponse(401, UNKNOWN_FIDO_REQUEST);
+            }
+            RelyingPartyState.Registration registration = this.getRegistration(request.getFidoAuthenticationResponse());
+            if (registration == null) {
+                throw new ErrorResponse(401, Error.FIDO_AUTH_COMPLETE_USER_NOT_FOUND);
+            }
+            account = registration.getAccount();
+            method = AuthenticationMethod.FIDO_AUTHENTICATION;
+        } else {
+            throw new ErrorResponse(400, Error.INSUFFICIENT_CREDENTIALS);
+        }
+
+        RelyingPartyState.Session session = state.createSession(account);
+        CreateSessionResponse response = new CreateSessionResponse();
+        response.setSessionId(session.getId());
+        response.setLastLoggedIn(session.getPreviousLogin());
+        response.setLoggedInWith(method);
+        response.setEmail(account.getEmail());
+        response.setFirstName(account.getFirstName());
+        response.setLastName(account.getLastName());
+        if (method == AuthenticationMethod.FIDO_AUTHENTICATION) {
+            response.setFidoResponseCode(UAF_OK);
+            response.setFidoResponseMsg("OK");
+        }
+        return Response.json(201, response);
+    }
+
+    private Response createTransactionAuthRequest(RelyingPartyState.Account account, CreateTransactionAuthRequest request) {
+        if (isEmpty(request.getTransactionContent())) {
+            throw new ErrorResponse(400, Error.TRANSACTION_CONTENT_NOT_PROVIDED);
+        }
+        CreateAuthRequestResponse response = new CreateAuthRequestResponse();
+        response.setFidoAuthenticationRequest(uafMessages.createAuthenticationRequest(request.getTransactionContentType(),
+                request.getTransactionContent()));
+        response.setAuthenticationRequestId(state.addPendingRequest(account));
+        return Response.json(201, response);
+    }
+
+    private Response validateTransactionAuth(RelyingPartyState.Account account, ValidateTransactionAuth request) {
+        if (isEmpty(request.getAuthenticationRequestId())) {
+            throw new ErrorResponse(400, Error.AUTHENTICATION_REQUEST_ID_NOT_PROVIDED);
+        }
+        if (!state.takePendingRequest(request.getAuthenticationRequestId(), account)) {
+            throw new ErrorResponse(401, UNKNOWN_FIDO_REQUEST);
+        }
+        RelyingPartyState.Registration registration = this.getRegistration(request.getFidoAuthenticationResponse());
+        if (registration == null || registration.getAccount() != account) {
+            throw new ErrorResponse(401, Error.INVALID_CREDENTIALS);
+        }
+        ValidateTransactionAuthResponse response = new ValidateTransactionAuthResponse();
+        response.setFidoAuthenticationResponse(request.getFidoAuthenticationResponse());
+        response.setFidoResponseCode(UAF_OK);
+        response.setFidoResponseMsg("OK");
+        return Response.json(201, response);
+    }
+
+    private Response createAuthenticator(RelyingPartyState.Account account, CreateAuthenticator request) {
+        if (!state.takePendingRequest(request.getRegistrationChallengeId(), account)) {
+            throw new ErrorResponse(401, UNKNOWN_FIDO_REQUEST);
+        }
+
+        // Responses without a UAF V1 TLV assertion, e.g. from a load generator, are accepted
+        // as a registration of one of the known authenticators with a new key
+        UafMessages.KeyIdentity identity = UafMessages.readKeyIdentity(request.getFidoReqistrationResponse());
+        UafMessages.Authenticator authenticator = identity != null ? UafMessages.getAuthenticator(identity.getAaid()) : null;
+        if (authenticator == null) {
+            authenticator = UafMessages.AUTHENTICATORS[account.getRegistrations().size() % UafMessages.AUTHENTICATORS.length];
+        }
+        String keyId = identity != null ? identity.getKeyId()
+                : Base64Codec.URL_SAFE_NO_PADDING.encodeToString(UUID.randomUUID().toString().getBytes(Charsets.US_ASCII));
+
+        AuthenticatorInfo info = new AuthenticatorInfo();
+        info.setId(UUID.randomUUID().toString());
+        info.setCreated(new Date());
+        info.setName(authenticator.getName());
+        info.setDescription(authenticator.getDescription());
+        info.setVendorName(authenticator.getVendorName());
+        info.setIcon(uafMessages.getIcon());
+        info.setStatus(ACTIVE);
+        info.setAaid(identity != null ? identity.getAaid() : authenticator.getAaid());
+        state.addRegistration(account, info, keyId);
+
+        CreateAuthenticatorResponse response = new CreateAuthenticatorResponse();
+        response.setFidoRegistrationConfirmation("");
+        response.setFidoResponseCode(UAF_OK);
+        response.setFidoResponseMsg("OK");
+        return Response.json(201, response);
+    }
+
+    /***
+     * Find the registration of the key which signed a FIDO authentication response, and note
+     * that it has been used
+     */
+    private RelyingPartyState.Registration getRegistration(String fidoAuthenticationResponse) {
+        UafMessages.KeyIdentity identity = UafMessages.readKeyIdentity(fidoAuthenticationResponse);
+        RelyingPartyState.Registration registration = identity == null ? null : state.getRegistrationByKeyId(identity.getKeyId());
+        if (registration != null) {
+            registration.getInfo().setLastUsed(new Date());
+        }
+        return registration;
+    }
+
+    private RelyingPartyState.Account getSessionAccount(HttpExchange exchange) {
+        return this.getAccount(exchange.getRequestHeaders().getFirst(SESSION_IDENTIFIER_HEADER));
+    }
+
+    private RelyingPartyState.Account getAccount(String sessionId) {
+        RelyingPartyState.Session session = state.useSession(sessionId);
+        if (session == null) {
+            throw new ErrorResponse(401, Error.UNKNOWN_SESSION_IDENTIFIER);
+        }
+        if (session == RelyingPartyState.Session.EXPIRED) {
+            throw new ErrorResponse(401, Error.EXPIRED_SESSION);
+        }
+        return session.getAccount();
+    }
+
+    private static <T> T readBody(HttpExchange exchange, Class<T> clazz) throws IOException {
+        InputStream stream = exchange.getRequestBody();
+        if ("gzip".equalsIgnoreCase(exchange.getRequestHeaders().getFirst("Content-Encoding"))) {
+            stream = new GZIPInputStream(stream);
+        }
+        Reader reader = new InputStreamReader(stream, Charsets.UTF_8);
+        try {
+            T body = ModelCodec.getGson().fromJson(reader, clazz);
+            if (body == null) {
+                throw new ErrorResponse(400, Error.UNEXPECTED_ERROR);
+            }
+            return body;
+        } finally {
+            reader.close();
+        }
+    }
+
+    /***
+     * Apply the fields parameter of the request, a comma separated list of the fields of the
+     * authenticators to return
+     */
+    private static JsonElement selectFields(Object response, HttpExchange exchange) {
+        JsonElement json = ModelCodec.getGson().toJsonTree(response);
+        String fields = getQueryParameter(exchange.getRequestURI().getRawQuery(), "fields");
+        if (fields == null) {
+            return json;
+        }
+        Set<String> selected = new HashSet<>(Arrays.asList(fields.split(",")));
+        JsonObject object = json.getAsJsonObject();
+        if (object.has("authenticatorInfo")) {
+            retainFields(object.getAsJsonObject("authenticatorInfo"), selected);
+        }
+        if (object.has("authenticatorInfoList")) {
+            JsonArray list = object.getAsJsonArray("authenticatorInfoList");
+            for (JsonElement info : list) {
+                retainFields(info.getAsJsonObject(), selected);
+            }
+        }
+        return json;
+    }
+
+    private static void retainFields(JsonObject object, Set<String> fields) {
+        Set<String> names = new HashSet<>();
+        for (Map.Entry<String, JsonElement> entry : object.entrySet()) {
+            names.add(entry.getKey());
+        }
+        names.removeAll(fields);
+        for (String name : names) {
+            object.remove(name);
+        }
+    }
+
+    private static String getQueryParameter(String query, String name) {
+        if (query == null) {
+            return null;
+        }
+        for (String parameter : query.split("&")) {
+            int equals = parameter.indexOf('=');
+            if (equals > 0 && parameter.substring(0, equals).equals(name)) {
+                try {
+                    return java.net.URLDecoder.decode(parameter.substring(equals + 1), "utf-8");
+                } catch (java.io.UnsupportedEncodingException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        }
+        return null;
+    }
+
+    private static AuthenticatorInfo copy(AuthenticatorInfo info) {
+        return ModelCodec.getGson().fromJson(ModelCodec.getGson().toJson(info), AuthenticatorInfo.class);
+    }
+
+    private static boolean isEmpty(String value) {
+        return value == null || value.isEmpty();
+    }
+
+    /***
+     * Write the response.  Successful GET responses are given an ETag and are not sent again if
+     * the client already has them.
+     */
+    private void send(HttpExchange exchange, Response response) throws IOException {
+        Headers headers = exchange.getResponseHeaders();
+        byte[] body = response.body;
+        if ("GET".equals(exchange.getRequestMethod()) && response.status == 200) {
+            String etag = etag(body);
+            headers.set("ETag", etag);
+            if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                exchange.sendResponseHeaders(304, -1);
+                exchange.close();
+                return;
+            }
+        }
+
+        headers.set("Content-Type", JSON_CONTENT_TYPE);
+        String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+        int threshold = gzipThreshold;
+        if (threshold >= 0 && body.length >= threshold && acceptEncoding != null && acceptEncoding.contains("gzip")) {
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(body.length / 2);
+            GZIPOutputStream gzip = new GZIPOutputStream(compressed);
+            gzip.write(body);
+            gzip.close();
+            body = compressed.toByteArray();
+            headers.set("Content-Encoding", "gzip");
+        }
+
+        exchange.sendResponseHeaders(response.status, body.length);
+        OutputStream out = exchange.getResponseBody();
+        out.write(body);
+        out.close();
+    }
+
+    private static String etag(byte[] body) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(body);
+            return "\"" + BaseEncoding.base16().lowerCase().encode(digest, 0, 8) + "\"";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * A response waiting to be sent
+     */
+    private static class Response {
+        private final int status;
+        private final byte[] body;
+
+        private Response(int status, byte[] body) {
+            this.status = status;
+            this.body = body;
+        }
+
+        static Response json(int status, Object body) {
+            String json = body instanceof String ? (String) body : ModelCodec.getGson().toJson(body);
+            return new Response(status, json.getBytes(Charsets.UTF_8));
+        }
+
+        static Response json(int status, JsonElement body) {
+            return new Response(status, body.toString().getBytes(Charsets.UTF_8));
+        }
+
+        static Response error(int status, Error error) {
+            return json(status, (Object) error);
+        }
+    }
+
+    /**
+     * Thrown to answer a request with an error
+     */
+    private static class ErrorResponse extends RuntimeException {
+        private final Response response;
+
+        ErrorResponse(int status, Error error) {
+            super(error.getMessage());
+            this.response = Response.error(status, error);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int port = DEFAULT_PORT;
+        long latencyMs = 0;
+        double sigma = 0;
+        StandInServer server = null;
+        Map<String, Long> resourceLatencies = new ConcurrentHashMap<>();
+        Integer iconSize = null;
+        Integer threads = null;
+        Integer gzipThreshold = null;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String name = args[i];
+            String value = args[i + 1];
+            if ("--port".equals(name)) {
+                port = Integer.parseInt(value);
+            } else if ("--latency".equals(name)) {
+                latencyMs = Long.parseLong(value);
+            } else if ("--latency-sigma".equals(name)) {
+                sigma = Double.parseDouble(value);
+            } else if (name.startsWith("--latency-")) {
+                resourceLatencies.put(name.substring("--latency-".length()), Long.parseLong(value));
+            } else if ("--icon-size".equals(name)) {
+                iconSize = Integer.parseInt(value);
+            } else if ("--threads".equals(name)) {
+                threads = Integer.parseInt(value);
+            } else if ("--gzip-threshold".equals(name)) {
+                gzipThreshold = Integer.parseInt(value);
+            } else {
+                throw new IllegalArgumentException("Unknown option: " + name);
+            }
+        }
+
+        server = new StandInServer(port);
+        server.setLatency(new Latency(latencyMs, sigma));
+        for (Map.Entry<String, Long> entry : resourceLatencies.entrySet()) {
+            server.setLatency(entry.getKey(), new Latency(entry.getValue(), sigma));
+        }
+        if (iconSize != null) {
+            server.setIconSize(iconSize);
+        }
+        if (threads != null) {
+            server.setThreads(threads);
+        }
+        if (gzipThreshold != null) {
+            server.setGzipThreshold(gzipThreshold);
+        }
+        server.start();
+        System.out.println("Stand-in relying party server listening on http://localhost:" + server.getPort() + "/");
+        Thread.currentThread().join();
+    }
+}
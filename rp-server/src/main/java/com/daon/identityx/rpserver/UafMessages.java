@@ -0,0 +1,365 @@
+/*
+* Copyright Daon.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.daon.identityx.rpserver;
+
+import com.daon.identityx.utils.Base64Codec;
+import com.google.common.base.Charsets;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.security.SecureRandom;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Builds the FIDO UAF messages returned by the stand-in server, and reads the AAID and key ID
+ * out of the registration and authentication responses sent to it.
+ *
+ * The messages have the structure and the size of those of a real FIDO server - a random
+ * challenge, opaque server data and a policy listing every supported authenticator - but the
+ * responses are not verified: assertions are not checked against the challenge and signatures
+ * are not checked at all.
+ *
+ * Created by Daon
+ */
+public class UafMessages {
+
+    // The TLV tags of the UAF authenticator commands, from the FIDO UAF Registry
+    static final int TAG_UAFV1_REG_ASSERTION = 0x3E01;
+    static final int TAG_UAFV1_AUTH_ASSERTION = 0x3E02;
+    static final int TAG_UAFV1_KRD = 0x3E03;
+    static final int TAG_UAFV1_SIGNED_DATA = 0x3E04;
+    static final int TAG_KEYID = 0x2E09;
+    static final int TAG_AAID = 0x2E0B;
+    // Tags of composite values, whose value is a sequence of TLVs, have this bit set
+    private static final int TAG_COMPOSITE = 0x1000;
+
+    private static final int CHALLENGE_SIZE = 32;
+    private static final int SERVER_DATA_SIZE = 96;
+    private static final int ICON_WIDTH = 64;
+
+    /**
+     * The authenticators which the stand-in server accepts and describes
+     */
+    public static final Authenticator[] AUTHENTICATORS = {
+            new Authenticator("D409#0101", "Fingerprint", "Fingerprint authenticator using the device sensor"),
+            new Authenticator("D409#0201", "Face", "Face authenticator with liveness detection"),
+            new Authenticator("D409#0301", "Voice", "Voice authenticator using a spoken passphrase"),
+            new Authenticator("D409#0401", "PIN", "PIN authenticator protected by the device keystore"),
+            new Authenticator("D409#0501", "Eye", "Eye verification authenticator"),
+            new Authenticator("D409#0601", "Pattern", "Pattern authenticator"),
+    };
+
+    private static final String VENDOR_NAME = "Daon";
+    private static final Base64Codec BASE64URL = Base64Codec.URL_SAFE_NO_PADDING;
+
+    private final String appId;
+    private final SecureRandom secureRandom = new SecureRandom();
+    private final String icon;
+
+    /***
+     * @param appId - the AppID put in the header of every request
+     * @param iconSize - the approximate size in bytes of the PNG icon of each authenticator
+     */
+    public UafMessages(String appId, int iconSize) {
+        this.appId = appId;
+        this.icon = "data:image/png;base64," + Base64Codec.STANDARD.encodeToString(createPng(iconSize));
+    }
+
+    /***
+     * @return the icon of every authenticator, as a data: URI
+     */
+    public String getIcon() {
+        return icon;
+    }
+
+    public static Authenticator getAuthenticator(String aaid) {
+        for (Authenticator authenticator : AUTHENTICATORS) {
+            if (authenticator.aaid.equals(aaid)) {
+                return authenticator;
+            }
+        }
+        return null;
+    }
+
+    /***
+     * @param username - the user being registered
+     * @return a UAF RegistrationRequest
+     */
+    public String createRegistrationRequest(String username) {
+        JsonObject request = this.createRequest("Reg");
+        request.addProperty("username", username);
+        return wrap(request);
+    }
+
+    /***
+     * @param transactionContentType - the MIME type of the transaction, or null if there is none
+     * @param transactionContent - the transaction to be confirmed, or null if there is none
+     * @return a UAF AuthenticationRequest
+     */
+    public String createAuthenticationRequest(String transactionContentType, String transactionContent) {
+        JsonObject request = this.createRequest("Auth");
+        if (transactionContent != null) {
+            JsonObject transaction = new JsonObject();
+            transaction.addProperty("contentType", transactionContentType != null ? transactionContentType : "text/plain");
+            transaction.addProperty("content", BASE64URL.encodeToString(transactionContent.getBytes(Charsets.UTF_8)));
+            JsonArray transactions = new JsonArray();
+            transactions.add(transaction);
+            request.add("transaction", transactions);
+        }
+        return wrap(request);
+    }
+
+    /***
+     * @param aaid - the AAID of the authenticator
+     * @param keyId - the key ID of the registration
+     * @return a UAF DeregistrationRequest
+     */
+    public String createDeregistrationRequest(String aaid, String keyId) {
+        JsonObject request = new JsonObject();
+        request.add("header", this.createHeader("Dereg", false));
+        JsonObject authenticator = new JsonObject();
+        authenticator.addProperty("aaid", aaid);
+        authenticator.addProperty("keyID", keyId);
+        JsonArray authenticators = new JsonArray();
+        authenticators.add(authenticator);
+        request.add("authenticators", authenticators);
+        return wrap(request);
+    }
+
+    private JsonObject createRequest(String operation) {
+        JsonObject request = new JsonObject();
+        request.add("header", this.createHeader(operation, true));
+        request.addProperty("challenge", BASE64URL.encodeToString(this.randomBytes(CHALLENGE_SIZE)));
+        request.add("policy", createPolicy());
+        return request;
+    }
+
+    private JsonObject createHeader(String operation, boolean withServerData) {
+        JsonObject version = new JsonObject();
+        version.addProperty("major", 1);
+        version.addProperty("minor", 0);
+        JsonObject header = new JsonObject();
+        header.add("upv", version);
+        header.addProperty("op", operation);
+        header.addProperty("appID", appId);
+        if (withServerData) {
+            header.addProperty("serverData", BASE64URL.encodeToString(this.randomBytes(SERVER_DATA_SIZE)));
+        }
+        return header;
+    }
+
+    private static JsonObject createPolicy() {
+        JsonArray accepted = new JsonArray();
+        for (Authenticator authenticator : AUTHENTICATORS) {
+            JsonArray aaids = new JsonArray();
+            aaids.add(new JsonPrimitive(authenticator.aaid));
+            JsonObject criteria = new JsonObject();
+            criteria.add("aaid", aaids);
+            JsonArray alternative = new JsonArray();
+            alternative.add(criteria);
+            accepted.add(alternative);
+        }
+        JsonObject policy = new JsonObject();
+        policy.add("accepted", accepted);
+        return policy;
+    }
+
+    private static String wrap(JsonObject message) {
+        JsonArray messages = new JsonArray();
+        messages.add(message);
+        return messages.toString();
+    }
+
+    private byte[] randomBytes(int size) {
+        byte[] bytes = new byte[size];
+        secureRandom.nextBytes(bytes);
+        return bytes;
+    }
+
+    /***
+     * Read the AAID and key ID of the first assertion of a UAF RegistrationResponse or
+     * AuthenticationResponse
+     *
+     * @param response - the response as sent by the FIDO client
+     * @return the AAID and key ID or null if the response does not hold a UAF V1 TLV assertion
+     */
+    public static KeyIdentity readKeyIdentity(String response) {
+        if (response == null) {
+            return null;
+        }
+        try {
+            JsonElement parsed = new JsonParser().parse(response);
+            JsonObject message = parsed.isJsonArray() ? parsed.getAsJsonArray().get(0).getAsJsonObject() : parsed.getAsJsonObject();
+            JsonObject assertion = message.getAsJsonArray("assertions").get(0).getAsJsonObject();
+            byte[] tlv = BASE64URL.decode(assertion.get("assertion").getAsString());
+            byte[] aaid = findTag(tlv, 0, tlv.length, TAG_AAID);
+            byte[] keyId = findTag(tlv, 0, tlv.length, TAG_KEYID);
+            if (aaid == null || keyId == null) {
+                return null;
+            }
+            return new KeyIdentity(new String(aaid, Charsets.UTF_8), BASE64URL.encodeToString(keyId));
+        } catch (JsonParseException | IllegalStateException | IllegalArgumentException | NullPointerException
+                | IndexOutOfBoundsException | ClassCastException e) {
+            return null;
+        }
+    }
+
+    /***
+     * Find the first value with the tag, looking inside composite values
+     */
+    static byte[] findTag(byte[] tlv, int offset, int end, int tag) {
+        int position = offset;
+        while (position + 4 <= end) {
+            int currentTag = (tlv[position] & 0xff) | ((tlv[position + 1] & 0xff) << 8);
+            int length = (tlv[position + 2] & 0xff) | ((tlv[position + 3] & 0xff) << 8);
+            int valueStart = position + 4;
+            if (valueStart + length > end) {
+                return null;
+            }
+            if (currentTag == tag) {
+                byte[] value = new byte[length];
+                System.arraycopy(tlv, valueStart, value, 0, length);
+                return value;
+            }
+            if ((currentTag & TAG_COMPOSITE) != 0) {
+                byte[] value = findTag(tlv, valueStart, valueStart + length, tag);
+                if (value != null) {
+                    return value;
+                }
+            }
+            position = valueStart + length;
+        }
+        return null;
+    }
+
+    /***
+     * Create a valid greyscale PNG of about the given size.  The pixels are noise stored without
+     * compression, so the size of the file, like that of a real icon, is not reduced by gzip.
+     */
+    static byte[] createPng(int size) {
+        int rowSize = ICON_WIDTH + 1;
+        int height = Math.max(1, size / rowSize);
+        byte[] pixels = new byte[rowSize * height];
+        new Random(height).nextBytes(pixels);
+        for (int row = 0; row < height; row++) {
+            // No filter
+            pixels[row * rowSize] = 0;
+        }
+
+        try {
+            ByteArrayOutputStream png = new ByteArrayOutputStream(size + 128);
+            DataOutputStream out = new DataOutputStream(png);
+            out.write(new byte[]{(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n'});
+
+            ByteArrayOutputStream header = new ByteArrayOutputStream();
+            DataOutputStream headerOut = new DataOutputStream(header);
+            headerOut.writeInt(ICON_WIDTH);
+            headerOut.writeInt(height);
+            // 8 bit greyscale, deflate, no filter, no interlace
+            headerOut.write(new byte[]{8, 0, 0, 0, 0});
+            writeChunk(out, "IHDR", header.toByteArray());
+
+            ByteArrayOutputStream data = new ByteArrayOutputStream(pixels.length + 64);
+            DeflaterOutputStream deflater = new DeflaterOutputStream(data, new Deflater(Deflater.NO_COMPRESSION));
+            deflater.write(pixels);
+            deflater.close();
+            writeChunk(out, "IDAT", data.toByteArray());
+            writeChunk(out, "IEND", new byte[0]);
+            out.flush();
+            return png.toByteArray();
+        } catch (IOException e) {
+            // Not possible when writing to memory
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void writeChunk(DataOutputStream out, String type, byte[] data) throws IOException {
+        byte[] typeBytes = type.getBytes(Charsets.US_ASCII);
+        CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(data);
+        out.writeInt(data.length);
+        out.write(typeBytes);
+        out.write(data);
+        out.writeInt((int) crc.getValue());
+    }
+
+    /**
+     * An authenticator the server accepts
+     */
+    public static class Authenticator {
+        private final String aaid;
+        private final String name;
+        private final String description;
+
+        Authenticator(String aaid, String name, String description) {
+            this.aaid = aaid;
+            this.name = name;
+            this.description = description;
+        }
+
+        public String getAaid() {
+            return aaid;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+
+        public String getVendorName() {
+            return VENDOR_NAME;
+        }
+    }
+
+    /**
+     * The AAID and key ID identifying a registration
+     */
+    public static class KeyIdentity {
+        private final String aaid;
+        private final String keyId;
+
+        public KeyIdentity(String aaid, String keyId) {
+            this.aaid = aaid;
+            this.keyId = keyId;
+        }
+
+        public String getAaid() {
+            return aaid;
+        }
+
+        /***
+         * @return the key ID, base64url encoded as in a DeregistrationRequest
+         */
+        public String getKeyId() {
+            return keyId;
+        }
+    }
+}
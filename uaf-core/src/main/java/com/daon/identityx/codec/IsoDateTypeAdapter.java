@@ -0,0 +1,62 @@
+/*
+* Copyright Daon.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.daon.identityx.codec;
+
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.text.ParseException;
+import java.util.Date;
+
+/**
+ * Type adapter for the Date fields of the model classes using {@link IsoTimestampCodec}.
+ *
+ * A value which cannot be parsed fails with a {@link JsonSyntaxException} rather than being
+ * replaced with the current time.
+ *
+ * Created by Daon
+ */
+public class IsoDateTypeAdapter extends TypeAdapter<Date> {
+
+    @Override
+    public Date read(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
+        }
+        String value = reader.nextString();
+        try {
+            return new Date(IsoTimestampCodec.parse(value));
+        } catch (ParseException e) {
+            throw new JsonSyntaxException("Invalid timestamp '" + value + "' at offset " + e.getErrorOffset()
+                    + ": " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void write(JsonWriter writer, Date value) throws IOException {
+        if (value == null) {
+            writer.nullValue();
+            return;
+        }
+        writer.value(IsoTimestampCodec.format(value.getTime()));
+    }
+}
@@ -0,0 +1,268 @@
+/*
+* Copyright Daon.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.daon.identityx.codec;
+
+import java.text.ParseException;
+
+/**
+ * Parses and formats the timestamps sent by the server in the format
+ * <code>yyyy-MM-dd'T'HH:mm:ss.SSSZ</code>, e.g. <code>2015-06-27T10:15:30.123+0100</code>.
+ *
+ * The codec is stateless and therefore thread safe.  Parsing works directly on the characters
+ * and does not create formatters, calendars or intermediate strings.  The zone may be given as
+ * <code>+hhmm</code>, <code>+hh:mm</code> or <code>Z</code>, the fraction may have 1 to 9 digits and
+ * surrounding double quotes are ignored.  Anything else is reported as a {@link ParseException}.
+ *
+ * Created by Daon
+ */
+public final class IsoTimestampCodec {
+
+    private static final long MILLIS_PER_MINUTE = 60 * 1000;
+    private static final long MILLIS_PER_DAY = 24 * 60 * MILLIS_PER_MINUTE;
+    private static final int[] DAYS_IN_MONTH = {31, 28, 31, 30, 31, 30, 31, 31, 30, 31, 30, 31};
+
+    private IsoTimestampCodec() {
+    }
+
+    /***
+     * Parse the timestamp into milliseconds since the epoch
+     *
+     * @param text - the timestamp
+     * @return the milliseconds since 1970-01-01T00:00:00Z
+     * @throws ParseException if the text is not a valid timestamp
+     */
+    public static long parse(CharSequence text) throws ParseException {
+        if (text == null) {
+            throw new ParseException("Null timestamp", 0);
+        }
+        return parse(text, 0, text.length());
+    }
+
+    /***
+     * Parse the timestamp held between start (inclusive) and end (exclusive) into milliseconds
+     * since the epoch
+     *
+     * @param text - the characters holding the timestamp
+     * @param start - the index of the first character
+     * @param end - the index after the last character
+     * @return the milliseconds since 1970-01-01T00:00:00Z
+     * @throws ParseException if the text is not a valid timestamp
+     */
+    public static long parse(CharSequence text, int start, int end) throws ParseException {
+        // Strip any quotes left around the value
+        while (start < end && text.charAt(start) == '"') {
+            start++;
+        }
+        while (end > start && text.charAt(end - 1) == '"') {
+            end--;
+        }
+
+        int pos = start;
+        int year = digits(text, pos, 4, end);
+        pos = expect(text, pos + 4, '-', end);
+        int month = digits(text, pos, 2, end);
+        pos = expect(text, pos + 2, '-', end);
+        int day = digits(text, pos, 2, end);
+        pos = expect(text, pos + 2, 'T', end);
+        int hour = digits(text, pos, 2, end);
+        pos = expect(text, pos + 2, ':', end);
+        int minute = digits(text, pos, 2, end);
+        pos = expect(text, pos + 2, ':', end);
+        int second = digits(text, pos, 2, end);
+        pos += 2;
+
+        if (month < 1 || month > 12) {
+            throw new ParseException("Invalid month: " + month, start + 5);
+        }
+        if (day < 1 || day > daysInMonth(year, month)) {
+            throw new ParseException("Invalid day: " + day, start + 8);
+        }
+        if (hour > 23 || minute > 59 || second > 59) {
+            throw new ParseException("Invalid time", start + 11);
+        }
+
+        int millis = 0;
+        if (pos < end && text.charAt(pos) == '.') {
+            pos++;
+            int fractionStart = pos;
+            int scale = 100;
+            while (pos < end && isDigit(text.charAt(pos))) {
+                if (pos - fractionStart >= 9) {
+                    throw new ParseException("Too many fraction digits", pos);
+                }
+                millis += (text.charAt(pos) - '0') * scale;
+                scale /= 10;
+                pos++;
+            }
+            if (pos == fractionStart) {
+                throw new ParseException("Missing fraction digits", pos);
+            }
+        }
+
+        if (pos >= end) {
+            throw new ParseException("Missing zone offset", pos);
+        }
+        int offsetMinutes;
+        char sign = text.charAt(pos);
+        if (sign == 'Z') {
+            offsetMinutes = 0;
+            pos++;
+        } else if (sign == '+' || sign == '-') {
+            pos++;
+            int offsetHours = digits(text, pos, 2, end);
+            pos += 2;
+            if (pos < end && text.charAt(pos) == ':') {
+                pos++;
+            }
+            int offsetMins = digits(text, pos, 2, end);
+            pos += 2;
+            if (offsetHours > 23 || offsetMins > 59) {
+                throw new ParseException("Invalid zone offset", pos - 4);
+            }
+            offsetMinutes = offsetHours * 60 + offsetMins;
+            if (sign == '-') {
+                offsetMinutes = -offsetMinutes;
+            }
+        } else {
+            throw new ParseException("Invalid zone offset", pos);
+        }
+        if (pos != end) {
+            throw new ParseException("Unexpected characters after the timestamp", pos);
+        }
+
+        long days = daysSinceEpoch(year, month, day);
+        long time = ((hour * 60L + minute) * 60L + second) * 1000L + millis;
+        return days * MILLIS_PER_DAY + time - offsetMinutes * MILLIS_PER_MINUTE;
+    }
+
+    /***
+     * Format the time as a UTC timestamp, e.g. <code>2015-06-27T09:15:30.123+0000</code>
+     *
+     * @param millis - milliseconds since the epoch
+     * @return the formatted timestamp
+     */
+    public static String format(long millis) {
+        StringBuilder sb = new StringBuilder(28);
+        format(millis, sb);
+        return sb.toString();
+    }
+
+    /***
+     * Append the time as a UTC timestamp to the builder
+     *
+     * @param millis - milliseconds since the epoch
+     * @param sb - the builder to append to
+     */
+    public static void format(long millis, StringBuilder sb) {
+        long days = floorDiv(millis, MILLIS_PER_DAY);
+        long time = millis - days * MILLIS_PER_DAY;
+
+        // Civil date from days since the epoch (Howard Hinnant's algorithm)
+        long z = days + 719468;
+        long era = (z >= 0 ? z : z - 146096) / 146097;
+        long dayOfEra = z - era * 146097;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long mp = (5 * dayOfYear + 2) / 153;
+        int day = (int) (dayOfYear - (153 * mp + 2) / 5 + 1);
+        int month = (int) (mp < 10 ? mp + 3 : mp - 9);
+        long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+
+        int ms = (int) (time % 1000);
+        int seconds = (int) (time / 1000);
+
+        appendDigits(sb, (int) year, 4);
+        sb.append('-');
+        appendDigits(sb, month, 2);
+        sb.append('-');
+        appendDigits(sb, day, 2);
+        sb.append('T');
+        appendDigits(sb, seconds / 3600, 2);
+        sb.append(':');
+        appendDigits(sb, (seconds / 60) % 60, 2);
+        sb.append(':');
+        appendDigits(sb, seconds % 60, 2);
+        sb.append('.');
+        appendDigits(sb, ms, 3);
+        sb.append("+0000");
+    }
+
+    private static long daysSinceEpoch(int year, int month, int day) {
+        // Days from civil (Howard Hinnant's algorithm)
+        long y = month <= 2 ? year - 1 : year;
+        long era = (y >= 0 ? y : y - 399) / 400;
+        long yearOfEra = y - era * 400;
+        long dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+    private static int daysInMonth(int year, int month) {
+        if (month == 2 && (year % 4 == 0 && (year % 100 != 0 || year % 400 == 0))) {
+            return 29;
+        }
+        return DAYS_IN_MONTH[month - 1];
+    }
+
+    private static int digits(CharSequence text, int pos, int count, int end) throws ParseException {
+        if (pos + count > end) {
+            throw new ParseException("Timestamp is too short", pos);
+        }
+        int value = 0;
+        for (int i = pos; i < pos + count; i++) {
+            char c = text.charAt(i);
+            if (!isDigit(c)) {
+                throw new ParseException("Expected a digit", i);
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    private static int expect(CharSequence text, int pos, char expected, int end) throws ParseException {
+        if (pos >= end || text.charAt(pos) != expected) {
+            throw new ParseException("Expected '" + expected + "'", pos);
+        }
+        return pos + 1;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static void appendDigits(StringBuilder sb, int value, int width) {
+        for (int divisor = pow10(width - 1); divisor > 0; divisor /= 10) {
+            sb.append((char) ('0' + (value / divisor) % 10));
+        }
+    }
+
+    private static int pow10(int exponent) {
+        int result = 1;
+        for (int i = 0; i < exponent; i++) {
+            result *= 10;
+        }
+        return result;
+    }
+
+    private static long floorDiv(long x, long y) {
+        long result = x / y;
+        if ((x % y != 0) && ((x ^ y) < 0)) {
+            result--;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,68 @@
+/*
+* Copyright Daon.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.daon.identityx.codec;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+import java.util.Date;
+
+/**
+ * Holds the single Gson instance used to serialise and deserialise the controller model classes.
+ *
+ * Gson instances are thread safe and cache their type adapters, so one instance is shared by all
+ * requests.  The model classes are bound with the adapters in {@link ModelTypeAdapters} rather than
+ * by reflection.  Call {@link #warmUp()} from a background thread at startup so that the first
+ * request does not pay for creating the adapters.
+ *
+ * Created by Daon
+ */
+public final class ModelCodec {
+
+    private ModelCodec() {
+    }
+
+    private static class Holder {
+        static final Gson GSON = create();
+    }
+
+    /***
+     * Returns the shared Gson instance
+     *
+     * @return Gson
+     */
+    public static Gson getGson() {
+        return Holder.GSON;
+    }
+
+    /***
+     * Create and cache the adapters of all the model classes.
+     */
+    public static void warmUp() {
+        Gson gson = getGson();
+        for (Class<?> modelClass : ModelTypeAdapters.MODEL_CLASSES) {
+            gson.getAdapter(modelClass);
+        }
+    }
+
+    private static Gson create() {
+        GsonBuilder builder = new GsonBuilder();
+        builder.registerTypeAdapter(Date.class, new IsoDateTypeAdapter());
+        builder.registerTypeAdapterFactory(ModelTypeAdapters.FACTORY);
+        return builder.create();
+    }
+}
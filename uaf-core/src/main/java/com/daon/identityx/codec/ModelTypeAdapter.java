@@ -0,0 +1,101 @@
+/*
+* Copyright Daon.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.daon.identityx.codec;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+/**
+ * Base class of the hand-written streaming adapters for the controller model classes.
+ *
+ * Subclasses create the instance, read a single named field and write the non-null fields.  This
+ * class deals with the enclosing object, null objects and fields it does not know about, which
+ * are skipped in the same way as the reflective Gson binding does.
+ *
+ * Created by Daon
+ */
+public abstract class ModelTypeAdapter<T> extends TypeAdapter<T> {
+
+    protected abstract T newInstance();
+
+    /***
+     * Read the value of the named field into the instance.
+     *
+     * @param reader - the reader positioned at the value of the field
+     * @param name - the name of the field
+     * @param instance - the instance being read
+     * @return false if the field is unknown and should be skipped
+     * @throws IOException if the value cannot be read
+     */
+    protected abstract boolean readField(JsonReader reader, String name, T instance) throws IOException;
+
+    protected abstract void writeFields(JsonWriter writer, T instance) throws IOException;
+
+    @Override
+    public T read(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
+        }
+        T instance = this.newInstance();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (reader.peek() == JsonToken.NULL) {
+                reader.nextNull();
+            } else if (!this.readField(reader, name, instance)) {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return instance;
+    }
+
+    @Override
+    public void write(JsonWriter writer, T instance) throws IOException {
+        if (instance == null) {
+            writer.nullValue();
+            return;
+        }
+        writer.beginObject();
+        this.writeFields(writer, instance);
+        writer.endObject();
+    }
+
+    protected static void writeString(JsonWriter writer, String name, String value) throws IOException {
+        if (value != null) {
+            writer.name(name).value(value);
+        }
+    }
+
+    protected static void writeNumber(JsonWriter writer, String name, Number value) throws IOException {
+        if (value != null) {
+            writer.name(name).value(value);
+        }
+    }
+
+    protected static <V> void writeValue(JsonWriter writer, String name, TypeAdapter<V> adapter, V value) throws IOException {
+        if (value != null) {
+            writer.name(name);
+            adapter.write(writer, value);
+        }
+    }
+}
@@ -0,0 +1,630 @@
+/*
+* Copyright Daon.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.daon.identityx.codec;
+
+import com.daon.identityx.controller.model.AuthenticationMethod;
+import com.daon.identityx.controller.model.AuthenticatorInfo;
+import com.daon.identityx.controller.model.CreateAccount;
+import com.daon.identityx.controller.model.CreateAccountResponse;
+import com.daon.identityx.controller.model.CreateAuthRequestResponse;
+import com.daon.identityx.controller.model.CreateAuthenticator;
+import com.daon.identityx.controller.model.CreateAuthenticatorResponse;
+import com.daon.identityx.controller.model.CreateRegRequestResponse;
+import com.daon.identityx.controller.model.CreateSession;
+import com.daon.identityx.controller.model.CreateSessionResponse;
+import com.daon.identityx.controller.model.CreateTransactionAuthRequest;
+import com.daon.identityx.controller.model.DeleteAccountResponse;
+import com.daon.identityx.controller.model.Error;
+import com.daon.identityx.controller.model.GetAuthenticatorResponse;
+import com.daon.identityx.controller.model.ListAuthenticatorsResponse;
+import com.daon.identityx.controller.model.ValidateTransactionAuth;
+import com.daon.identityx.controller.model.ValidateTransactionAuthResponse;
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Hand-written streaming type adapters for the classes in com.daon.identityx.controller.model.
+ *
+ * The JSON names are the field names of the model classes, as with the reflective binding these
+ * adapters replace.  When a field is added to a model class the corresponding adapter must be
+ * updated.
+ *
+ * Created by Daon
+ */
+public final class ModelTypeAdapters {
+
+    /**
+     * The model classes handled by {@link #FACTORY}
+     */
+    public static final Class<?>[] MODEL_CLASSES = {
+            AuthenticationMethod.class,
+            AuthenticatorInfo.class,
+            CreateAccount.class,
+            CreateAccountResponse.class,
+            CreateAuthRequestResponse.class,
+            CreateAuthenticator.class,
+            CreateAuthenticatorResponse.class,
+            CreateRegRequestResponse.class,
+            CreateSession.class,
+            CreateSessionResponse.class,
+            CreateTransactionAuthRequest.class,
+            DeleteAccountResponse.class,
+            Error.class,
+            GetAuthenticatorResponse.class,
+            ListAuthenticatorsResponse.class,
+            ValidateTransactionAuth.class,
+            ValidateTransactionAuthResponse.class
+    };
+
+    /**
+     * Factory which supplies the adapters to Gson.  The Date adapter is taken from the Gson
+     * instance so that a single date format is used throughout.
+     */
+    public static final TypeAdapterFactory FACTORY = new TypeAdapterFactory() {
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+            Class<? super T> rawType = type.getRawType();
+            if (rawType == AuthenticationMethod.class) {
+                return (TypeAdapter<T>) new AuthenticationMethodAdapter();
+            }
+            if (rawType == AuthenticatorInfo.class) {
+                return (TypeAdapter<T>) new AuthenticatorInfoAdapter(gson.getAdapter(Date.class));
+            }
+            if (rawType == CreateAccount.class) {
+                return (TypeAdapter<T>) new CreateAccountAdapter();
+            }
+            if (rawType == CreateAccountResponse.class) {
+                return (TypeAdapter<T>) new CreateAccountResponseAdapter();
+            }
+            if (rawType == CreateAuthRequestResponse.class) {
+                return (TypeAdapter<T>) new CreateAuthRequestResponseAdapter();
+            }
+            if (rawType == CreateAuthenticator.class) {
+                return (TypeAdapter<T>) new CreateAuthenticatorAdapter();
+            }
+            if (rawType == CreateAuthenticatorResponse.class) {
+                return (TypeAdapter<T>) new CreateAuthenticatorResponseAdapter();
+            }
+            if (rawType == CreateRegRequestResponse.class) {
+                return (TypeAdapter<T>) new CreateRegRequestResponseAdapter();
+            }
+            if (rawType == CreateSession.class) {
+                return (TypeAdapter<T>) new CreateSessionAdapter();
+            }
+            if (rawType == CreateSessionResponse.class) {
+                return (TypeAdapter<T>) new CreateSessionResponseAdapter(gson.getAdapter(Date.class),
+                        gson.getAdapter(AuthenticationMethod.class));
+            }
+            if (rawType == CreateTransactionAuthRequest.class) {
+                return (TypeAdapter<T>) new CreateTransactionAuthRequestAdapter();
+            }
+            if (rawType == DeleteAccountResponse.class) {
+                return (TypeAdapter<T>) new DeleteAccountResponseAdapter(gson.getAdapter(AuthenticatorInfo.class));
+            }
+            if (rawType == Error.class) {
+                return (TypeAdapter<T>) new ErrorAdapter();
+            }
+            if (rawType == GetAuthenticatorResponse.class) {
+                return (TypeAdapter<T>) new GetAuthenticatorResponseAdapter(gson.getAdapter(AuthenticatorInfo.class));
+            }
+            if (rawType == ListAuthenticatorsResponse.class) {
+                return (TypeAdapter<T>) new ListAuthenticatorsResponseAdapter(gson.getAdapter(AuthenticatorInfo.class));
+            }
+            if (rawType == ValidateTransactionAuth.class) {
+                return (TypeAdapter<T>) new ValidateTransactionAuthAdapter();
+            }
+            if (rawType == ValidateTransactionAuthResponse.class) {
+                return (TypeAdapter<T>) new ValidateTransactionAuthResponseAdapter();
+            }
+            return null;
+        }
+    };
+
+    private ModelTypeAdapters() {
+    }
+
+    static AuthenticatorInfo[] readAuthenticatorInfos(JsonReader reader, TypeAdapter<AuthenticatorInfo> adapter) throws IOException {
+        List<AuthenticatorInfo> list = new ArrayList<>();
+        reader.beginArray();
+        while (reader.hasNext()) {
+            list.add(adapter.read(reader));
+        }
+        reader.endArray();
+        return list.toArray(new AuthenticatorInfo[list.size()]);
+    }
+
+    static void writeAuthenticatorInfos(JsonWriter writer, String name, TypeAdapter<AuthenticatorInfo> adapter,
+                                        AuthenticatorInfo[] authenticatorInfos) throws IOException {
+        if (authenticatorInfos != null) {
+            writer.name(name).beginArray();
+            for (AuthenticatorInfo authenticatorInfo : authenticatorInfos) {
+                adapter.write(writer, authenticatorInfo);
+            }
+            writer.endArray();
+        }
+    }
+
+    static class AuthenticationMethodAdapter extends TypeAdapter<AuthenticationMethod> {
+        @Override
+        public AuthenticationMethod read(JsonReader reader) throws IOException {
+            if (reader.peek() == JsonToken.NULL) {
+                reader.nextNull();
+                return null;
+            }
+            String name = reader.nextString();
+            for (AuthenticationMethod method : AuthenticationMethod.values()) {
+                if (method.name().equals(name)) {
+                    return method;
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public void write(JsonWriter writer, AuthenticationMethod value) throws IOException {
+            writer.value(value == null ? null : value.name());
+        }
+    }
+
+    static class AuthenticatorInfoAdapter extends ModelTypeAdapter<AuthenticatorInfo> {
+        private final TypeAdapter<Date> dateAdapter;
+
+        AuthenticatorInfoAdapter(TypeAdapter<Date> dateAdapter) {
+            this.dateAdapter = dateAdapter;
+        }
+
+        @Override
+        protected AuthenticatorInfo newInstance() {
+            return new AuthenticatorInfo();
+        }
+
+        @Override
+        protected boolean readField(JsonReader reader, String name, AuthenticatorInfo instance) throws IOException {
+            switch (name) {
+                case "id": instance.setId(reader.nextString()); return true;
+                case "created": instance.setCreated(dateAdapter.read(reader)); return true;
+                case "lastUsed": instance.setLastUsed(dateAdapter.read(reader)); return true;
+                case "name": instance.setName(reader.nextString()); return true;
+                case "description": instance.setDescription(reader.nextString()); return true;
+                case "vendorName": instance.setVendorName(reader.nextString()); return true;
+                case "icon": instance.setIcon(reader.nextString()); return true;
+                case "status": instance.setStatus(reader.nextString()); return true;
+                case "fidoDeregistrationRequest": instance.setFidoDeregistrationRequest(reader.nextString()); return true;
+                case "aaid": instance.setAaid(reader.nextString()); return true;
+                default: return false;
+            }
+        }
+
+        @Override
+        protected void writeFields(JsonWriter writer, AuthenticatorInfo instance) throws IOException {
+            writeString(writer, "id", instance.getId());
+            writeValue(writer, "created", dateAdapter, instance.getCreated());
+            writeValue(writer, "lastUsed", dateAdapter, instance.getLastUsed());
+            writeString(writer, "name", instance.getName());
+            writeString(writer, "description", instance.getDescription());
+            writeString(writer, "vendorName", instance.getVendorName());
+            writeString(writer, "icon", instance.getIcon());
+            writeString(writer, "status", instance.getStatus());
+            writeString(writer, "fidoDeregistrationRequest", instance.getFidoDeregistrationRequest());
+            writeString(writer, "aaid", instance.getAaid());
+        }
+    }
+
+    static class CreateAccountAdapter extends ModelTypeAdapter<CreateAccount> {
+        @Override
+        protected CreateAccount newInstance() {
+            return new CreateAccount();
+        }
+
+        @Override
+        protected boolean readField(JsonReader reader, String name, CreateAccount instance) throws IOException {
+            switch (name) {
+                case "firstName": instance.setFirstName(reader.nextString()); return true;
+                case "lastName": instance.setLastName(reader.nextString()); return true;
+                case "email": instance.setEmail(reader.nextString()); return true;
+                case "password": instance.setPassword(reader.nextString()); return true;
+                case "registrationRequested": instance.setRegistrationRequested(reader.nextBoolean()); return true;
+                default: return false;
+            }
+        }
+
+        @Override
+        protected void writeFields(JsonWriter writer, CreateAccount instance) throws IOException {
+            writeString(writer, "firstName", instance.getFirstName());
+            writeString(writer, "lastName", instance.getLastName());
+            writeString(writer, "email", instance.getEmail());
+            writeString(writer, "password", instance.getPassword());
+            writer.name("registrationRequested").value(instance.isRegistrationRequested());
+        }
+    }
+
+    static class CreateAccountResponseAdapter extends ModelTypeAdapter<CreateAccountResponse> {
+        @Override
+        protected CreateAccountResponse newInstance() {
+            return new CreateAccountResponse();
+        }
+
+        @Override
+        protected boolean readField(JsonReader reader, String name, CreateAccountResponse instance) throws IOException {
+            switch (name) {
+                case "sessionId": instance.setSessionId(reader.nextString()); return true;
+                case "fidoRegistrationRequest": instance.setFidoRegistrationRequest(reader.nextString()); return true;
+                case "registrationRequestId": instance.setRegistrationRequestId(reader.nextString()); return true;
+                default: return false;
+            }
+        }
+
+        @Override
+        protected void writeFields(JsonWriter writer, CreateAccountResponse instance) throws IOException {
+            writeString(writer, "sessionId", instance.getSessionId());
+            writeString(writer, "fidoRegistrationRequest", instance.getFidoRegistrationRequest());
+            writeString(writer, "registrationRequestId", instance.getRegistrationRequestId());
+        }
+    }
+
+    static class CreateAuthRequestResponseAdapter extends ModelTypeAdapter<CreateAuthRequestResponse> {
+        @Override
+        protected CreateAuthRequestResponse newInstance() {
+            return new CreateAuthRequestResponse();
+        }
+
+        @Override
+        protected boolean readField(JsonReader reader, String name, CreateAuthRequestResponse instance) throws IOException {
+            switch (name) {
+                case "fidoAuthenticationRequest": instance.setFidoAuthenticationRequest(reader.nextString()); return true;
+                case "authenticationRequestId": instance.setAuthenticationRequestId(reader.nextString()); return true;
+                default: return false;
+            }
+        }
+
+        @Override
+        protected void writeFields(JsonWriter writer, CreateAuthRequestResponse instance) throws IOException {
+            writeString(writer, "fidoAuthenticationRequest", instance.getFidoAuthenticationRequest());
+            writeString(writer, "authenticationRequestId", instance.getAuthenticationRequestId());
+        }
+    }
+
+    static class CreateAuthenticatorAdapter extends ModelTypeAdapter<CreateAuthenticator> {
+        @Override
+        protected CreateAuthenticator newInstance() {
+            return new CreateAuthenticator();
+        }
+
+        @Override
+        protected boolean readField(JsonReader reader, String name, CreateAuthenticator instance) throws IOException {
+            switch (name) {
+                case "fidoReqistrationResponse": instance.setFidoReqistrationResponse(reader.nextString()); return true;
+                case "registrationChallengeId": instance.setRegistrationChallengeId(reader.nextString()); return true;
+                default: return false;
+            }
+        }
+
+        @Override
+        protected void writeFields(JsonWriter writer, CreateAuthenticator instance) throws IOException {
+            writeString(writer, "fidoReqistrationResponse", instance.getFidoReqistrationResponse());
+            writeString(writer, "registrationChallengeId", instance.getRegistrationChallengeId());
+        }
+    }
+
+    static class CreateAuthenticatorResponseAdapter extends ModelTypeAdapter<CreateAuthenticatorResponse> {
+        @Override
+        protected CreateAuthenticatorResponse newInstance() {
+            return new CreateAuthenticatorResponse();
+        }
+
+        @Override
+        protected boolean readField(JsonReader reader, String name, CreateAuthenticatorResponse instance) throws IOException {
+            switch (name) {
+                case "fidoRegistrationConfirmation": instance.setFidoRegistrationConfirmation(reader.nextString()); return true;
+                case "fidoResponseCode": instance.setFidoResponseCode(reader.nextLong()); return true;
+                case "fidoResponseMsg": instance.setFidoResponseMsg(reader.nextString()); return true;
+                default: return false;
+            }
+        }
+
+        @Override
+        protected void writeFields(JsonWriter writer, CreateAuthenticatorResponse instance) throws IOException {
+            writeString(writer, "fidoRegistrationConfirmation", instance.getFidoRegistrationConfirmation());
+            writeNumber(writer, "fidoResponseCode", instance.getFidoResponseCode());
+            writeString(writer, "fidoResponseMsg", instance.getFidoResponseMsg());
+        }
+    }
+
+    static class CreateRegRequestResponseAdapter extends ModelTypeAdapter<CreateRegRequestResponse> {
+        @Override
+        protected CreateRegRequestResponse newInstance() {
+            return new CreateRegRequestResponse();
+        }
+
+        @Override
+        protected boolean readField(JsonReader reader, String name, CreateRegRequestResponse instance) throws IOException {
+            switch (name) {
+                case "fidoRegistrationRequest": instance.setFidoRegistrationRequest(reader.nextString()); return true;
+                case "registrationRequestId": instance.setRegistrationRequestId(reader.nextString()); return true;
+                default: return false;
+            }
+        }
+
+        @Override
+        protected void writeFields(JsonWriter writer, CreateRegRequestResponse instance) throws IOException {
+            writeString(writer, "fidoRegistrationRequest", instance.getFidoRegistrationRequest());
+            writeString(writer, "registrationRequestId", instance.getRegistrationRequestId());
+        }
+    }
+
+    static class CreateSessionAdapter extends ModelTypeAdapter<CreateSession> {
+        @Override
+        protected CreateSession newInstance() {
+            return new CreateSession();
+        }
+
+        @Override
+        protected boolean readField(JsonReader reader, String name, CreateSession instance) throws IOException {
+            switch (name) {
+                case "email": instance.setEmail(reader.nextString()); return true;
+                case "password": instance.setPassword(reader.nextString()); return true;
+                case "fidoAuthenticationResponse": instance.setFidoAuthenticationResponse(reader.nextString()); return true;
+                case "authenticationRequestId": instance.setAuthenticationRequestId(reader.nextString()); return true;
+                default: return false;
+            }
+        }
+
+        @Override
+        protected void writeFields(JsonWriter writer, CreateSession instance) throws IOException {
+            writeString(writer, "email", instance.getEmail());
+            writeString(writer, "password", instance.getPassword());
+            writeString(writer, "fidoAuthenticationResponse", instance.getFidoAuthenticationResponse());
+            writeString(writer, "authenticationRequestId", instance.getAuthenticationRequestId());
+        }
+    }
+
+    static class CreateSessionResponseAdapter extends ModelTypeAdapter<CreateSessionResponse> {
+        private final TypeAdapter<Date> dateAdapter;
+        private final TypeAdapter<AuthenticationMethod> authenticationMethodAdapter;
+
+        CreateSessionResponseAdapter(TypeAdapter<Date> dateAdapter, TypeAdapter<AuthenticationMethod> authenticationMethodAdapter) {
+            this.dateAdapter = dateAdapter;
+            this.authenticationMethodAdapter = authenticationMethodAdapter;
+        }
+
+        @Override
+        protected CreateSessionResponse newInstance() {
+            return new CreateSessionResponse();
+        }
+
+        @Override
+        protected boolean readField(JsonReader reader, String name, CreateSessionResponse instance) throws IOException {
+            switch (name) {
+                case "sessionId": instance.setSessionId(reader.nextString()); return true;
+                case "lastLoggedIn": instance.setLastLoggedIn(dateAdapter.read(reader)); return true;
+                case "loggedInWith": instance.setLoggedInWith(authenticationMethodAdapter.read(reader)); return true;
+                case "email": instance.setEmail(reader.nextString()); return true;
+                case "firstName": instance.setFirstName(reader.nextString()); return true;
+                case "lastName": instance.setLastName(reader.nextString()); return true;
+                case "fidoAuthenticationResponse": instance.setFidoAuthenticationResponse(reader.nextString()); return true;
+                case "fidoResponseCode": instance.setFidoResponseCode(reader.nextLong()); return true;
+                case "fidoResponseMsg": instance.setFidoResponseMsg(reader.nextString()); return true;
+                default: return false;
+            }
+        }
+
+        @Override
+        protected void writeFields(JsonWriter writer, CreateSessionResponse instance) throws IOException {
+            writeString(writer, "sessionId", instance.getSessionId());
+            writeValue(writer, "lastLoggedIn", dateAdapter, instance.getLastLoggedIn());
+            writeValue(writer, "loggedInWith", authenticationMethodAdapter, instance.getLoggedInWith());
+            writeString(writer, "email", instance.getEmail());
+            writeString(writer, "firstName", instance.getFirstName());
+            writeString(writer, "lastName", instance.getLastName());
+            writeString(writer, "fidoAuthenticationResponse", instance.getFidoAuthenticationResponse());
+            writeNumber(writer, "fidoResponseCode", instance.getFidoResponseCode());
+            writeString(writer, "fidoResponseMsg", instance.getFidoResponseMsg());
+        }
+    }
+
+    static class CreateTransactionAuthRequestAdapter extends ModelTypeAdapter<CreateTransactionAuthRequest> {
+        @Override
+        protected CreateTransactionAuthRequest newInstance() {
+            return new CreateTransactionAuthRequest();
+        }
+
+        @Override
+        protected boolean readField(JsonReader reader, String name, CreateTransactionAuthRequest instance) throws IOException {
+            switch (name) {
+                case "transactionContentType": instance.setTransactionContentType(reader.nextString()); return true;
+                case "transactionContent": instance.setTransactionContent(reader.nextString()); return true;
+                case "stepUpAuth": instance.setStepUpAuth(reader.nextBoolean()); return true;
+                default: return false;
+            }
+        }
+
+        @Override
+        protected void writeFields(JsonWriter writer, CreateTransactionAuthRequest instance) throws IOException {
+            writeString(writer, "transactionContentType", instance.getTransactionContentType());
+            writeString(writer, "transactionContent", instance.getTransactionContent());
+            writer.name("stepUpAuth").value(instance.isStepUpAuth());
+        }
+    }
+
+    static class DeleteAccountResponseAdapter extends ModelTypeAdapter<DeleteAccountResponse> {
+        private final TypeAdapter<AuthenticatorInfo> authenticatorInfoAdapter;
+
+        DeleteAccountResponseAdapter(TypeAdapter<AuthenticatorInfo> authenticatorInfoAdapter) {
+            this.authenticatorInfoAdapter = authenticatorInfoAdapter;
+        }
+
+        @Override
+        protected DeleteAccountResponse newInstance() {
+            return new DeleteAccountResponse();
+        }
+
+        @Override
+        protected boolean readField(JsonReader reader, String name, DeleteAccountResponse instance) throws IOException {
+            if (name.equals("fidoDeregistrationRequests")) {
+                instance.setFidoDeregistrationRequests(readAuthenticatorInfos(reader, authenticatorInfoAdapter));
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        protected void writeFields(JsonWriter writer, DeleteAccountResponse instance) throws IOException {
+            writeAuthenticatorInfos(writer, "fidoDeregistrationRequests", authenticatorInfoAdapter,
+                    instance.getFidoDeregistrationRequests());
+        }
+    }
+
+    static class ErrorAdapter extends ModelTypeAdapter<Error> {
+        @Override
+        protected Error newInstance() {
+            return new Error();
+        }
+
+        @Override
+        protected boolean readField(JsonReader reader, String name, Error instance) throws IOException {
+            switch (name) {
+                case "code": instance.setCode(reader.nextInt()); return true;
+                case "message": instance.setMessage(reader.nextString()); return true;
+                case "fidoMessage": instance.setFidoMessage(reader.nextString()); return true;
+                case "fidoResponseCode": instance.setFidoResponseCode(reader.nextLong()); return true;
+                case "fidoResponseMsg": instance.setFidoResponseMsg(reader.nextString()); return true;
+                default: return false;
+            }
+        }
+
+        @Override
+        protected void writeFields(JsonWriter writer, Error instance) throws IOException {
+            writer.name("code").value(instance.getCode());
+            writeString(writer, "message", instance.getMessage());
+            writeString(writer, "fidoMessage", instance.getFidoMessage());
+            writeNumber(writer, "fidoResponseCode", instance.getFidoResponseCode());
+            writeString(writer, "fidoResponseMsg", instance.getFidoResponseMsg());
+        }
+    }
+
+    static class GetAuthenticatorResponseAdapter extends ModelTypeAdapter<GetAuthenticatorResponse> {
+        private final TypeAdapter<AuthenticatorInfo> authenticatorInfoAdapter;
+
+        GetAuthenticatorResponseAdapter(TypeAdapter<AuthenticatorInfo> authenticatorInfoAdapter) {
+            this.authenticatorInfoAdapter = authenticatorInfoAdapter;
+        }
+
+        @Override
+        protected GetAuthenticatorResponse newInstance() {
+            return new GetAuthenticatorResponse();
+        }
+
+        @Override
+        protected boolean readField(JsonReader reader, String name, GetAuthenticatorResponse instance) throws IOException {
+            if (name.equals("authenticatorInfo")) {
+                instance.setAuthenticatorInfo(authenticatorInfoAdapter.read(reader));
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        protected void writeFields(JsonWriter writer, GetAuthenticatorResponse instance) throws IOException {
+            writeValue(writer, "authenticatorInfo", authenticatorInfoAdapter, instance.getAuthenticatorInfo());
+        }
+    }
+
+    static class ListAuthenticatorsResponseAdapter extends ModelTypeAdapter<ListAuthenticatorsResponse> {
+        private final TypeAdapter<AuthenticatorInfo> authenticatorInfoAdapter;
+
+        ListAuthenticatorsResponseAdapter(TypeAdapter<AuthenticatorInfo> authenticatorInfoAdapter) {
+            this.authenticatorInfoAdapter = authenticatorInfoAdapter;
+        }
+
+        @Override
+        protected ListAuthenticatorsResponse newInstance() {
+            return new ListAuthenticatorsResponse();
+        }
+
+        @Override
+        protected boolean readField(JsonReader reader, String name, ListAuthenticatorsResponse instance) throws IOException {
+            if (name.equals("authenticatorInfoList")) {
+                instance.setAuthenticatorInfoList(readAuthenticatorInfos(reader, authenticatorInfoAdapter));
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        protected void writeFields(JsonWriter writer, ListAuthenticatorsResponse instance) throws IOException {
+            writeAuthenticatorInfos(writer, "authenticatorInfoList", authenticatorInfoAdapter,
+                    instance.getAuthenticatorInfoList());
+        }
+    }
+
+    static class ValidateTransactionAuthAdapter extends ModelTypeAdapter<ValidateTransactionAuth> {
+        @Override
+        protected ValidateTransactionAuth newInstance() {
+            return new ValidateTransactionAuth();
+        }
+
+        @Override
+        protected boolean readField(JsonReader reader, String name, ValidateTransactionAuth instance) throws IOException {
+            switch (name) {
+                case "fidoAuthenticationResponse": instance.setFidoAuthenticationResponse(reader.nextString()); return true;
+                case "authenticationRequestId": instance.setAuthenticationRequestId(reader.nextString()); return true;
+                default: return false;
+            }
+        }
+
+        @Override
+        protected void writeFields(JsonWriter writer, ValidateTransactionAuth instance) throws IOException {
+            writeString(writer, "fidoAuthenticationResponse", instance.getFidoAuthenticationResponse());
+            writeString(writer, "authenticationRequestId", instance.getAuthenticationRequestId());
+        }
+    }
+
+    static class ValidateTransactionAuthResponseAdapter extends ModelTypeAdapter<ValidateTransactionAuthResponse> {
+        @Override
+        protected ValidateTransactionAuthResponse newInstance() {
+            return new ValidateTransactionAuthResponse();
+        }
+
+        @Override
+        protected boolean readField(JsonReader reader, String name, ValidateTransactionAuthResponse instance) throws IOException {
+            switch (name) {
+                case "fidoAuthenticationResponse": instance.setFidoAuthenticationResponse(reader.nextString()); return true;
+                case "fidoResponseCode": instance.setFidoResponseCode(reader.nextLong()); return true;
+                case "fidoResponseMsg": instance.setFidoResponseMsg(reader.nextString()); return true;
+                default: return false;
+            }
+        }
+
+        @Override
+        protected void writeFields(JsonWriter writer, ValidateTransactionAuthResponse instance) throws IOException {
+            writeString(writer, "fidoAuthenticationResponse", instance.getFidoAuthenticationResponse());
+            writeNumber(writer, "fidoResponseCode", instance.getFidoResponseCode());
+            writeString(writer, "fidoResponseMsg", instance.getFidoResponseMsg());
+        }
+    }
+}
@@ -0,0 +1,359 @@
+/*
+* Copyright Daon.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.daon.identityx.comms;
+
+import java.io.OutputStream;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A pool of growable byte buffers used to build request bodies.
+ *
+ * A buffer is taken with {@link #acquire()}, written to as an OutputStream, or as a Writer which
+ * encodes straight to UTF-8, and handed back with {@link Buffer#release()} once the request has
+ * been sent.  Released buffers keep their backing array, so once the pool is warm request bodies
+ * are built without allocating.  Buffers which have grown beyond the maximum retained size, or
+ * which are released while the pool is full, are left to the garbage collector so that one large
+ * request does not pin its memory for the life of the app.
+ *
+ * Created by Daon
+ */
+public class BufferPool {
+
+    public static final int DEFAULT_BUFFER_SIZE = 4 * 1024;
+    public static final int DEFAULT_MAX_BUFFERS = 8;
+    public static final int DEFAULT_MAX_RETAINED_SIZE = 256 * 1024;
+
+    private final int bufferSize;
+    private final int maxBuffers;
+    private final int maxRetainedSize;
+
+    private final Queue<Buffer> free = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger freeCount = new AtomicInteger();
+
+    private final AtomicLong acquired = new AtomicLong();
+    private final AtomicLong reused = new AtomicLong();
+    private final AtomicLong grown = new AtomicLong();
+    private final AtomicLong discarded = new AtomicLong();
+    private final AtomicLong bytesAllocated = new AtomicLong();
+
+    public BufferPool() {
+        this(DEFAULT_BUFFER_SIZE, DEFAULT_MAX_BUFFERS, DEFAULT_MAX_RETAINED_SIZE);
+    }
+
+    /***
+     * @param bufferSize - the initial size of a new buffer
+     * @param maxBuffers - the maximum number of released buffers kept for reuse
+     * @param maxRetainedSize - buffers which have grown beyond this size are not kept
+     */
+    public BufferPool(int bufferSize, int maxBuffers, int maxRetainedSize) {
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("bufferSize <= 0: " + bufferSize);
+        }
+        this.bufferSize = bufferSize;
+        this.maxBuffers = maxBuffers;
+        this.maxRetainedSize = maxRetainedSize;
+    }
+
+    /***
+     * Take an empty buffer from the pool, or create one if none is free
+     *
+     * @return Buffer
+     */
+    public Buffer acquire() {
+        acquired.incrementAndGet();
+        Buffer buffer = free.poll();
+        if (buffer != null) {
+            freeCount.decrementAndGet();
+            reused.incrementAndGet();
+            buffer.released = false;
+            return buffer;
+        }
+        bytesAllocated.addAndGet(bufferSize);
+        return new Buffer(this, new byte[bufferSize]);
+    }
+
+    private void release(Buffer buffer) {
+        buffer.count = 0;
+        if (buffer.bytes.length > maxRetainedSize) {
+            discarded.incrementAndGet();
+            return;
+        }
+        if (freeCount.incrementAndGet() > maxBuffers) {
+            freeCount.decrementAndGet();
+            discarded.incrementAndGet();
+            return;
+        }
+        free.offer(buffer);
+    }
+
+    public Stats getStats() {
+        return new Stats(acquired.get(), reused.get(), grown.get(), discarded.get(), bytesAllocated.get(),
+                freeCount.get());
+    }
+
+    /**
+     * A growable buffer taken from the pool.  A buffer is used by one thread at a time and must
+     * not be used after it has been released.
+     */
+    public static class Buffer extends OutputStream {
+
+        private final BufferPool pool;
+        private byte[] bytes;
+        private int count;
+        private boolean released;
+        private Utf8Writer writer;
+
+        private Buffer(BufferPool pool, byte[] bytes) {
+            this.pool = pool;
+            this.bytes = bytes;
+        }
+
+        /***
+         * @return the backing array, valid from 0 to {@link #size()}
+         */
+        public byte[] getBytes() {
+            return bytes;
+        }
+
+        public int size() {
+            return count;
+        }
+
+        public void reset() {
+            count = 0;
+        }
+
+        /***
+         * Returns a Writer which encodes the characters written to it as UTF-8 directly into this
+         * buffer, without an intermediate String or byte array.  The writer is reused and has
+         * no buffer of its own, so there is nothing to flush.
+         *
+         * @return Writer
+         */
+        public Writer asUtf8Writer() {
+            if (writer == null) {
+                writer = new Utf8Writer(this);
+            }
+            writer.highSurrogate = 0;
+            return writer;
+        }
+
+        @Override
+        public void write(int b) {
+            this.ensureCapacity(count + 1);
+            bytes[count++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            this.ensureCapacity(count + len);
+            System.arraycopy(b, off, bytes, count, len);
+            count += len;
+        }
+
+        /***
+         * Hand the buffer back to the pool
+         */
+        public void release() {
+            if (released) {
+                return;
+            }
+            released = true;
+            pool.release(this);
+        }
+
+        @Override
+        public void close() {
+            // Closing a writer or stream wrapped around the buffer must not release it
+        }
+
+        private void ensureCapacity(int capacity) {
+            if (capacity <= bytes.length) {
+                return;
+            }
+            if (capacity < 0) {
+                throw new OutOfMemoryError("Request body too large");
+            }
+            int newLength = Math.max(bytes.length << 1, capacity);
+            if (newLength < 0) {
+                newLength = Integer.MAX_VALUE;
+            }
+            pool.grown.incrementAndGet();
+            pool.bytesAllocated.addAndGet(newLength);
+            bytes = Arrays.copyOf(bytes, newLength);
+        }
+    }
+
+    /**
+     * Encodes characters as UTF-8 into a buffer.  Unpaired surrogates are encoded as '?', as by
+     * String.getBytes.
+     */
+    private static class Utf8Writer extends Writer {
+
+        private final Buffer buffer;
+        private char highSurrogate;
+
+        Utf8Writer(Buffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public void write(int c) {
+            this.encode((char) c);
+        }
+
+        @Override
+        public void write(char[] chars, int off, int len) {
+            buffer.ensureCapacity(buffer.count + len);
+            for (int i = off; i < off + len; i++) {
+                this.encode(chars[i]);
+            }
+        }
+
+        @Override
+        public void write(String str, int off, int len) {
+            buffer.ensureCapacity(buffer.count + len);
+            for (int i = off; i < off + len; i++) {
+                this.encode(str.charAt(i));
+            }
+        }
+
+        @Override
+        public Writer append(CharSequence csq) {
+            CharSequence chars = csq == null ? "null" : csq;
+            for (int i = 0; i < chars.length(); i++) {
+                this.encode(chars.charAt(i));
+            }
+            return this;
+        }
+
+        private void encode(char c) {
+            if (highSurrogate != 0) {
+                char high = highSurrogate;
+                highSurrogate = 0;
+                if (Character.isLowSurrogate(c)) {
+                    int codePoint = Character.toCodePoint(high, c);
+                    buffer.ensureCapacity(buffer.count + 4);
+                    byte[] bytes = buffer.bytes;
+                    bytes[buffer.count++] = (byte) (0xf0 | (codePoint >> 18));
+                    bytes[buffer.count++] = (byte) (0x80 | ((codePoint >> 12) & 0x3f));
+                    bytes[buffer.count++] = (byte) (0x80 | ((codePoint >> 6) & 0x3f));
+                    bytes[buffer.count++] = (byte) (0x80 | (codePoint & 0x3f));
+                    return;
+                }
+                buffer.write('?');
+            }
+
+            if (c < 0x80) {
+                buffer.write(c);
+            } else if (c < 0x800) {
+                buffer.ensureCapacity(buffer.count + 2);
+                buffer.bytes[buffer.count++] = (byte) (0xc0 | (c >> 6));
+                buffer.bytes[buffer.count++] = (byte) (0x80 | (c & 0x3f));
+            } else if (Character.isHighSurrogate(c)) {
+                highSurrogate = c;
+            } else if (Character.isLowSurrogate(c)) {
+                buffer.write('?');
+            } else {
+                buffer.ensureCapacity(buffer.count + 3);
+                buffer.bytes[buffer.count++] = (byte) (0xe0 | (c >> 12));
+                buffer.bytes[buffer.count++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+                buffer.bytes[buffer.count++] = (byte) (0x80 | (c & 0x3f));
+            }
+        }
+
+        /***
+         * A trailing unpaired high surrogate is only known to be unpaired once writing ends
+         */
+        @Override
+        public void flush() {
+            if (highSurrogate != 0) {
+                highSurrogate = 0;
+                buffer.write('?');
+            }
+        }
+
+        @Override
+        public void close() {
+            this.flush();
+        }
+    }
+
+    /**
+     * Snapshot of the buffer pool counters
+     */
+    public static class Stats {
+        private final long acquired;
+        private final long reused;
+        private final long grown;
+        private final long discarded;
+        private final long bytesAllocated;
+        private final int free;
+
+        Stats(long acquired, long reused, long grown, long discarded, long bytesAllocated, int free) {
+            this.acquired = acquired;
+            this.reused = reused;
+            this.grown = grown;
+            this.discarded = discarded;
+            this.bytesAllocated = bytesAllocated;
+            this.free = free;
+        }
+
+        public long getAcquired() {
+            return acquired;
+        }
+
+        /***
+         * @return the number of buffers taken from the pool rather than created
+         */
+        public long getReused() {
+            return reused;
+        }
+
+        /***
+         * @return the number of times a buffer was too small and was grown
+         */
+        public long getGrown() {
+            return grown;
+        }
+
+        /***
+         * @return the number of released buffers not kept as they were too large or the pool was full
+         */
+        public long getDiscarded() {
+            return discarded;
+        }
+
+        public long getBytesAllocated() {
+            return bytesAllocated;
+        }
+
+        public int getFree() {
+            return free;
+        }
+
+        public String toString() {
+            return "Acquired: " + acquired + " Reused: " + reused + " Grown: " + grown + " Discarded: " + discarded
+                    + " Allocated: " + bytesAllocated + " bytes Free: " + free;
+        }
+    }
+}
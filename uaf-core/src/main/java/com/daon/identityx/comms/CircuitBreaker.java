@@ -0,0 +1,193 @@
+/*
+* Copyright Daon.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.daon.identityx.comms;
+
+/**
+ * Circuit breaker which stops calls being made to a server, or an endpoint of a server, which is
+ * failing.
+ *
+ * While CLOSED calls are allowed.  After a number of consecutive failures the circuit OPENs and
+ * calls are refused straight away.  Once the open duration has passed the circuit is HALF_OPEN
+ * and a single trial call is allowed: if it succeeds the circuit closes, if it fails the circuit
+ * opens again.
+ *
+ * Each allowed call is given a {@link Permit} on which the outcome of the call must be reported.
+ *
+ * Created by Daon
+ */
+public class CircuitBreaker {
+
+    public static final int DEFAULT_FAILURE_THRESHOLD = 5;
+    public static final long DEFAULT_OPEN_DURATION = 30 * 1000;
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private final int failureThreshold;
+    private final long openDuration;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAt;
+    private boolean trialInProgress;
+
+    private long opened;
+    private long halfOpened;
+    private long closed;
+    private long shortCircuited;
+
+    public CircuitBreaker() {
+        this(DEFAULT_FAILURE_THRESHOLD, DEFAULT_OPEN_DURATION);
+    }
+
+    /***
+     * @param failureThreshold - the number of consecutive failures which open the circuit
+     * @param openDuration - the time in milliseconds for which the circuit stays open
+     */
+    public CircuitBreaker(int failureThreshold, long openDuration) {
+        if (failureThreshold < 1) {
+            throw new IllegalArgumentException("failureThreshold < 1: " + failureThreshold);
+        }
+        if (openDuration <= 0) {
+            throw new IllegalArgumentException("openDuration <= 0: " + openDuration);
+        }
+        this.failureThreshold = failureThreshold;
+        this.openDuration = openDuration;
+    }
+
+    /***
+     * Ask to make a call
+     *
+     * @return the permit for the call or null if the circuit is open
+     */
+    public synchronized Permit tryAcquire() {
+        switch (state) {
+            case OPEN:
+                if (System.currentTimeMillis() - openedAt < openDuration) {
+                    shortCircuited++;
+                    return null;
+                }
+                state = State.HALF_OPEN;
+                halfOpened++;
+                trialInProgress = true;
+                return new Permit(true);
+            case HALF_OPEN:
+                if (trialInProgress) {
+                    shortCircuited++;
+                    return null;
+                }
+                trialInProgress = true;
+                return new Permit(true);
+            default:
+                return new Permit(false);
+        }
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    public synchronized long getOpened() {
+        return opened;
+    }
+
+    public synchronized long getHalfOpened() {
+        return halfOpened;
+    }
+
+    public synchronized long getClosed() {
+        return closed;
+    }
+
+    /***
+     * @return the number of calls refused because the circuit was open
+     */
+    public synchronized long getShortCircuited() {
+        return shortCircuited;
+    }
+
+    private synchronized void onSuccess(boolean trial) {
+        if (state == State.CLOSED) {
+            consecutiveFailures = 0;
+        } else if (state == State.HALF_OPEN && trial) {
+            state = State.CLOSED;
+            closed++;
+            consecutiveFailures = 0;
+            trialInProgress = false;
+        }
+    }
+
+    private synchronized void onFailure(boolean trial) {
+        if (state == State.CLOSED) {
+            if (++consecutiveFailures >= failureThreshold) {
+                this.open();
+            }
+        } else if (state == State.HALF_OPEN && trial) {
+            this.open();
+        }
+    }
+
+    private synchronized void onCancel(boolean trial) {
+        if (state == State.HALF_OPEN && trial) {
+            trialInProgress = false;
+        }
+    }
+
+    private void open() {
+        state = State.OPEN;
+        opened++;
+        openedAt = System.currentTimeMillis();
+        consecutiveFailures = 0;
+        trialInProgress = false;
+    }
+
+    /**
+     * Permission to make one call.  Exactly one of the methods must be called once the outcome
+     * of the call is known.
+     */
+    public class Permit {
+        private final boolean trial;
+
+        Permit(boolean trial) {
+            this.trial = trial;
+        }
+
+        /***
+         * The server handled the call
+         */
+        public void success() {
+            onSuccess(trial);
+        }
+
+        /***
+         * The server could not be reached or failed to handle the call
+         */
+        public void failure() {
+            onFailure(trial);
+        }
+
+        /***
+         * The call was not made
+         */
+        public void cancel() {
+            onCancel(trial);
+        }
+    }
+}
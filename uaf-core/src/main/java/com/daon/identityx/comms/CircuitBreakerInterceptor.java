@@ -0,0 +1,98 @@
+/*
+* Copyright Daon.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.daon.identityx.comms;
+
+import com.daon.identityx.exception.CommunicationsException;
+import com.daon.identityx.exception.ServerError;
+
+import java.net.HttpURLConnection;
+
+/**
+ * Fails requests straight away with a {@link CommunicationsException} if the circuit breaker of
+ * the server, or of the endpoint, is open or the rate limit of the server has been reached.
+ *
+ * The circuit breakers count requests which could not reach the server, and requests rejected
+ * with a 5xx status, as failures.
+ *
+ * Created by Daon
+ */
+public class CircuitBreakerInterceptor implements Interceptor {
+
+    private volatile CircuitBreakers circuitBreakers;
+
+    public CircuitBreakerInterceptor() {
+        this(new CircuitBreakers());
+    }
+
+    public CircuitBreakerInterceptor(CircuitBreakers circuitBreakers) {
+        this.circuitBreakers = circuitBreakers;
+    }
+
+    @Override
+    public ServerResponse intercept(Chain chain) {
+        ServerRequest request = chain.getRequest();
+        String server = request.getBaseUrl();
+
+        CircuitBreakers circuitBreakers = this.circuitBreakers;
+        CircuitBreaker.Permit serverPermit = circuitBreakers.getCircuitBreaker(server).tryAcquire();
+        if (serverPermit == null) {
+            throw new CommunicationsException(CommunicationsException.CIRCUIT_OPEN, "The server is not responding - try again later");
+        }
+        CircuitBreaker.Permit endpointPermit = circuitBreakers.getCircuitBreaker(server + request.getEndpoint()).tryAcquire();
+        if (endpointPermit == null) {
+            serverPermit.cancel();
+            throw new CommunicationsException(CommunicationsException.CIRCUIT_OPEN, "The server is not responding - try again later");
+        }
+        if (!circuitBreakers.tryAcquireRate(server)) {
+            serverPermit.cancel();
+            endpointPermit.cancel();
+            throw new CommunicationsException(CommunicationsException.RATE_LIMITED, "Too many requests to the server - try again shortly");
+        }
+
+        boolean failed = false;
+        try {
+            return chain.proceed(request);
+        } catch (CommunicationsException e) {
+            failed = e.getError().getCode() == CommunicationsException.CONNECTION_FAILURE;
+            throw e;
+        } catch (ServerError e) {
+            failed = e.getStatus() >= HttpURLConnection.HTTP_INTERNAL_ERROR && e.getStatus() <= 599;
+            throw e;
+        } finally {
+            if (failed) {
+                serverPermit.failure();
+                endpointPermit.failure();
+            } else {
+                serverPermit.success();
+                endpointPermit.success();
+            }
+        }
+    }
+
+    public CircuitBreakers getCircuitBreakers() {
+        return circuitBreakers;
+    }
+
+    /***
+     * Replace the circuit breakers and rate limiters, e.g. to change their settings.
+     *
+     * @param circuitBreakers - the new circuit breakers
+     */
+    public void setCircuitBreakers(CircuitBreakers circuitBreakers) {
+        this.circuitBreakers = circuitBreakers;
+    }
+}
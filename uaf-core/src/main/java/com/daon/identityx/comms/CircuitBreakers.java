@@ -0,0 +1,172 @@
+/*
+* Copyright Daon.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.daon.identityx.comms;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The circuit breakers and rate limiters protecting the servers called by the app.
+ *
+ * Circuit breakers are kept per key, so a caller can have one for a server and one for each of
+ * its endpoints.  Rate limiters are kept per server.
+ *
+ * Created by Daon
+ */
+public class CircuitBreakers {
+
+    public static final int DEFAULT_RATE_LIMIT_CAPACITY = 20;
+    public static final double DEFAULT_RATE_LIMIT_PER_SECOND = 10;
+
+    private final int failureThreshold;
+    private final long openDuration;
+    private final int rateLimitCapacity;
+    private final double rateLimitPerSecond;
+
+    private final ConcurrentMap<String, CircuitBreaker> circuitBreakers = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, TokenBucket> rateLimiters = new ConcurrentHashMap<>();
+    private final AtomicLong rateLimited = new AtomicLong();
+
+    public CircuitBreakers() {
+        this(CircuitBreaker.DEFAULT_FAILURE_THRESHOLD, CircuitBreaker.DEFAULT_OPEN_DURATION,
+                DEFAULT_RATE_LIMIT_CAPACITY, DEFAULT_RATE_LIMIT_PER_SECOND);
+    }
+
+    /***
+     * @param failureThreshold - the number of consecutive failures which open a circuit
+     * @param openDuration - the time in milliseconds for which a circuit stays open
+     * @param rateLimitCapacity - the maximum number of calls which can be made to a server at once
+     * @param rateLimitPerSecond - the sustained rate of calls to a server
+     */
+    public CircuitBreakers(int failureThreshold, long openDuration, int rateLimitCapacity, double rateLimitPerSecond) {
+        this.failureThreshold = failureThreshold;
+        this.openDuration = openDuration;
+        this.rateLimitCapacity = rateLimitCapacity;
+        this.rateLimitPerSecond = rateLimitPerSecond;
+    }
+
+    public CircuitBreaker getCircuitBreaker(String key) {
+        CircuitBreaker circuitBreaker = circuitBreakers.get(key);
+        if (circuitBreaker == null) {
+            CircuitBreaker newCircuitBreaker = new CircuitBreaker(failureThreshold, openDuration);
+            circuitBreaker = circuitBreakers.putIfAbsent(key, newCircuitBreaker);
+            if (circuitBreaker == null) {
+                circuitBreaker = newCircuitBreaker;
+            }
+        }
+        return circuitBreaker;
+    }
+
+    /***
+     * Take a token from the rate limiter of the server
+     *
+     * @param server - the server to be called
+     * @return true if the call may be made
+     */
+    public boolean tryAcquireRate(String server) {
+        TokenBucket rateLimiter = rateLimiters.get(server);
+        if (rateLimiter == null) {
+            TokenBucket newRateLimiter = new TokenBucket(rateLimitCapacity, rateLimitPerSecond);
+            rateLimiter = rateLimiters.putIfAbsent(server, newRateLimiter);
+            if (rateLimiter == null) {
+                rateLimiter = newRateLimiter;
+            }
+        }
+        if (rateLimiter.tryAcquire()) {
+            return true;
+        }
+        rateLimited.incrementAndGet();
+        return false;
+    }
+
+    /***
+     * Returns the counters summed over all of the circuit breakers
+     *
+     * @return Stats
+     */
+    public Stats getStats() {
+        long opened = 0;
+        long halfOpened = 0;
+        long closed = 0;
+        long shortCircuited = 0;
+        int open = 0;
+        for (CircuitBreaker circuitBreaker : circuitBreakers.values()) {
+            opened += circuitBreaker.getOpened();
+            halfOpened += circuitBreaker.getHalfOpened();
+            closed += circuitBreaker.getClosed();
+            shortCircuited += circuitBreaker.getShortCircuited();
+            if (circuitBreaker.getState() != CircuitBreaker.State.CLOSED) {
+                open++;
+            }
+        }
+        return new Stats(opened, halfOpened, closed, shortCircuited, rateLimited.get(), open);
+    }
+
+    /**
+     * Snapshot of the circuit breaker and rate limiter counters
+     */
+    public static class Stats {
+        private final long opened;
+        private final long halfOpened;
+        private final long closed;
+        private final long shortCircuited;
+        private final long rateLimited;
+        private final int open;
+
+        Stats(long opened, long halfOpened, long closed, long shortCircuited, long rateLimited, int open) {
+            this.opened = opened;
+            this.halfOpened = halfOpened;
+            this.closed = closed;
+            this.shortCircuited = shortCircuited;
+            this.rateLimited = rateLimited;
+            this.open = open;
+        }
+
+        public long getOpened() {
+            return opened;
+        }
+
+        public long getHalfOpened() {
+            return halfOpened;
+        }
+
+        public long getClosed() {
+            return closed;
+        }
+
+        public long getShortCircuited() {
+            return shortCircuited;
+        }
+
+        public long getRateLimited() {
+            return rateLimited;
+        }
+
+        /***
+         * @return the number of circuits which are currently open or half open
+         */
+        public int getOpen() {
+            return open;
+        }
+
+        public String toString() {
+            return "Opened: " + opened + " Half opened: " + halfOpened + " Closed: " + closed
+                    + " Short circuited: " + shortCircuited + " Rate limited: " + rateLimited + " Open now: " + open;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+/*
+* Copyright Daon.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.daon.identityx.comms;
+
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Factory methods for the executors used to run relying party requests off the UI thread.
+ *
+ * Created by Daon
+ */
+public final class CommsExecutors {
+
+    public static final int DEFAULT_IO_THREADS = 4;
+    public static final int DEFAULT_IO_QUEUE_CAPACITY = 64;
+
+    private static final long IDLE_THREAD_TIMEOUT_SECONDS = 30;
+
+    private CommsExecutors() {
+    }
+
+    /***
+     * Create the default I/O executor
+     *
+     * @return ListeningExecutorService
+     */
+    public static ListeningExecutorService newIoExecutor() {
+        return newIoExecutor("rp-io", DEFAULT_IO_THREADS, DEFAULT_IO_QUEUE_CAPACITY);
+    }
+
+    /***
+     * Create a bounded executor for blocking network calls.  Idle threads time out, and once the
+     * queue is full further tasks are rejected with a RejectedExecutionException rather than
+     * queueing without limit.
+     *
+     * @param name - prefix of the thread names
+     * @param threads - the maximum number of concurrent calls
+     * @param queueCapacity - the maximum number of calls waiting for a thread
+     * @return ListeningExecutorService
+     */
+    public static ListeningExecutorService newIoExecutor(String name, int threads, int queueCapacity) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads,
+                IDLE_THREAD_TIMEOUT_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(queueCapacity),
+                new ThreadFactoryBuilder().setNameFormat(name + "-%d").setDaemon(true).build());
+        executor.allowCoreThreadTimeOut(true);
+        return MoreExecutors.listeningDecorator(executor);
+    }
+}
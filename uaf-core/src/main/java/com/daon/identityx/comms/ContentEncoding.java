@@ -0,0 +1,86 @@
+/*
+* Copyright Daon.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.daon.identityx.comms;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Compression of HTTP request and response bodies.
+ *
+ * Created by Daon
+ */
+public final class ContentEncoding {
+
+    public static final String GZIP = "gzip";
+    public static final String DEFLATE = "deflate";
+    public static final String IDENTITY = "identity";
+
+    /**
+     * The value of the Accept-Encoding header listing the encodings which can be decoded
+     */
+    public static final String ACCEPTED = GZIP + ", " + DEFLATE;
+
+    private static final int BUFFER_SIZE = 1024;
+
+    private ContentEncoding() {
+    }
+
+    /***
+     * Wrap the response stream so that it returns the decoded body
+     *
+     * @param stream - the response stream as received
+     * @param contentEncoding - the Content-Encoding header of the response, may be null
+     * @return the decoded stream
+     * @throws IOException if the encoding is not supported or the stream is not validly encoded
+     */
+    public static InputStream decode(InputStream stream, String contentEncoding) throws IOException {
+        if (contentEncoding == null || contentEncoding.isEmpty() || IDENTITY.equalsIgnoreCase(contentEncoding)) {
+            return stream;
+        }
+        if (GZIP.equalsIgnoreCase(contentEncoding)) {
+            return new GZIPInputStream(stream, BUFFER_SIZE);
+        }
+        if (DEFLATE.equalsIgnoreCase(contentEncoding)) {
+            return new InflaterInputStream(stream);
+        }
+        throw new IOException("Unsupported Content-Encoding: " + contentEncoding);
+    }
+
+    /***
+     * Compress the body with gzip
+     *
+     * @param body - the array holding the body to compress
+     * @param offset - the start of the body in the array
+     * @param length - the length of the body
+     * @param out - receives the compressed body
+     */
+    public static void gzip(byte[] body, int offset, int length, OutputStream out) {
+        try {
+            GZIPOutputStream gzip = new GZIPOutputStream(out, BUFFER_SIZE);
+            gzip.write(body, offset, length);
+            gzip.close();
+        } catch (IOException e) {
+            // Not possible when writing to memory
+            throw new IllegalStateException(e);
+        }
+    }
+}
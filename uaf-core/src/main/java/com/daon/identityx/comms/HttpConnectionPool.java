@@ -0,0 +1,368 @@
+/*
+* Copyright Daon.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.daon.identityx.comms;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Keep-alive connection pool used by the relying party comms.
+ *
+ * The sockets themselves are owned by the pool built into {@link HttpURLConnection}, which is
+ * set up for the whole process by {@link #configure(int, long)} (maximum idle connections and how
+ * long an idle connection is kept).  This class enforces the discipline which allows a socket to
+ * go back into it: a response body must be fully read and closed rather than the connection being
+ * disconnected.
+ *
+ * The pool also keeps a mirror of the idle set per host so that it can estimate how many requests
+ * were able to use a kept-alive connection rather than paying for a new TCP (and TLS) handshake,
+ * and whether connections opened ahead of time by {@link #releasePrewarmed(HttpURLConnection)}
+ * were used before they were evicted.  {@link HttpURLConnection} does not say which socket a
+ * request used, so these counts assume that the platform reuses a socket whenever the mirror has
+ * an idle one for the host - it may have closed that socket, or be using it for another pool.
+ *
+ * Created by Daon
+ */
+public class HttpConnectionPool {
+
+    public static final int DEFAULT_MAX_IDLE_CONNECTIONS = 5;
+    public static final long DEFAULT_KEEP_ALIVE_DURATION = 5 * 60 * 1000;
+
+    private static final int DRAIN_BUFFER_SIZE = 4096;
+
+    private final int maxIdleConnections;
+    private final long keepAliveDuration;
+
+    // host:port -> connections to that host returned to the pool (most recent first)
+    private final Map<String, Deque<IdleConnection>> idleConnections = new HashMap<>();
+
+    private static boolean configured;
+
+    private long estimatedNewConnections;
+    private long estimatedReusedConnections;
+    private long releasedConnections;
+    private long discardedConnections;
+    private long evictedConnections;
+    private int connectionsInUse;
+    private long prewarmedConnections;
+    private long estimatedPrewarmedConnectionsUsed;
+
+    public HttpConnectionPool() {
+        this(DEFAULT_MAX_IDLE_CONNECTIONS, DEFAULT_KEEP_ALIVE_DURATION);
+    }
+
+    /***
+     * Create the pool.  The settings should match those given to {@link #configure(int, long)}
+     * so that the mirror of the idle set keeps and evicts connections as the platform does.
+     *
+     * @param maxIdleConnections - the maximum number of idle connections kept per host
+     * @param keepAliveDuration - the time in milliseconds after which an idle connection is evicted
+     */
+    public HttpConnectionPool(int maxIdleConnections, long keepAliveDuration) {
+        checkSettings(maxIdleConnections, keepAliveDuration);
+        this.maxIdleConnections = maxIdleConnections;
+        this.keepAliveDuration = keepAliveDuration;
+    }
+
+    /***
+     * Configure the keep-alive settings of the platform pool, which are system properties shared
+     * by every {@link HttpURLConnection} in the process.  Call this once, before the first
+     * connection is opened, as the platform reads these settings once; later calls are ignored.
+     *
+     * @param maxIdleConnections - the maximum number of idle connections kept per host
+     * @param keepAliveDuration - the time in milliseconds after which an idle connection is evicted
+     * @return false if the settings had already been configured
+     */
+    public static synchronized boolean configure(int maxIdleConnections, long keepAliveDuration) {
+        checkSettings(maxIdleConnections, keepAliveDuration);
+        if (configured) {
+            return false;
+        }
+        configured = true;
+        System.setProperty("http.keepAlive", maxIdleConnections > 0 ? "true" : "false");
+        System.setProperty("http.maxConnections", Integer.toString(maxIdleConnections));
+        System.setProperty("http.keepAliveDuration", Long.toString(keepAliveDuration));
+        return true;
+    }
+
+    private static void checkSettings(int maxIdleConnections, long keepAliveDuration) {
+        if (maxIdleConnections < 0) {
+            throw new IllegalArgumentException("maxIdleConnections < 0: " + maxIdleConnections);
+        }
+        if (keepAliveDuration <= 0) {
+            throw new IllegalArgumentException("keepAliveDuration <= 0: " + keepAliveDuration);
+        }
+    }
+
+    /***
+     * Open a connection to the URL.  The connection must be handed back with either
+     * {@link #release(HttpURLConnection)} or {@link #discard(HttpURLConnection)}.
+     *
+     * @param url - the URL to connect to
+     * @return HttpURLConnection
+     * @throws IOException if the connection cannot be created
+     */
+    public HttpURLConnection open(URL url) throws IOException {
+        HttpURLConnection urlConnection = (HttpURLConnection) url.openConnection();
+        synchronized (this) {
+            long now = System.currentTimeMillis();
+            this.evictIdleConnections(now);
+            Deque<IdleConnection> idle = idleConnections.get(getKey(url));
+            if (idle != null && !idle.isEmpty()) {
+                if (idle.removeFirst().prewarmed) {
+                    estimatedPrewarmedConnectionsUsed++;
+                }
+                estimatedReusedConnections++;
+            } else {
+                estimatedNewConnections++;
+            }
+            connectionsInUse++;
+        }
+        return urlConnection;
+    }
+
+    /***
+     * Return the connection to the pool.  Whatever is left of the response body is read and the
+     * stream closed so that the underlying socket can be used by the next request.
+     *
+     * @param urlConnection - the connection which has completed
+     */
+    public void release(HttpURLConnection urlConnection) {
+        this.release(urlConnection, false);
+    }
+
+    /***
+     * Return a connection which was opened to warm up the path to the server before it is needed.
+     * The pool estimates whether the connection is then used by a request.
+     *
+     * @param urlConnection - the connection which has completed
+     */
+    public void releasePrewarmed(HttpURLConnection urlConnection) {
+        this.release(urlConnection, true);
+    }
+
+    private void release(HttpURLConnection urlConnection, boolean prewarmed) {
+        if (urlConnection == null) {
+            return;
+        }
+        try {
+            InputStream stream;
+            try {
+                stream = urlConnection.getInputStream();
+            } catch (IOException e) {
+                stream = urlConnection.getErrorStream();
+            }
+            drain(stream);
+        } catch (IOException e) {
+            // The stream has already been consumed and closed - nothing left to do
+        }
+        synchronized (this) {
+            connectionsInUse--;
+            releasedConnections++;
+            if (prewarmed) {
+                prewarmedConnections++;
+            }
+            long now = System.currentTimeMillis();
+            String key = getKey(urlConnection.getURL());
+            Deque<IdleConnection> idle = idleConnections.get(key);
+            if (idle == null) {
+                idle = new ArrayDeque<>();
+                idleConnections.put(key, idle);
+            }
+            idle.addFirst(new IdleConnection(now, prewarmed));
+            while (idle.size() > maxIdleConnections) {
+                idle.removeLast();
+                evictedConnections++;
+            }
+        }
+    }
+
+    /***
+     * Close the connection without returning it to the pool.  Used when the exchange failed
+     * and the state of the socket is unknown.
+     *
+     * @param urlConnection - the connection to close
+     */
+    public void discard(HttpURLConnection urlConnection) {
+        if (urlConnection == null) {
+            return;
+        }
+        urlConnection.disconnect();
+        synchronized (this) {
+            connectionsInUse--;
+            discardedConnections++;
+        }
+    }
+
+    /***
+     * Returns a snapshot of the pool statistics
+     *
+     * @return PoolStats
+     */
+    public synchronized PoolStats getStats() {
+        this.evictIdleConnections(System.currentTimeMillis());
+        int idle = 0;
+        for (Deque<IdleConnection> hostConnections : idleConnections.values()) {
+            idle += hostConnections.size();
+        }
+        return new PoolStats(estimatedNewConnections, estimatedReusedConnections, releasedConnections,
+                discardedConnections, evictedConnections, idle, connectionsInUse, prewarmedConnections,
+                estimatedPrewarmedConnectionsUsed);
+    }
+
+    public int getMaxIdleConnections() {
+        return maxIdleConnections;
+    }
+
+    public long getKeepAliveDuration() {
+        return keepAliveDuration;
+    }
+
+    private void evictIdleConnections(long now) {
+        Iterator<Deque<IdleConnection>> hosts = idleConnections.values().iterator();
+        while (hosts.hasNext()) {
+            Deque<IdleConnection> idle = hosts.next();
+            while (!idle.isEmpty() && now - idle.peekLast().releasedAt > keepAliveDuration) {
+                idle.removeLast();
+                evictedConnections++;
+            }
+            if (idle.isEmpty()) {
+                hosts.remove();
+            }
+        }
+    }
+
+    private static String getKey(URL url) {
+        int port = url.getPort() == -1 ? url.getDefaultPort() : url.getPort();
+        return url.getProtocol() + "://" + url.getHost() + ":" + port;
+    }
+
+    private static void drain(InputStream stream) throws IOException {
+        if (stream == null) {
+            return;
+        }
+        try {
+            byte[] buffer = new byte[DRAIN_BUFFER_SIZE];
+            while (stream.read(buffer) != -1) {
+                // discard
+            }
+        } finally {
+            stream.close();
+        }
+    }
+
+    private static class IdleConnection {
+        final long releasedAt;
+        final boolean prewarmed;
+
+        IdleConnection(long releasedAt, boolean prewarmed) {
+            this.releasedAt = releasedAt;
+            this.prewarmed = prewarmed;
+        }
+    }
+
+    /**
+     * Snapshot of the connection pool statistics.  The new, reused and prewarmed used counts are
+     * estimates taken from the mirror of the idle set, not measured on the sockets.
+     */
+    public static class PoolStats {
+        private final long estimatedNewConnections;
+        private final long estimatedReusedConnections;
+        private final long releasedConnections;
+        private final long discardedConnections;
+        private final long evictedConnections;
+        private final int idleConnections;
+        private final int connectionsInUse;
+        private final long prewarmedConnections;
+        private final long estimatedPrewarmedConnectionsUsed;
+
+        PoolStats(long estimatedNewConnections, long estimatedReusedConnections, long releasedConnections,
+                  long discardedConnections, long evictedConnections, int idleConnections, int connectionsInUse,
+                  long prewarmedConnections, long estimatedPrewarmedConnectionsUsed) {
+            this.estimatedNewConnections = estimatedNewConnections;
+            this.estimatedReusedConnections = estimatedReusedConnections;
+            this.releasedConnections = releasedConnections;
+            this.discardedConnections = discardedConnections;
+            this.evictedConnections = evictedConnections;
+            this.idleConnections = idleConnections;
+            this.connectionsInUse = connectionsInUse;
+            this.prewarmedConnections = prewarmedConnections;
+            this.estimatedPrewarmedConnectionsUsed = estimatedPrewarmedConnectionsUsed;
+        }
+
+        /***
+         * @return the estimated number of requests which opened a new connection
+         */
+        public long getEstimatedNewConnections() {
+            return estimatedNewConnections;
+        }
+
+        /***
+         * @return the estimated number of requests which used a kept-alive connection
+         */
+        public long getEstimatedReusedConnections() {
+            return estimatedReusedConnections;
+        }
+
+        public long getReleasedConnections() {
+            return releasedConnections;
+        }
+
+        public long getDiscardedConnections() {
+            return discardedConnections;
+        }
+
+        public long getEvictedConnections() {
+            return evictedConnections;
+        }
+
+        public int getIdleConnections() {
+            return idleConnections;
+        }
+
+        public int getConnectionsInUse() {
+            return connectionsInUse;
+        }
+
+        public long getPrewarmedConnections() {
+            return prewarmedConnections;
+        }
+
+        /***
+         * @return the estimated number of prewarmed connections which were used by a request
+         */
+        public long getEstimatedPrewarmedConnectionsUsed() {
+            return estimatedPrewarmedConnectionsUsed;
+        }
+
+        public String toString() {
+            return "New (est.): " + estimatedNewConnections + " Reused (est.): " + estimatedReusedConnections
+                    + " Released: " + releasedConnections
+                    + " Discarded: " + discardedConnections + " Evicted: " + evictedConnections
+                    + " Idle: " + idleConnections + " In use: " + connectionsInUse
+                    + " Prewarmed: " + prewarmedConnections
+                    + " Prewarmed used (est.): " + estimatedPrewarmedConnectionsUsed;
+        }
+    }
+}
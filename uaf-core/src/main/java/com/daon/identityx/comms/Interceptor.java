@@ -0,0 +1,54 @@
+/*
+* Copyright Daon.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.daon.identityx.comms;
+
+/**
+ * One step in the handling of a request to the server.
+ *
+ * An interceptor is given the request by its {@link Chain} and normally passes it, possibly
+ * modified, on with {@link Chain#proceed(ServerRequest)} and returns the response, possibly
+ * modified, to the step before it.  It may instead answer the request itself without
+ * proceeding, e.g. from a cache, or fail it by throwing an exception.  The last interceptor in
+ * the chain makes the HTTP exchange.
+ *
+ * Failures are thrown as {@link com.daon.identityx.exception.CommunicationsException} if the
+ * server could not be reached and {@link com.daon.identityx.exception.ServerError} if it
+ * returned an error.
+ *
+ * Created by Daon
+ */
+public interface Interceptor {
+
+    ServerResponse intercept(Chain chain);
+
+    /**
+     * The rest of the chain after an interceptor
+     */
+    interface Chain {
+
+        ServerRequest getRequest();
+
+        /***
+         * Pass the request to the next interceptor.  May be called more than once, e.g. to retry,
+         * and from other threads.
+         *
+         * @param request - the request
+         * @return the response
+         */
+        ServerResponse proceed(ServerRequest request);
+    }
+}
@@ -0,0 +1,71 @@
+/*
+* Copyright Daon.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.daon.identityx.comms;
+
+import java.util.List;
+
+/**
+ * Runs a request through a list of interceptors in order.
+ *
+ * Each call to {@link #proceed(ServerRequest)} creates the chain for the next interceptor
+ * rather than moving along this one, so a chain can be proceeded with more than once and from
+ * several threads.
+ *
+ * Created by Daon
+ */
+public class InterceptorChain implements Interceptor.Chain {
+
+    private final List<Interceptor> interceptors;
+    private final int index;
+    private final ServerRequest request;
+
+    /***
+     * @param interceptors - the interceptors, the last of which must answer every request
+     * @param request - the request
+     */
+    public InterceptorChain(List<Interceptor> interceptors, ServerRequest request) {
+        this(interceptors, 0, request);
+    }
+
+    private InterceptorChain(List<Interceptor> interceptors, int index, ServerRequest request) {
+        this.interceptors = interceptors;
+        this.index = index;
+        this.request = request;
+    }
+
+    @Override
+    public ServerRequest getRequest() {
+        return request;
+    }
+
+    @Override
+    public ServerResponse proceed(ServerRequest request) {
+        if (index >= interceptors.size()) {
+            throw new IllegalStateException("No interceptor answered " + request);
+        }
+        return interceptors.get(index).intercept(new InterceptorChain(interceptors, index + 1, request));
+    }
+
+    /***
+     * Run the request through the whole chain
+     *
+     * @return the response
+     */
+    public ServerResponse proceed() {
+        return this.proceed(request);
+    }
+}
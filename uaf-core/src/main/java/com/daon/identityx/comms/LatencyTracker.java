@@ -0,0 +1,76 @@
+/*
+* Copyright Daon.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.daon.identityx.comms;
+
+import java.util.Arrays;
+
+/**
+ * Keeps the most recent response times of an endpoint so that percentiles can be calculated.
+ *
+ * Created by Daon
+ */
+public class LatencyTracker {
+
+    public static final int DEFAULT_SIZE = 64;
+    public static final int DEFAULT_MIN_SAMPLES = 16;
+
+    private final long[] samples;
+    private final int minSamples;
+    private int count;
+    private int next;
+
+    public LatencyTracker() {
+        this(DEFAULT_SIZE, DEFAULT_MIN_SAMPLES);
+    }
+
+    /***
+     * @param size - the number of recent response times kept
+     * @param minSamples - the number of response times needed before a percentile is reported
+     */
+    public LatencyTracker(int size, int minSamples) {
+        if (size < 1 || minSamples < 1 || minSamples > size) {
+            throw new IllegalArgumentException("Invalid size: " + size + ", " + minSamples);
+        }
+        this.samples = new long[size];
+        this.minSamples = minSamples;
+    }
+
+    public synchronized void record(long millis) {
+        samples[next] = millis;
+        next = (next + 1) % samples.length;
+        if (count < samples.length) {
+            count++;
+        }
+    }
+
+    /***
+     * @param percentile - the percentile, between 0 and 1
+     * @return the response time in milliseconds or -1 if too few response times have been recorded
+     */
+    public long getPercentile(double percentile) {
+        long[] sorted;
+        synchronized (this) {
+            if (count < minSamples) {
+                return -1;
+            }
+            sorted = Arrays.copyOf(samples, count);
+        }
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+}
@@ -0,0 +1,514 @@
+/*
+* Copyright Daon.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.daon.identityx.comms;
+
+import com.daon.identityx.exception.CommunicationsException;
+import com.daon.identityx.exception.ServerError;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.MalformedURLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A persistent, ordered queue of requests to the server whose result the caller does not wait
+ * for, such as deleting a session on logout.
+ *
+ * {@link #enqueue(String, String, String)} adds the request to the queue and returns straight
+ * away.  Each request keeps the server it was queued for, so it is never sent to a server chosen
+ * later.  The queue file is written on one background thread and the requests are sent in order
+ * on another, so neither blocks the caller and a request is persisted without waiting for a send
+ * which is held up by the network.  A request which is already queued is not added again.  If the
+ * server cannot be reached the queue waits, backing off exponentially up to
+ * {@link #MAX_BACKOFF_MS}, and tries again - or sooner if {@link #drain()} is called, e.g. when
+ * the network comes back.  A request the server rejects, or which could never be sent, is
+ * dropped, as sending it again would not change the answer.
+ *
+ * The file is replaced, never updated in place, so the queue is intact after the process is
+ * killed.  The queue is read back on the file thread before it is written or sent; call
+ * {@link #drain()} to send what was left by an earlier process.
+ *
+ * Created by Daon
+ */
+public class OutboundQueue {
+
+    public static final long INITIAL_BACKOFF_MS = 1000;
+    public static final long MAX_BACKOFF_MS = 5 * 60 * 1000;
+
+    private static final String UTF_8 = "utf-8";
+    private static final Logger LOGGER = Logger.getLogger(OutboundQueue.class.getName());
+
+    private final File file;
+    private final RelyingPartyClient client;
+    private final ScheduledExecutorService executor;
+    private final ExecutorService fileExecutor;
+    private final Random random = new Random();
+
+    private final List<Mutation> mutations = new ArrayList<>();
+    private boolean loaded;
+    private boolean drainWhenLoaded;
+    private boolean writePending;
+    private ScheduledFuture<?> scheduledDrain;
+    private boolean drainNow;
+    private int failures;
+
+    private long enqueued;
+    private long coalesced;
+    private long sent;
+    private long rejected;
+    private long retries;
+
+    private final Runnable drainTask = new Runnable() {
+        @Override
+        public void run() {
+            drainQueue();
+        }
+    };
+
+    private final Runnable writeTask = new Runnable() {
+        @Override
+        public void run() {
+            synchronized (OutboundQueue.this) {
+                writePending = false;
+            }
+            write();
+        }
+    };
+
+    /***
+     * @param file - the file holding the queue, read on the file thread if it exists
+     * @param client - sends the requests
+     */
+    public OutboundQueue(File file, RelyingPartyClient client) {
+        this.file = file;
+        this.client = client;
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1,
+                new ThreadFactoryBuilder().setNameFormat("rp-outbound-%d").setDaemon(true).build());
+        executor.setRemoveOnCancelPolicy(true);
+        this.executor = executor;
+        this.fileExecutor = Executors.newSingleThreadExecutor(
+                new ThreadFactoryBuilder().setNameFormat("rp-outbound-file-%d").setDaemon(true).build());
+        // The file thread runs tasks in order, so the queue is loaded before it is written, and
+        // nothing is sent until it has been loaded
+        fileExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                load();
+            }
+        });
+    }
+
+    /***
+     * Queue a request to the current server and start sending the queue
+     *
+     * @param method - the HTTP method
+     * @param relativeUrl - the URL relative to the base URL of the server
+     * @param sessionId - the session to send the request in, which may have ended by the time it
+     *                  is sent, or null
+     * @return false if the request was already queued, or the server URL is invalid so the
+     *         request could never be sent
+     */
+    public boolean enqueue(String method, String relativeUrl, String sessionId) {
+        String baseUrl;
+        try {
+            baseUrl = client.getBaseUrl();
+        } catch (MalformedURLException e) {
+            synchronized (this) {
+                rejected++;
+            }
+            return false;
+        }
+        Mutation mutation = new Mutation(method, baseUrl, relativeUrl, sessionId);
+        boolean added;
+        synchronized (this) {
+            added = !mutations.contains(mutation);
+            if (added) {
+                enqueued++;
+                mutations.add(mutation);
+                this.scheduleWrite();
+            } else {
+                coalesced++;
+            }
+        }
+        this.drain();
+        return added;
+    }
+
+    /***
+     * Send the queue now, rather than waiting for the current backoff to expire
+     */
+    public synchronized void drain() {
+        if (!loaded) {
+            drainWhenLoaded = true;
+            return;
+        }
+        if (mutations.isEmpty()) {
+            return;
+        }
+        if (scheduledDrain != null && !scheduledDrain.isDone()) {
+            if (scheduledDrain.getDelay(TimeUnit.MILLISECONDS) <= 0 || !scheduledDrain.cancel(false)) {
+                // Running - have it look at the queue again before it stops
+                drainNow = true;
+                return;
+            }
+        }
+        scheduledDrain = executor.schedule(drainTask, 0, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized int size() {
+        return mutations.size();
+    }
+
+    public synchronized Stats getStats() {
+        return new Stats(enqueued, coalesced, sent, rejected, retries, mutations.size());
+    }
+
+    /***
+     * Put the requests left by an earlier process ahead of any queued since this one started
+     */
+    private void load() {
+        List<Mutation> earlier = read(file);
+        boolean drain;
+        synchronized (this) {
+            for (Mutation mutation : mutations) {
+                if (!earlier.contains(mutation)) {
+                    earlier.add(mutation);
+                } else {
+                    enqueued--;
+                    coalesced++;
+                }
+            }
+            mutations.clear();
+            mutations.addAll(earlier);
+            loaded = true;
+            drain = drainWhenLoaded;
+            drainWhenLoaded = false;
+        }
+        if (drain) {
+            this.drain();
+        }
+    }
+
+    private synchronized void scheduleWrite() {
+        if (!writePending) {
+            writePending = true;
+            fileExecutor.execute(writeTask);
+        }
+    }
+
+    private void drainQueue() {
+        boolean finished = false;
+        try {
+            this.sendQueue();
+            finished = true;
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Unable to send the outbound queue", e);
+        } finally {
+            if (!finished) {
+                // The next drain() must start sending again rather than wait for this task
+                synchronized (this) {
+                    drainNow = false;
+                    scheduledDrain = null;
+                }
+            }
+        }
+    }
+
+    /***
+     * Send the queue in order until it is empty, or until the server cannot be reached in which
+     * case sending is scheduled again after a backoff
+     */
+    private void sendQueue() {
+        while (true) {
+            Mutation mutation;
+            synchronized (this) {
+                drainNow = false;
+                if (mutations.isEmpty()) {
+                    failures = 0;
+                    scheduledDrain = null;
+                    return;
+                }
+                mutation = mutations.get(0);
+            }
+
+            boolean delivered;
+            try {
+                this.send(mutation);
+                delivered = true;
+            } catch (ServerError e) {
+                // e.g. the session has already expired
+                delivered = false;
+            } catch (CommunicationsException e) {
+                if (isRetryable(e)) {
+                    synchronized (this) {
+                        retries++;
+                        failures++;
+                        long delay = drainNow ? 0 : this.getBackoff(failures);
+                        drainNow = false;
+                        scheduledDrain = executor.schedule(drainTask, delay, TimeUnit.MILLISECONDS);
+                    }
+                    return;
+                }
+                delivered = false;
+            } catch (RuntimeException e) {
+                // Not a failure to reach the server, so sending it again would fail the same way
+                LOGGER.log(Level.WARNING, "Unable to send " + mutation + " - dropping it", e);
+                delivered = false;
+            }
+
+            synchronized (this) {
+                mutations.remove(0);
+                failures = 0;
+                if (delivered) {
+                    sent++;
+                } else {
+                    rejected++;
+                }
+                this.scheduleWrite();
+            }
+        }
+    }
+
+    private void send(Mutation mutation) {
+        ServerRequest request = new ServerRequest(mutation.method, mutation.baseUrl, mutation.relativeUrl, null, null);
+        if (mutation.sessionId != null) {
+            request = request.withHeader(RelyingPartyClient.SESSION_IDENTIFIER_HEADER, mutation.sessionId);
+        }
+        client.execute(request, null);
+    }
+
+    /***
+     * Requests which did not reach the server, or were refused by this client to protect it,
+     * are sent again later.  Other failures, such as an invalid response, mean that the server
+     * received the request, and a malformed URL or a security error would fail the same way
+     * every time - retrying them would hold up the rest of the queue for good.
+     */
+    private static boolean isRetryable(CommunicationsException e) {
+        int code = e.getError().getCode();
+        return code == CommunicationsException.CONNECTION_FAILURE
+                || code == CommunicationsException.CIRCUIT_OPEN
+                || code == CommunicationsException.RATE_LIMITED;
+    }
+
+    /***
+     * Exponential backoff with full jitter
+     */
+    private long getBackoff(int failures) {
+        long ceiling = INITIAL_BACKOFF_MS << Math.min(failures - 1, 20);
+        return (long) (random.nextDouble() * Math.min(ceiling, MAX_BACKOFF_MS));
+    }
+
+    /***
+     * Replace the queue file with the current queue.  The new queue is written and synced to a
+     * temporary file which is then renamed over the old one, so the file holds either the old
+     * or the new queue whenever the process is killed.
+     *
+     * Only called on the file thread.
+     */
+    private void write() {
+        List<Mutation> mutations;
+        synchronized (this) {
+            mutations = new ArrayList<>(this.mutations);
+        }
+        File tempFile = new File(file.getPath() + ".tmp");
+        try {
+            FileOutputStream out = new FileOutputStream(tempFile);
+            try {
+                JsonWriter writer = new JsonWriter(new OutputStreamWriter(out, UTF_8));
+                writer.beginArray();
+                for (Mutation mutation : mutations) {
+                    writer.beginObject();
+                    writer.name("method").value(mutation.method);
+                    writer.name("base").value(mutation.baseUrl);
+                    writer.name("url").value(mutation.relativeUrl);
+                    writer.name("session").value(mutation.sessionId);
+                    writer.endObject();
+                }
+                writer.endArray();
+                writer.flush();
+                out.getFD().sync();
+            } finally {
+                out.close();
+            }
+            if (!tempFile.renameTo(file)) {
+                throw new IOException("Unable to rename " + tempFile + " to " + file);
+            }
+        } catch (IOException e) {
+            // The queue is still sent by this process, it is just not kept if the process is killed
+            tempFile.delete();
+        }
+    }
+
+    private static List<Mutation> read(File file) {
+        List<Mutation> mutations = new ArrayList<>();
+        try {
+            JsonReader reader = new JsonReader(new InputStreamReader(new FileInputStream(file), UTF_8));
+            try {
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    String method = null;
+                    String baseUrl = null;
+                    String relativeUrl = null;
+                    String sessionId = null;
+                    reader.beginObject();
+                    while (reader.hasNext()) {
+                        String name = reader.nextName();
+                        if (reader.peek() == JsonToken.NULL) {
+                            reader.nextNull();
+                        } else if ("method".equals(name)) {
+                            method = reader.nextString();
+                        } else if ("base".equals(name)) {
+                            baseUrl = reader.nextString();
+                        } else if ("url".equals(name)) {
+                            relativeUrl = reader.nextString();
+                        } else if ("session".equals(name)) {
+                            sessionId = reader.nextString();
+                        } else {
+                            reader.skipValue();
+                        }
+                    }
+                    reader.endObject();
+                    // Without its server a request cannot be sent safely
+                    if (method != null && baseUrl != null && relativeUrl != null) {
+                        mutations.add(new Mutation(method, baseUrl, relativeUrl, sessionId));
+                    }
+                }
+                reader.endArray();
+            } finally {
+                reader.close();
+            }
+        } catch (FileNotFoundException e) {
+            // Nothing queued
+        } catch (IOException | RuntimeException e) {
+            // A damaged file - keep what could be read
+        }
+        return mutations;
+    }
+
+    /**
+     * A queued request
+     */
+    private static class Mutation {
+        private final String method;
+        private final String baseUrl;
+        private final String relativeUrl;
+        private final String sessionId;
+
+        Mutation(String method, String baseUrl, String relativeUrl, String sessionId) {
+            this.method = method;
+            this.baseUrl = baseUrl;
+            this.relativeUrl = relativeUrl;
+            this.sessionId = sessionId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Mutation)) {
+                return false;
+            }
+            Mutation other = (Mutation) o;
+            return method.equals(other.method) && baseUrl.equals(other.baseUrl) && relativeUrl.equals(other.relativeUrl)
+                    && (sessionId == null ? other.sessionId == null : sessionId.equals(other.sessionId));
+        }
+
+        @Override
+        public int hashCode() {
+            int result = 31 * method.hashCode() + baseUrl.hashCode();
+            result = 31 * result + relativeUrl.hashCode();
+            return 31 * result + (sessionId == null ? 0 : sessionId.hashCode());
+        }
+
+        public String toString() {
+            return method + " " + baseUrl + relativeUrl;
+        }
+    }
+
+    /**
+     * Snapshot of the outbound queue counters
+     */
+    public static class Stats {
+        private final long enqueued;
+        private final long coalesced;
+        private final long sent;
+        private final long rejected;
+        private final long retries;
+        private final int pending;
+
+        Stats(long enqueued, long coalesced, long sent, long rejected, long retries, int pending) {
+            this.enqueued = enqueued;
+            this.coalesced = coalesced;
+            this.sent = sent;
+            this.rejected = rejected;
+            this.retries = retries;
+            this.pending = pending;
+        }
+
+        public long getEnqueued() {
+            return enqueued;
+        }
+
+        /***
+         * @return the number of requests which were not queued as they were already
+         */
+        public long getCoalesced() {
+            return coalesced;
+        }
+
+        public long getSent() {
+            return sent;
+        }
+
+        /***
+         * @return the number of requests dropped as the server rejected them, or they could not be sent
+         */
+        public long getRejected() {
+            return rejected;
+        }
+
+        public long getRetries() {
+            return retries;
+        }
+
+        public int getPending() {
+            return pending;
+        }
+
+        public String toString() {
+            return "Enqueued: " + enqueued + " Coalesced: " + coalesced + " Sent: " + sent + " Rejected: " + rejected
+                    + " Retries: " + retries + " Pending: " + pending;
+        }
+    }
+}
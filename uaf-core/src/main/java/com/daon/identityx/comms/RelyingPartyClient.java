@@ -0,0 +1,764 @@
+/*
+* Copyright Daon.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.daon.identityx.comms;
+
+import com.daon.identityx.codec.ModelCodec;
+import com.daon.identityx.controller.model.*;
+import com.daon.identityx.controller.model.Error;
+import com.daon.identityx.exception.CommunicationsException;
+import com.google.common.io.CountingInputStream;
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.MalformedJsonException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.net.ssl.HttpsURLConnection;
+
+/***
+ * The client of the relying party server's REST API.
+ *
+ * Every request is a {@link ServerRequest} passed through a chain of {@link Interceptor}s, in
+ * this order:
+ * <ol>
+ *     <li>the session interceptor, which adds the Session-Id header of the current session</li>
+ *     <li>any interceptors added with {@link #addInterceptor(Interceptor)}</li>
+ *     <li>{@link ResponseCacheInterceptor}</li>
+ *     <li>{@link SingleFlightInterceptor}</li>
+ *     <li>{@link RetryInterceptor}</li>
+ *     <li>{@link CircuitBreakerInterceptor}</li>
+ *     <li>{@link ServerErrorInterceptor}</li>
+ *     <li>the transport, which makes the HTTP exchange on a pooled connection</li>
+ * </ol>
+ *
+ * The platform supplies the base URL of the server and the current session.
+ *
+ * Created by Daon
+ */
+public abstract class RelyingPartyClient {
+
+    public static final String SESSION_IDENTIFIER_HEADER = "Session-Id";
+
+    private static final int CONNECTION_TIMEOUT = 20000;
+    private static final int READ_TIMEOUT = 20000;
+    private static final String CONTENT_TYPE_HEADER = "Content-Type";
+    private static final String ACCEPT_ENCODING_HEADER = "Accept-Encoding";
+    private static final String CONTENT_ENCODING_HEADER = "Content-Encoding";
+    private static final String CONTENT_TYPE = "application/json";
+    private static final String OPTIONS_METHOD = "OPTIONS";
+    private static final String UTF_8 = "utf-8";
+    private static final int READ_BUFFER_SIZE = 2048;
+    // The sparse fieldsets requested for the authenticator list and for an authenticator's icon
+    private static final String AUTHENTICATOR_SUMMARY_FIELDS = "id,aaid,name,status,created,lastUsed";
+    private static final String AUTHENTICATOR_ICON_FIELDS = "id,aaid,icon";
+    private static final long DEFAULT_MAX_RESPONSE_BODY_SIZE = 8 * 1024 * 1024;
+
+    private final HttpConnectionPool connectionPool;
+    private final TlsContext tlsContext;
+    private final TransferStats transferStats = new TransferStats();
+    private final BufferPool bufferPool = new BufferPool();
+    private volatile long maxResponseBodySize = DEFAULT_MAX_RESPONSE_BODY_SIZE;
+    private volatile int requestCompressionThreshold = -1;
+    private volatile RequestTiming.Listener requestTimingListener;
+
+    private final ResponseCacheInterceptor responseCacheInterceptor = new ResponseCacheInterceptor();
+    private final SingleFlightInterceptor singleFlightInterceptor = new SingleFlightInterceptor();
+    private final RetryInterceptor retryInterceptor = new RetryInterceptor();
+    private final CircuitBreakerInterceptor circuitBreakerInterceptor = new CircuitBreakerInterceptor();
+    private final List<Interceptor> applicationInterceptors = new ArrayList<>();
+    private volatile List<Interceptor> interceptors;
+
+    private final Interceptor sessionInterceptor = new Interceptor() {
+        @Override
+        public ServerResponse intercept(Chain chain) {
+            ServerRequest request = chain.getRequest();
+            // A request may already carry a session, e.g. a queued request made in an earlier session
+            String sessionId = getSessionId();
+            if (sessionId == null || request.getHeader(SESSION_IDENTIFIER_HEADER) != null) {
+                return chain.proceed(request);
+            }
+            return chain.proceed(request.withHeader(SESSION_IDENTIFIER_HEADER, sessionId));
+        }
+    };
+
+    private final Interceptor transport = new Interceptor() {
+        @Override
+        public ServerResponse intercept(Chain chain) {
+            return executeOnce(chain.getRequest());
+        }
+    };
+
+    public RelyingPartyClient() {
+        this(new HttpConnectionPool(), new TlsContext());
+    }
+
+    public RelyingPartyClient(HttpConnectionPool connectionPool, TlsContext tlsContext) {
+        this.connectionPool = connectionPool;
+        this.tlsContext = tlsContext;
+        this.interceptors = this.buildInterceptors();
+    }
+
+    /***
+     * @return the base URL of the server, ending with a slash
+     * @throws MalformedURLException if the configured server is not a valid URL
+     */
+    protected abstract String getBaseUrl() throws MalformedURLException;
+
+    /***
+     * @return the ID of the current session or null if there is none
+     */
+    protected abstract String getSessionId();
+
+    public CreateAccountResponse createAccount(CreateAccount createAccount) {
+
+        return this.post("accounts", createAccount, CreateAccountResponse.class);
+    }
+
+    public CreateSessionResponse createSession(CreateSession createSession) {
+
+        return this.post("sessions", createSession, CreateSessionResponse.class);
+    }
+
+    public ListAuthenticatorsResponse listAuthenticators() {
+        return this.getCached("listAuthenticators", ListAuthenticatorsResponse.class);
+    }
+
+    public GetAuthenticatorResponse getAuthenticator(String id) {
+        return this.getCached("authenticators/" + id, GetAuthenticatorResponse.class);
+    }
+
+    public ListAuthenticatorsResponse listAuthenticatorSummaries() {
+        return this.getCached("listAuthenticators?fields=" + AUTHENTICATOR_SUMMARY_FIELDS, ListAuthenticatorsResponse.class);
+    }
+
+    public String getAuthenticatorIcon(String id) {
+        GetAuthenticatorResponse response = this.getCached("authenticators/" + id + "?fields=" + AUTHENTICATOR_ICON_FIELDS,
+                GetAuthenticatorResponse.class);
+        return response.getAuthenticatorInfo() == null ? null : response.getAuthenticatorInfo().getIcon();
+    }
+
+    public void deleteSession(String id) {
+
+        this.deleteResource("sessions", id, false);
+    }
+
+
+    public DeleteAccountResponse deleteAccount(String sessionId) {
+        return this.deleteResource("accounts", sessionId, DeleteAccountResponse.class);
+    }
+
+    public String deleteAuthenticator(String authenticatorId) {
+        return this.deleteResource("authenticators", authenticatorId, true);
+    }
+
+    public CreateAuthRequestResponse createAuthRequest() {
+
+        return this.get("authRequests", CreateAuthRequestResponse.class);
+    }
+
+    public CreateAuthRequestResponse createTransactionAuthRequest(CreateTransactionAuthRequest createTransactionAuthRequest) {
+
+        return this.post("transactionAuthRequests", createTransactionAuthRequest, CreateAuthRequestResponse.class);
+    }
+
+    public ValidateTransactionAuthResponse validateTransactionAuthRequest(ValidateTransactionAuth validateTransactionAuth) {
+
+        return this.post("transactionAuthValidation", validateTransactionAuth, ValidateTransactionAuthResponse.class);
+    }
+
+    public CreateAuthenticatorResponse createAuthenticator(CreateAuthenticator createAuthenticator) {
+
+        return this.post("authenticators", createAuthenticator, CreateAuthenticatorResponse.class);
+    }
+
+
+    public CreateRegRequestResponse createRegRequest() {
+
+        return this.get("regRequests", CreateRegRequestResponse.class);
+    }
+
+    /***
+     * Resolve the server's host name and open a connection with an OPTIONS request to the base URL.
+     * Whatever the response, the connection is left in the keep-alive pool for the next request.
+     * OPTIONS is used rather than HEAD as a HEAD response without a Content-Length can leave the
+     * connection unusable for keep-alive.
+     * This blocks, so should be called off the UI thread.
+     *
+     * @return true if a connection was opened
+     */
+    public boolean prewarm() {
+
+        HttpURLConnection urlConnection = null;
+        boolean completed = false;
+        try {
+            URL url = new URL(this.getBaseUrl());
+            InetAddress.getAllByName(url.getHost());
+            urlConnection = this.createConnection(url, OPTIONS_METHOD, -1, Collections.<String, String>emptyMap());
+            urlConnection.getResponseCode();
+            completed = true;
+            return true;
+        } catch (IOException | GeneralSecurityException e) {
+            return false;
+        } finally {
+            if (completed) {
+                connectionPool.releasePrewarmed(urlConnection);
+            } else if (urlConnection != null) {
+                connectionPool.discard(urlConnection);
+            }
+        }
+    }
+
+    /***
+     * Add an interceptor to the chain.  Added interceptors see every request once the session has
+     * been added to it and before it reaches the cache, in the order they were added.
+     *
+     * @param interceptor - the interceptor
+     */
+    public synchronized void addInterceptor(Interceptor interceptor) {
+        applicationInterceptors.add(interceptor);
+        this.interceptors = this.buildInterceptors();
+    }
+
+    private List<Interceptor> buildInterceptors() {
+        List<Interceptor> chain = new ArrayList<>();
+        chain.add(sessionInterceptor);
+        chain.addAll(applicationInterceptors);
+        chain.add(responseCacheInterceptor);
+        chain.add(singleFlightInterceptor);
+        chain.add(retryInterceptor);
+        chain.add(circuitBreakerInterceptor);
+        chain.add(new ServerErrorInterceptor());
+        chain.add(transport);
+        return Collections.unmodifiableList(chain);
+    }
+
+    protected String deleteResource(String resource, String resourceId, boolean withOutput) {
+
+        return this.delete(resource, resourceId, withOutput ? String.class : null);
+    }
+
+    protected <T> T deleteResource(String resource, String resourceId, Class<T> clazz) {
+
+        return this.delete(resource, resourceId, clazz);
+    }
+
+    protected <T> T get(String resource, String id, Class<T> clazz) {
+        return this.get(resource + "/" + id, clazz);
+    }
+
+    protected <T> T get(String resource, Class<T> clazz) {
+
+        return this.execute(this.newRequest(ServerRequest.GET, resource, null, clazz), clazz);
+    }
+
+    /***
+     * GET a resource whose response may be cached and shared with identical requests
+     *
+     * @param relativeUrl - the URL relative to the base URL of the server
+     * @param clazz - the class of the response
+     * @return the cached or fetched response
+     */
+    protected <T> T getCached(String relativeUrl, Class<T> clazz) {
+
+        return this.execute(this.newRequest(ServerRequest.GET, relativeUrl, null, clazz).asCacheable(), clazz);
+    }
+
+    protected <T> T post(String resource, String id, Object object, Class<T> clazz) {
+        return this.post(resource + "/" + id, object, clazz);
+    }
+
+    /***
+     * POST the object as JSON.  The object is encoded straight to UTF-8 into a pooled buffer,
+     * which is sent as it is, and released once the request has completed.
+     */
+    protected <T> T post(String resource, Object object, Class<T> clazz) {
+
+        BufferPool.Buffer body = bufferPool.acquire();
+        try {
+            Writer writer = body.asUtf8Writer();
+            ModelCodec.getGson().toJson(object, writer);
+            writer.flush();
+            return this.execute(this.newRequest(ServerRequest.POST, resource, body, clazz), clazz);
+        } catch (IOException e) {
+            // Not possible when writing to memory
+            throw new IllegalStateException(e);
+        } finally {
+            body.release();
+        }
+    }
+
+    protected <T> T delete(String relativeUrl, String id, Class<T> clazz) {
+        return this.delete(relativeUrl + "/" + id, clazz);
+    }
+
+    protected <T> T delete(String relativeUrl, Class<T> clazz) {
+
+        return this.execute(this.newRequest(ServerRequest.DELETE, relativeUrl, null, clazz), clazz);
+    }
+
+    /***
+     * Create a request to the current server
+     *
+     * @param method - the HTTP method
+     * @param relativeUrl - the URL relative to the base URL of the server
+     * @param body - the JSON request body or null if there is none
+     * @param clazz - the class of the response, String to return the raw body or null to ignore it
+     * @return ServerRequest
+     */
+    protected ServerRequest newRequest(String method, String relativeUrl, BufferPool.Buffer body, Class<?> clazz) {
+        try {
+            return new ServerRequest(method, this.getBaseUrl(), relativeUrl, body, clazz);
+        } catch (MalformedURLException e) {
+            throw this.createCommunicationsException(CommunicationsException.MALFORMED_URL,
+                    "Unable to connect to the server - likely a programming error");
+        }
+    }
+
+    /***
+     * Pass the request through the interceptor chain
+     *
+     * @param request - the request
+     * @param clazz - the class of the response or null to ignore it
+     * @return the decoded response
+     */
+    protected <T> T execute(ServerRequest request, Class<T> clazz) {
+
+        ServerResponse response = new InterceptorChain(interceptors, request).proceed();
+        return clazz == null ? null : clazz.cast(response.getBody());
+    }
+
+    /***
+     * Perform a single HTTP exchange with the server - the last step of the interceptor chain.
+     * A successful response is decoded straight from the connection stream into the response
+     * class of the request, an unsuccessful response into an {@link Error} if it has a body.
+     *
+     * The request body is sent gzip compressed if request compression is on and the body is large
+     * enough.  Compressed responses are decompressed as they are read.
+     *
+     * @param request - the request
+     * @return the response
+     */
+    protected ServerResponse executeOnce(ServerRequest request) {
+
+        HttpURLConnection urlConnection = null;
+        boolean completed = false;
+        int httpResult = -1;
+        String endpoint = request.getEndpoint();
+        RequestTiming.Listener timingListener = this.requestTimingListener;
+        RequestTimer timer = timingListener == null ? RequestTimer.DISABLED : new RequestTimer(endpoint);
+        RequestTiming timing = null;
+        BufferPool.Buffer compressedBody = null;
+        try {
+            URL url = new URL(request.getUrl());
+            if (timer.isEnabled()) {
+                // Resolved separately to be timed - the connection then finds the address in the
+                // platform's DNS cache
+                InetAddress.getAllByName(url.getHost());
+                timer.end(RequestTiming.Phase.DNS);
+            }
+
+            Map<String, String> requestHeaders = request.getHeaders();
+            BufferPool.Buffer body = request.getBody();
+            BufferPool.Buffer encodedBody = body;
+            int threshold = requestCompressionThreshold;
+            if (body != null && threshold >= 0 && body.size() >= threshold) {
+                compressedBody = bufferPool.acquire();
+                ContentEncoding.gzip(body.getBytes(), 0, body.size(), compressedBody);
+                if (compressedBody.size() < body.size()) {
+                    encodedBody = compressedBody;
+                    requestHeaders = new LinkedHashMap<>(requestHeaders);
+                    requestHeaders.put(CONTENT_ENCODING_HEADER, ContentEncoding.GZIP);
+                }
+            }
+
+            urlConnection = this.createConnection(url, request.getMethod(), encodedBody == null ? -1 : encodedBody.size(),
+                    requestHeaders);
+            timer.end(RequestTiming.Phase.CONNECT, RequestTiming.Phase.TLS, tlsContext.takeHandshakeStartTime());
+            if (encodedBody != null) {
+                // Written straight to the socket, as the length was given up front
+                OutputStream out = urlConnection.getOutputStream();
+                out.write(encodedBody.getBytes(), 0, encodedBody.size());
+                out.close();
+                transferStats.recordRequest(endpoint, body.size(), encodedBody.size());
+                timer.setRequestBytes(encodedBody.size());
+            }
+            timer.end(RequestTiming.Phase.SEND);
+
+            httpResult = urlConnection.getResponseCode();
+            timer.end(RequestTiming.Phase.WAIT);
+
+            Object responseBody = null;
+            if (httpResult >= 200 && httpResult <= 299) {
+                if (request.getResponseClass() != null) {
+                    responseBody = this.readResponse(urlConnection, urlConnection.getInputStream(), endpoint,
+                            request.getResponseClass(), timer);
+                }
+            } else if (httpResult != HttpURLConnection.HTTP_NOT_MODIFIED) {
+                responseBody = this.readError(urlConnection, endpoint, timer);
+            }
+            completed = true;
+            if (timer.isEnabled()) {
+                timing = timer.finish(httpResult);
+            }
+            return new ServerResponse(httpResult, getResponseHeaders(urlConnection), responseBody, timing);
+
+        } catch (MalformedURLException e) {
+            throw this.createCommunicationsException(CommunicationsException.MALFORMED_URL,
+                    "Unable to connect to the server - likely a programming error");
+        } catch (ResponseTooLargeException e) {
+            throw this.createCommunicationsException(CommunicationsException.RESPONSE_TOO_LARGE,
+                    "The response from the server is too large");
+        } catch (IOException e) {
+            throw this.createCommunicationsException(CommunicationsException.CONNECTION_FAILURE,
+                    "Unable to connect to the server.  Is the server running?");
+        } catch(GeneralSecurityException e) {
+            throw this.createCommunicationsException(CommunicationsException.SECURITY_ERROR,
+                    "Security error initialising HTTPS connection");
+        } catch (JsonParseException e) {
+            throw this.createCommunicationsException(CommunicationsException.INVALID_RESPONSE,
+                    "Invalid response received from the server");
+        } finally{
+            if (compressedBody != null) {
+                compressedBody.release();
+            }
+            this.releaseConnection(urlConnection, completed);
+            if (timingListener != null) {
+                timingListener.onRequestTiming(timing != null ? timing : timer.finish(httpResult));
+            }
+        }
+    }
+
+    protected CommunicationsException createCommunicationsException(int code, String message) {
+        return new CommunicationsException(code, message);
+    }
+
+    /***
+     * Open the connection
+     *
+     * @param url - the absolute URL
+     * @param method - the HTTP method
+     * @param contentLength - the length of the request body, or -1 if there is none.  The body
+     *                      is streamed with this fixed length rather than being buffered again
+     *                      by the connection.
+     * @param requestHeaders - the headers of the request, e.g. the session or the validators of
+     *                       a cached response
+     * @return the connected connection
+     */
+    protected HttpURLConnection createConnection(URL url, String method, int contentLength,
+                                                 Map<String, String> requestHeaders) throws
+            IOException, GeneralSecurityException {
+        HttpURLConnection urlConnection = connectionPool.open(url);
+        try {
+            if (urlConnection instanceof HttpsURLConnection) {
+                ((HttpsURLConnection) urlConnection).setSSLSocketFactory(tlsContext.getSocketFactory());
+            }
+            if (contentLength >= 0) {
+                urlConnection.setDoOutput(true);
+                urlConnection.setFixedLengthStreamingMode(contentLength);
+            }
+            urlConnection.setRequestMethod(method);
+            urlConnection.setUseCaches(false);
+            urlConnection.setConnectTimeout(CONNECTION_TIMEOUT);
+            urlConnection.setReadTimeout(READ_TIMEOUT);
+            urlConnection.setRequestProperty(CONTENT_TYPE_HEADER, CONTENT_TYPE);
+            // Setting this stops the platform decompressing transparently, readResponse decodes instead
+            urlConnection.setRequestProperty(ACCEPT_ENCODING_HEADER, ContentEncoding.ACCEPTED);
+            for (Map.Entry<String, String> header : requestHeaders.entrySet()) {
+                urlConnection.setRequestProperty(header.getKey(), header.getValue());
+            }
+            urlConnection.connect();
+        } catch (IOException e) {
+            connectionPool.discard(urlConnection);
+            throw e;
+        } catch (GeneralSecurityException e) {
+            connectionPool.discard(urlConnection);
+            throw e;
+        }
+        return urlConnection;
+    }
+
+    /***
+     * Hand the connection back to the pool.  If the exchange completed the socket can be kept alive
+     * for the next request, otherwise it is closed.
+     *
+     * @param urlConnection - the connection, may be null if it could not be created
+     * @param completed - true if the response was read successfully
+     */
+    protected void releaseConnection(HttpURLConnection urlConnection, boolean completed) {
+        if (urlConnection == null) {
+            return;
+        }
+        if (completed) {
+            connectionPool.release(urlConnection);
+        } else {
+            connectionPool.discard(urlConnection);
+        }
+    }
+
+    private static Map<String, String> getResponseHeaders(HttpURLConnection urlConnection) {
+        Map<String, String> headers = new LinkedHashMap<>();
+        for (Map.Entry<String, List<String>> header : urlConnection.getHeaderFields().entrySet()) {
+            // The status line is returned with a null name
+            if (header.getKey() != null && !header.getValue().isEmpty()) {
+                headers.put(header.getKey(), header.getValue().get(header.getValue().size() - 1));
+            }
+        }
+        return headers;
+    }
+
+    /***
+     * Decode the response body of the connection, decompressing it according to its
+     * Content-Encoding and counting the bytes received.
+     *
+     * @param urlConnection - the connection
+     * @param stream - the input or error stream of the connection
+     * @param endpoint - the endpoint to which the bytes are counted
+     * @param clazz - the class to decode, String returns the body as is
+     * @param timer - times reading and decoding the body
+     * @return the decoded response
+     * @throws IOException if the stream cannot be read or the body is too large
+     */
+    protected <T> T readResponse(HttpURLConnection urlConnection, InputStream stream, String endpoint, Class<T> clazz,
+                                 RequestTimer timer) throws IOException {
+
+        CountingInputStream wireStream = new CountingInputStream(timer.time(stream));
+        CountingInputStream decodedStream = null;
+        try {
+            decodedStream = new CountingInputStream(ContentEncoding.decode(wireStream, urlConnection.getContentEncoding()));
+            return this.readResponse(decodedStream, clazz);
+        } finally {
+            transferStats.recordResponse(endpoint, wireStream.getCount(),
+                    decodedStream != null ? decodedStream.getCount() : 0);
+            timer.setResponseBytes(wireStream.getCount());
+            timer.endResponse();
+        }
+    }
+
+    /***
+     * Decode the response body directly from the stream.  The body is limited to
+     * {@link #getMaxResponseBodySize()} bytes.
+     *
+     * @param stream - the response stream
+     * @param clazz - the class to decode, String returns the body as is
+     * @return the decoded response
+     * @throws IOException if the stream cannot be read or the body is too large
+     */
+    protected <T> T readResponse(InputStream stream, Class<T> clazz) throws IOException {
+
+        Reader reader = new InputStreamReader(new BoundedInputStream(stream, maxResponseBodySize), UTF_8);
+        try {
+            if (clazz == String.class) {
+                return clazz.cast(this.readString(reader));
+            }
+            return ModelCodec.getGson().fromJson(new JsonReader(reader), clazz);
+        } catch (JsonParseException e) {
+            // Gson wraps failures reading the stream - report these as communication failures
+            // rather than as an invalid response
+            if (e.getCause() instanceof IOException && !(e.getCause() instanceof MalformedJsonException)) {
+                throw (IOException) e.getCause();
+            }
+            throw e;
+        } finally {
+            reader.close();
+        }
+    }
+
+    /***
+     * Decode the error returned by the server
+     *
+     * @param urlConnection - the connection
+     * @param endpoint - the endpoint to which the bytes are counted
+     * @param timer - times reading and decoding the body
+     * @return the Error or null if the server did not return a JSON body
+     * @throws IOException if the stream cannot be read or the body is too large
+     */
+    protected Error readError(HttpURLConnection urlConnection, String endpoint, RequestTimer timer) throws IOException {
+
+        InputStream stream = urlConnection.getErrorStream();
+        if (stream == null) {
+            return null;
+        }
+        try {
+            return this.readResponse(urlConnection, stream, endpoint, Error.class, timer);
+        } catch (JsonParseException e) {
+            // Not an error from the server's application, e.g. an HTML page from a proxy
+            return null;
+        }
+    }
+
+    protected String readString(Reader reader) throws IOException {
+
+        StringBuilder sb = new StringBuilder();
+        char[] buffer = new char[READ_BUFFER_SIZE];
+        int read;
+        while ((read = reader.read(buffer)) != -1) {
+            sb.append(buffer, 0, read);
+        }
+        return sb.toString();
+    }
+
+    /***
+     * Returns the statistics of the keep-alive connection pool used by this class
+     *
+     * @return HttpConnectionPool.PoolStats
+     */
+    public HttpConnectionPool.PoolStats getConnectionPoolStats() {
+        return connectionPool.getStats();
+    }
+
+    /***
+     * The maximum size in bytes of a response body which will be read from the server
+     *
+     * @return long
+     */
+    public long getMaxResponseBodySize() {
+        return maxResponseBodySize;
+    }
+
+    public void setMaxResponseBodySize(long maxResponseBodySize) {
+        if (maxResponseBodySize <= 0) {
+            throw new IllegalArgumentException("maxResponseBodySize <= 0: " + maxResponseBodySize);
+        }
+        this.maxResponseBodySize = maxResponseBodySize;
+    }
+
+    /***
+     * Replace the circuit breakers and rate limiters, e.g. to change their settings.
+     *
+     * @param circuitBreakers - the new circuit breakers
+     */
+    public void setCircuitBreakers(CircuitBreakers circuitBreakers) {
+        circuitBreakerInterceptor.setCircuitBreakers(circuitBreakers);
+    }
+
+    /***
+     * Returns the circuit breaker state changes and the number of calls refused
+     *
+     * @return CircuitBreakers.Stats
+     */
+    public CircuitBreakers.Stats getCircuitBreakerStats() {
+        return circuitBreakerInterceptor.getCircuitBreakers().getStats();
+    }
+
+    /***
+     * Returns the statistics of the cache of authenticator responses
+     *
+     * @return ResponseCache.Stats
+     */
+    public ResponseCache.Stats getResponseCacheStats() {
+        return responseCacheInterceptor.getStats();
+    }
+
+    /***
+     * Returns the bytes sent and received per endpoint, before and after compression
+     *
+     * @return the counters keyed by endpoint
+     */
+    public Map<String, TransferStats.Endpoint> getTransferStats() {
+        return transferStats.getStats();
+    }
+
+    public int getRequestCompressionThreshold() {
+        return requestCompressionThreshold;
+    }
+
+    /***
+     * Turn on compression of request bodies.  The server must accept gzip encoded requests, so
+     * compression is off by default.
+     *
+     * @param requestCompressionThreshold - the size in bytes from which request bodies are
+     *                                    compressed, or -1 to turn compression off
+     */
+    public void setRequestCompressionThreshold(int requestCompressionThreshold) {
+        this.requestCompressionThreshold = requestCompressionThreshold;
+    }
+
+    /***
+     * Returns the use of the pooled buffers which request bodies are built in
+     *
+     * @return BufferPool.Stats
+     */
+    public BufferPool.Stats getBufferPoolStats() {
+        return bufferPool.getStats();
+    }
+
+    /***
+     * Returns the TLS handshake times and how many handshakes resumed an earlier session
+     *
+     * @return TlsContext.Stats
+     */
+    public TlsContext.Stats getTlsStats() {
+        return tlsContext.getStats();
+    }
+
+    /***
+     * Install a listener to be given the timing of every exchange with the server, split into
+     * DNS, connect, TLS, send, wait, transfer and parse phases.  Exchanges are only timed while a
+     * listener is installed.
+     *
+     * @param requestTimingListener - the listener or null to stop timing
+     */
+    public void setRequestTimingListener(RequestTiming.Listener requestTimingListener) {
+        this.requestTimingListener = requestTimingListener;
+    }
+
+    /***
+     * Returns the number of GET requests which joined an identical request already in progress
+     *
+     * @return SingleFlight.Stats
+     */
+    public SingleFlight.Stats getSingleFlightStats() {
+        return singleFlightInterceptor.getStats();
+    }
+
+    public RetryPolicy getRetryPolicy() {
+        return retryInterceptor.getPolicy();
+    }
+
+    /***
+     * Replace the retry policy.  The retry budgets and response times collected so far are reset.
+     *
+     * @param retryPolicy - the new policy, {@link RetryPolicy#NONE} turns retries off
+     */
+    public void setRetryPolicy(RetryPolicy retryPolicy) {
+        retryInterceptor.setPolicy(retryPolicy);
+    }
+
+    /***
+     * Returns the retry and hedging statistics for the current retry policy
+     *
+     * @return RetryHandler.Stats
+     */
+    public RetryHandler.Stats getRetryStats() {
+        return retryInterceptor.getStats();
+    }
+}
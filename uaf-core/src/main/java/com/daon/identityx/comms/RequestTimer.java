@@ -0,0 +1,189 @@
+/*
+* Copyright Daon.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.daon.identityx.comms;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Measures the phases of one HTTP exchange as it is made, producing a {@link RequestTiming}.
+ *
+ * Each call to {@link #end(RequestTiming.Phase)} gives the time since the previous call to the
+ * phase which has just ended.  Reading and decoding the response body are interleaved, so the
+ * body stream is wrapped with {@link #time(InputStream)} to tell the time spent waiting for
+ * the network from the time spent decoding.
+ *
+ * {@link #DISABLED} does nothing, so that the exchange can be written the same way whether or
+ * not it is being timed.  Not thread safe - a timer belongs to one exchange.
+ *
+ * Created by Daon
+ */
+public class RequestTimer {
+
+    /**
+     * A timer which records nothing
+     */
+    public static final RequestTimer DISABLED = new RequestTimer(null, false);
+
+    private final String endpoint;
+    private final boolean enabled;
+    private final long start;
+    private final long[] phaseTimes = new long[RequestTiming.Phase.values().length];
+    private long lastMark;
+    private long readTime;
+    private long requestBytes;
+    private long responseBytes;
+
+    /***
+     * Start timing an exchange
+     *
+     * @param endpoint - the endpoint called
+     */
+    public RequestTimer(String endpoint) {
+        this(endpoint, true);
+    }
+
+    private RequestTimer(String endpoint, boolean enabled) {
+        this.endpoint = endpoint;
+        this.enabled = enabled;
+        this.start = enabled ? System.nanoTime() : 0;
+        this.lastMark = start;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /***
+     * The phase has just ended
+     *
+     * @param phase - the phase
+     */
+    public void end(RequestTiming.Phase phase) {
+        if (enabled) {
+            long now = System.nanoTime();
+            phaseTimes[phase.ordinal()] += now - lastMark;
+            lastMark = now;
+        }
+    }
+
+    /***
+     * Two consecutive phases have just ended, e.g. the TCP connection and the TLS handshake
+     *
+     * @param first - the first phase
+     * @param second - the second phase
+     * @param secondStart - the {@link System#nanoTime()} when the second phase started, or 0 if
+     *                    it did not happen
+     */
+    public void end(RequestTiming.Phase first, RequestTiming.Phase second, long secondStart) {
+        if (enabled) {
+            long now = System.nanoTime();
+            if (secondStart > lastMark && secondStart <= now) {
+                phaseTimes[first.ordinal()] += secondStart - lastMark;
+                phaseTimes[second.ordinal()] += now - secondStart;
+            } else {
+                phaseTimes[first.ordinal()] += now - lastMark;
+            }
+            lastMark = now;
+        }
+    }
+
+    /***
+     * The response body has been read and decoded.  The time spent reading the stream returned
+     * by {@link #time(InputStream)} is given to {@link RequestTiming.Phase#TRANSFER} and the
+     * rest to {@link RequestTiming.Phase#PARSE}.
+     */
+    public void endResponse() {
+        if (enabled) {
+            long now = System.nanoTime();
+            long transfer = Math.min(readTime, now - lastMark);
+            phaseTimes[RequestTiming.Phase.TRANSFER.ordinal()] += transfer;
+            phaseTimes[RequestTiming.Phase.PARSE.ordinal()] += now - lastMark - transfer;
+            readTime = 0;
+            lastMark = now;
+        }
+    }
+
+    /***
+     * Wrap the response stream to measure the time spent reading it
+     *
+     * @param stream - the response stream as received
+     * @return the timed stream, or the stream itself if the timer is disabled
+     */
+    public InputStream time(InputStream stream) {
+        return enabled ? new TimedInputStream(stream) : stream;
+    }
+
+    public void setRequestBytes(long requestBytes) {
+        if (enabled) {
+            this.requestBytes = requestBytes;
+        }
+    }
+
+    public void setResponseBytes(long responseBytes) {
+        if (enabled) {
+            this.responseBytes = responseBytes;
+        }
+    }
+
+    /***
+     * @param status - the HTTP status code or -1 if no response was received
+     * @return the timing of the exchange
+     */
+    public RequestTiming finish(int status) {
+        return new RequestTiming(endpoint, status, requestBytes, responseBytes, phaseTimes.clone(),
+                System.nanoTime() - start);
+    }
+
+    private class TimedInputStream extends FilterInputStream {
+
+        TimedInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            long start = System.nanoTime();
+            try {
+                return super.read();
+            } finally {
+                readTime += System.nanoTime() - start;
+            }
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            long start = System.nanoTime();
+            try {
+                return super.read(b, off, len);
+            } finally {
+                readTime += System.nanoTime() - start;
+            }
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long start = System.nanoTime();
+            try {
+                return super.skip(n);
+            } finally {
+                readTime += System.nanoTime() - start;
+            }
+        }
+    }
+}
@@ -0,0 +1,128 @@
+/*
+* Copyright Daon.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.daon.identityx.comms;
+
+import java.util.Locale;
+
+/**
+ * Where the time of one HTTP exchange with the server went, split into phases.
+ *
+ * The phases follow one another and add up to the total time of the exchange, except for any
+ * time spent between them, e.g. in the connection pool.  A phase which did not happen, such as
+ * the TLS handshake on a reused connection, has a time of zero.
+ *
+ * Created by Daon
+ */
+public class RequestTiming {
+
+    public enum Phase {
+        /** Resolving the server's host name */
+        DNS,
+        /** Opening the TCP connection, or taking a kept alive one */
+        CONNECT,
+        /** The TLS handshake */
+        TLS,
+        /** Sending the request body */
+        SEND,
+        /** Waiting for the first byte of the response */
+        WAIT,
+        /** Reading the response body from the network */
+        TRANSFER,
+        /** Decompressing and decoding the response body */
+        PARSE
+    }
+
+    /**
+     * Receives the timing of every exchange.  It is called on the thread which made the exchange,
+     * so must return quickly and must not throw.
+     */
+    public interface Listener {
+        void onRequestTiming(RequestTiming timing);
+    }
+
+    private final String endpoint;
+    private final int status;
+    private final long requestBytes;
+    private final long responseBytes;
+    private final long[] phaseTimes;
+    private final long totalTime;
+
+    RequestTiming(String endpoint, int status, long requestBytes, long responseBytes, long[] phaseTimes, long totalTime) {
+        this.endpoint = endpoint;
+        this.status = status;
+        this.requestBytes = requestBytes;
+        this.responseBytes = responseBytes;
+        this.phaseTimes = phaseTimes;
+        this.totalTime = totalTime;
+    }
+
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    /***
+     * @return the HTTP status code or -1 if no response was received
+     */
+    public int getStatus() {
+        return status;
+    }
+
+    /***
+     * @return the size in bytes of the request body as sent
+     */
+    public long getRequestBytes() {
+        return requestBytes;
+    }
+
+    /***
+     * @return the size in bytes of the response body as received
+     */
+    public long getResponseBytes() {
+        return responseBytes;
+    }
+
+    /***
+     * @param phase - the phase
+     * @return the time in nanoseconds spent in the phase
+     */
+    public long getTime(Phase phase) {
+        return phaseTimes[phase.ordinal()];
+    }
+
+    /***
+     * @return the time in nanoseconds of the whole exchange
+     */
+    public long getTotalTime() {
+        return totalTime;
+    }
+
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(endpoint).append(" Status: ").append(status)
+                .append(" Sent: ").append(requestBytes).append(" Received: ").append(responseBytes)
+                .append(" Total: ").append(toMillis(totalTime)).append("ms");
+        for (Phase phase : Phase.values()) {
+            sb.append(' ').append(phase.name().toLowerCase(Locale.US)).append(": ")
+                    .append(toMillis(phaseTimes[phase.ordinal()])).append("ms");
+        }
+        return sb.toString();
+    }
+
+    private static String toMillis(long nanos) {
+        return String.format(Locale.US, "%.1f", nanos / 1e6);
+    }
+}
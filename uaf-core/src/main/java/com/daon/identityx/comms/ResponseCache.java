@@ -0,0 +1,282 @@
+/*
+* Copyright Daon.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.daon.identityx.comms;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * In-memory cache of decoded responses, used to serve responses stale while they are
+ * revalidated with the server.
+ *
+ * An entry is fresh for a short time after it is stored or revalidated and can be served without
+ * asking the server.  After that it is stale: it can still be served, up to the maximum staleness,
+ * but should be revalidated.  The ETag and Last-Modified validators returned by the server are
+ * kept with the entry so that the revalidation can be a conditional request.
+ *
+ * Every invalidation starts a new generation.  A response is only stored if no invalidation
+ * happened while it was being fetched, so that a request which was already in progress cannot
+ * put back data which a local change has made out of date.
+ *
+ * Created by Daon
+ */
+public class ResponseCache {
+
+    public static final int DEFAULT_MAX_ENTRIES = 32;
+    public static final long DEFAULT_FRESH_FOR = 5 * 1000;
+    public static final long DEFAULT_MAX_STALE = 10 * 60 * 1000;
+
+    private final long freshFor;
+    private final long maxStale;
+    private final Map<String, Entry> entries;
+
+    private long generation;
+
+    private long hits;
+    private long staleHits;
+    private long misses;
+    private long notModified;
+    private long invalidations;
+
+    public ResponseCache() {
+        this(DEFAULT_MAX_ENTRIES, DEFAULT_FRESH_FOR, DEFAULT_MAX_STALE);
+    }
+
+    /***
+     * @param maxEntries - the maximum number of responses kept, the least recently used are dropped
+     * @param freshFor - the time in milliseconds for which a response is served without revalidation
+     * @param maxStale - the time in milliseconds after which a response is no longer served
+     */
+    public ResponseCache(final int maxEntries, long freshFor, long maxStale) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("maxEntries < 1: " + maxEntries);
+        }
+        if (freshFor < 0 || maxStale < freshFor) {
+            throw new IllegalArgumentException("Invalid freshness: " + freshFor + " - " + maxStale);
+        }
+        this.freshFor = freshFor;
+        this.maxStale = maxStale;
+        this.entries = new LinkedHashMap<String, ResponseCache.Entry>(maxEntries, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, ResponseCache.Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /***
+     * Look up a response to serve
+     *
+     * @param key - the key of the response
+     * @return the entry or null if there is none which can be served
+     */
+    public synchronized Entry get(String key) {
+        Entry entry = this.peek(key);
+        if (entry == null) {
+            misses++;
+        } else if (entry.isFresh()) {
+            hits++;
+        } else {
+            staleHits++;
+        }
+        return entry;
+    }
+
+    /***
+     * Look up a response without counting it, e.g. to find its validators
+     *
+     * @param key - the key of the response
+     * @return the entry or null if there is none which can be served
+     */
+    public synchronized Entry peek(String key) {
+        Entry entry = entries.get(key);
+        if (entry != null && System.currentTimeMillis() - entry.storedAt > maxStale) {
+            entries.remove(key);
+            entry = null;
+        }
+        return entry;
+    }
+
+    /***
+     * @return the current generation, to be passed to {@link #put} and {@link #notModified}
+     */
+    public synchronized long getGeneration() {
+        return generation;
+    }
+
+    /***
+     * Store a response fetched from the server
+     *
+     * @param key - the key of the response
+     * @param value - the decoded response
+     * @param etag - the ETag header of the response, may be null
+     * @param lastModified - the Last-Modified header of the response, may be null
+     * @param generation - the generation when the request was started
+     */
+    public synchronized void put(String key, Object value, String etag, String lastModified, long generation) {
+        if (generation == this.generation) {
+            entries.put(key, new Entry(value, etag, lastModified, System.currentTimeMillis()));
+        }
+    }
+
+    /***
+     * The server has confirmed that the stored response is still current
+     *
+     * @param key - the key of the response
+     * @param generation - the generation when the request was started
+     * @return the entry or null if it has been invalidated
+     */
+    public synchronized Entry notModified(String key, long generation) {
+        Entry entry = entries.get(key);
+        if (entry == null || generation != this.generation) {
+            return null;
+        }
+        notModified++;
+        Entry refreshed = new Entry(entry.value, entry.etag, entry.lastModified, System.currentTimeMillis());
+        entries.put(key, refreshed);
+        return refreshed;
+    }
+
+    public synchronized void remove(String key) {
+        entries.remove(key);
+    }
+
+    /***
+     * Drop every response, e.g. after a change which may have made any of them out of date
+     */
+    public synchronized void invalidateAll() {
+        generation++;
+        invalidations++;
+        entries.clear();
+    }
+
+    /***
+     * Mark the response as being revalidated
+     *
+     * @param key - the key of the response
+     * @return false if it is already being revalidated or is no longer in the cache
+     */
+    public synchronized boolean startRevalidation(String key) {
+        Entry entry = entries.get(key);
+        if (entry == null || entry.revalidating) {
+            return false;
+        }
+        entry.revalidating = true;
+        return true;
+    }
+
+    public synchronized void finishRevalidation(String key) {
+        Entry entry = entries.get(key);
+        if (entry != null) {
+            entry.revalidating = false;
+        }
+    }
+
+    public synchronized Stats getStats() {
+        return new Stats(hits, staleHits, misses, notModified, invalidations, entries.size());
+    }
+
+    /**
+     * A cached response
+     */
+    public class Entry {
+        private final Object value;
+        private final String etag;
+        private final String lastModified;
+        private final long storedAt;
+        private boolean revalidating;
+
+        Entry(Object value, String etag, String lastModified, long storedAt) {
+            this.value = value;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.storedAt = storedAt;
+        }
+
+        public Object getValue() {
+            return value;
+        }
+
+        public String getEtag() {
+            return etag;
+        }
+
+        public String getLastModified() {
+            return lastModified;
+        }
+
+        public boolean isFresh() {
+            return System.currentTimeMillis() - storedAt <= freshFor;
+        }
+    }
+
+    /**
+     * Snapshot of the cache counters
+     */
+    public static class Stats {
+        private final long hits;
+        private final long staleHits;
+        private final long misses;
+        private final long notModified;
+        private final long invalidations;
+        private final int size;
+
+        Stats(long hits, long staleHits, long misses, long notModified, long invalidations, int size) {
+            this.hits = hits;
+            this.staleHits = staleHits;
+            this.misses = misses;
+            this.notModified = notModified;
+            this.invalidations = invalidations;
+            this.size = size;
+        }
+
+        public long getHits() {
+            return hits;
+        }
+
+        /***
+         * @return the number of stale responses served while they were revalidated
+         */
+        public long getStaleHits() {
+            return staleHits;
+        }
+
+        public long getMisses() {
+            return misses;
+        }
+
+        /***
+         * @return the number of revalidations answered with 304 Not Modified
+         */
+        public long getNotModified() {
+            return notModified;
+        }
+
+        public long getInvalidations() {
+            return invalidations;
+        }
+
+        public int getSize() {
+            return size;
+        }
+
+        public String toString() {
+            return "Hits: " + hits + " Stale hits: " + staleHits + " Misses: " + misses
+                    + " Not modified: " + notModified + " Invalidations: " + invalidations + " Size: " + size;
+        }
+    }
+}
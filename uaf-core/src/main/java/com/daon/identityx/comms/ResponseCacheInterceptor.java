@@ -0,0 +1,151 @@
+/*
+* Copyright Daon.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.daon.identityx.comms;
+
+import com.daon.identityx.exception.CommunicationsException;
+import com.daon.identityx.exception.ServerError;
+
+import java.net.HttpURLConnection;
+import java.util.Collections;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Answers cacheable requests from a {@link ResponseCache}.
+ *
+ * A cached response is returned straight away without proceeding; if it is stale it is
+ * revalidated with the server in the background so that the next request gets the current
+ * response.  Requests to the server for a response which is cached are made conditional on it
+ * having changed, and a 304 Not Modified response is answered with the cached response.
+ *
+ * The cache is keyed by {@link ServerRequest#getKey()}, which includes the session, and is
+ * emptied by any request which is not idempotent, as it may have changed data on the server.
+ *
+ * Created by Daon
+ */
+public class ResponseCacheInterceptor implements Interceptor {
+
+    public static final String IF_NONE_MATCH_HEADER = "If-None-Match";
+    public static final String IF_MODIFIED_SINCE_HEADER = "If-Modified-Since";
+    public static final String ETAG_HEADER = "ETag";
+    public static final String LAST_MODIFIED_HEADER = "Last-Modified";
+
+    private final ResponseCache responseCache;
+    private final ExecutorService revalidationExecutor;
+
+    public ResponseCacheInterceptor() {
+        this(new ResponseCache(), CommsExecutors.newIoExecutor("rp-revalidate", 1, 16));
+    }
+
+    /***
+     * @param responseCache - the cache
+     * @param revalidationExecutor - revalidates stale responses
+     */
+    public ResponseCacheInterceptor(ResponseCache responseCache, ExecutorService revalidationExecutor) {
+        this.responseCache = responseCache;
+        this.revalidationExecutor = revalidationExecutor;
+    }
+
+    @Override
+    public ServerResponse intercept(Chain chain) {
+        ServerRequest request = chain.getRequest();
+        if (!request.isIdempotent()) {
+            try {
+                return chain.proceed(request);
+            } finally {
+                responseCache.invalidateAll();
+            }
+        }
+        if (!request.isCacheable()) {
+            return chain.proceed(request);
+        }
+
+        String key = request.getKey();
+        ResponseCache.Entry entry = responseCache.get(key);
+        if (entry != null) {
+            if (!entry.isFresh()) {
+                this.revalidate(chain, request, key);
+            }
+            return toResponse(entry);
+        }
+        return this.fetch(chain, request, key);
+    }
+
+    public ResponseCache.Stats getStats() {
+        return responseCache.getStats();
+    }
+
+    /***
+     * Drop every cached response
+     */
+    public void invalidateAll() {
+        responseCache.invalidateAll();
+    }
+
+    private ServerResponse fetch(Chain chain, ServerRequest request, String key) {
+        long generation = responseCache.getGeneration();
+        ResponseCache.Entry cached = responseCache.peek(key);
+        ServerRequest conditionalRequest = request;
+        if (cached != null && cached.getEtag() != null) {
+            conditionalRequest = conditionalRequest.withHeader(IF_NONE_MATCH_HEADER, cached.getEtag());
+        }
+        if (cached != null && cached.getLastModified() != null) {
+            conditionalRequest = conditionalRequest.withHeader(IF_MODIFIED_SINCE_HEADER, cached.getLastModified());
+        }
+
+        ServerResponse response = chain.proceed(conditionalRequest);
+        if (response.getStatus() == HttpURLConnection.HTTP_NOT_MODIFIED && cached != null) {
+            ResponseCache.Entry refreshed = responseCache.notModified(key, generation);
+            return toResponse(refreshed != null ? refreshed : cached);
+        }
+        if (response.isSuccessful()) {
+            responseCache.put(key, response.getBody(), response.getHeader(ETAG_HEADER),
+                    response.getHeader(LAST_MODIFIED_HEADER), generation);
+        }
+        return response;
+    }
+
+    private void revalidate(final Chain chain, final ServerRequest request, final String key) {
+
+        if (!responseCache.startRevalidation(key)) {
+            return;
+        }
+        try {
+            revalidationExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        fetch(chain, request, key);
+                    } catch (ServerError e) {
+                        // e.g. the resource no longer exists
+                        responseCache.remove(key);
+                    } catch (CommunicationsException e) {
+                        // Keep serving the stale response until it can be revalidated
+                    } finally {
+                        responseCache.finishRevalidation(key);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            responseCache.finishRevalidation(key);
+        }
+    }
+
+    private static ServerResponse toResponse(ResponseCache.Entry entry) {
+        return new ServerResponse(HttpURLConnection.HTTP_OK, Collections.<String, String>emptyMap(), entry.getValue(), null);
+    }
+}
@@ -0,0 +1,38 @@
+/*
+* Copyright Daon.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.daon.identityx.comms;
+
+import java.io.IOException;
+
+/**
+ * Thrown when a response body is larger than the configured maximum.
+ *
+ * Created by Daon
+ */
+public class ResponseTooLargeException extends IOException {
+
+    private final long maxBodySize;
+
+    public ResponseTooLargeException(long maxBodySize) {
+        super("The response body exceeds the maximum size of " + maxBodySize + " bytes");
+        this.maxBodySize = maxBodySize;
+    }
+
+    public long getMaxBodySize() {
+        return maxBodySize;
+    }
+}
@@ -0,0 +1,75 @@
+/*
+* Copyright Daon.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.daon.identityx.comms;
+
+/**
+ * Limits the number of retries made to an endpoint so that a failing link or server does not
+ * multiply the load on the server.
+ *
+ * Every request deposits a fraction of a retry into the budget and every retry withdraws a whole
+ * one, so over time at most that fraction of the requests are retried.  A small number of
+ * retries every second are allowed regardless, so that an endpoint which is called rarely can
+ * still be retried.
+ *
+ * Created by Daon
+ */
+public class RetryBudget {
+
+    private static final double MAX_BALANCE = 10;
+    private static final long WINDOW = 1000;
+
+    private final double retryRatio;
+    private final int minRetriesPerSecond;
+
+    private double balance;
+    private long windowStart;
+    private int windowRetries;
+
+    public RetryBudget(double retryRatio, int minRetriesPerSecond) {
+        this.retryRatio = retryRatio;
+        this.minRetriesPerSecond = minRetriesPerSecond;
+    }
+
+    /***
+     * Record a request to the endpoint
+     */
+    public synchronized void deposit() {
+        balance = Math.min(balance + retryRatio, MAX_BALANCE);
+    }
+
+    /***
+     * Attempt to pay for a retry
+     *
+     * @return true if the retry may be made
+     */
+    public synchronized boolean tryWithdraw() {
+        long now = System.currentTimeMillis();
+        if (now - windowStart >= WINDOW) {
+            windowStart = now;
+            windowRetries = 0;
+        }
+        if (windowRetries < minRetriesPerSecond) {
+            windowRetries++;
+            return true;
+        }
+        if (balance >= 1) {
+            balance -= 1;
+            return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,302 @@
+/*
+* Copyright Daon.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.daon.identityx.comms;
+
+import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Makes calls to the server according to a {@link RetryPolicy}.
+ *
+ * Only idempotent calls are retried or hedged, and only when they fail with an exception which
+ * the retry condition accepts.  Each endpoint has its own {@link RetryBudget} and, for hedging,
+ * its own {@link LatencyTracker}.
+ *
+ * A hedged call runs its attempts on a separate executor while the calling thread waits.  The
+ * first successful attempt wins and the other is cancelled; as blocking network I/O cannot
+ * always be interrupted the losing attempt may run to completion, in which case its result is
+ * discarded.
+ *
+ * Created by Daon
+ */
+public class RetryHandler {
+
+    private static final int HEDGE_THREADS = 4;
+    private static final int HEDGE_QUEUE_CAPACITY = 8;
+
+    private final RetryPolicy policy;
+    private final RetryCondition retryCondition;
+    private final ExecutorService hedgeExecutor;
+    private final Random random = new Random();
+
+    private final ConcurrentMap<String, RetryBudget> budgets = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, LatencyTracker> latencies = new ConcurrentHashMap<>();
+
+    private final AtomicLong calls = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong budgetExhausted = new AtomicLong();
+    private final AtomicLong hedges = new AtomicLong();
+    private final AtomicLong hedgeWins = new AtomicLong();
+
+    /***
+     * @param policy - the retry policy
+     * @param retryCondition - decides which failures may be retried
+     */
+    public RetryHandler(RetryPolicy policy, RetryCondition retryCondition) {
+        this.policy = policy;
+        this.retryCondition = retryCondition;
+        this.hedgeExecutor = policy.isHedging()
+                ? CommsExecutors.newIoExecutor("rp-hedge", HEDGE_THREADS, HEDGE_QUEUE_CAPACITY) : null;
+    }
+
+    public RetryPolicy getPolicy() {
+        return policy;
+    }
+
+    /***
+     * Make the call, retrying or hedging it if it is idempotent.
+     *
+     * @param endpoint - identifies the endpoint for the retry budget and response times
+     * @param idempotent - true if the call may safely be made more than once
+     * @param call - makes one attempt
+     * @return the result of the first successful attempt
+     * @throws InterruptedException if the thread is interrupted while backing off or waiting for
+     *      a hedged call
+     */
+    public <T> T call(String endpoint, boolean idempotent, Callable<T> call) throws InterruptedException {
+        calls.incrementAndGet();
+        if (!idempotent) {
+            return this.attempt(call);
+        }
+
+        RetryBudget budget = this.getBudget(endpoint);
+        budget.deposit();
+        int attempt = 1;
+        while (true) {
+            try {
+                if (policy.isHedging()) {
+                    return this.hedge(endpoint, call, budget);
+                }
+                return this.attempt(call);
+            } catch (RuntimeException e) {
+                if (attempt >= policy.getMaxAttempts() || !retryCondition.isRetryable(e)) {
+                    throw e;
+                }
+                if (!budget.tryWithdraw()) {
+                    budgetExhausted.incrementAndGet();
+                    throw e;
+                }
+                Thread.sleep(policy.getBackoff(attempt, random));
+                retries.incrementAndGet();
+                attempt++;
+            }
+        }
+    }
+
+    /***
+     * Release the threads used for hedging
+     */
+    public void shutdown() {
+        if (hedgeExecutor != null) {
+            hedgeExecutor.shutdown();
+        }
+    }
+
+    public Stats getStats() {
+        return new Stats(calls.get(), retries.get(), budgetExhausted.get(), hedges.get(), hedgeWins.get());
+    }
+
+    private <T> T attempt(Callable<T> call) {
+        try {
+            return call.call();
+        } catch (Exception e) {
+            throw Throwables.propagate(e);
+        }
+    }
+
+    private <T> T hedge(String endpoint, final Callable<T> call, RetryBudget budget) throws InterruptedException {
+        final LatencyTracker tracker = this.getLatencyTracker(endpoint);
+        Callable<T> timedCall = new Callable<T>() {
+            @Override
+            public T call() throws Exception {
+                long start = System.nanoTime();
+                T result = call.call();
+                tracker.record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                return result;
+            }
+        };
+
+        long hedgeDelay = tracker.getPercentile(policy.getHedgePercentile());
+        CompletionService<T> completionService = new ExecutorCompletionService<>(hedgeExecutor);
+        List<Future<T>> attempts = new ArrayList<>(2);
+        try {
+            attempts.add(completionService.submit(timedCall));
+        } catch (RejectedExecutionException e) {
+            // Too busy to hedge
+            return this.attempt(timedCall);
+        }
+        try {
+            Future<T> completed = null;
+            if (hedgeDelay >= 0) {
+                completed = completionService.poll(Math.max(hedgeDelay, policy.getMinHedgeDelay()), TimeUnit.MILLISECONDS);
+                if (completed == null && budget.tryWithdraw()) {
+                    try {
+                        attempts.add(completionService.submit(timedCall));
+                        hedges.incrementAndGet();
+                    } catch (RejectedExecutionException e) {
+                        // Carry on waiting for the first attempt
+                    }
+                }
+            }
+            if (completed == null) {
+                completed = completionService.take();
+            }
+            try {
+                T result = this.getResult(completed);
+                if (attempts.size() > 1 && completed == attempts.get(1)) {
+                    hedgeWins.incrementAndGet();
+                }
+                return result;
+            } catch (RuntimeException e) {
+                if (attempts.size() == 1) {
+                    throw e;
+                }
+                // The other attempt may still succeed
+                completed = completionService.take();
+                T result = this.getResult(completed);
+                if (completed == attempts.get(1)) {
+                    hedgeWins.incrementAndGet();
+                }
+                return result;
+            }
+        } finally {
+            for (Future<T> future : attempts) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    private <T> T getResult(Future<T> future) throws InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwables.propagateIfPossible(e.getCause());
+            throw new UncheckedExecutionException(e.getCause());
+        }
+    }
+
+    private RetryBudget getBudget(String endpoint) {
+        RetryBudget budget = budgets.get(endpoint);
+        if (budget == null) {
+            RetryBudget newBudget = new RetryBudget(policy.getRetryRatio(), policy.getMinRetriesPerSecond());
+            budget = budgets.putIfAbsent(endpoint, newBudget);
+            if (budget == null) {
+                budget = newBudget;
+            }
+        }
+        return budget;
+    }
+
+    private LatencyTracker getLatencyTracker(String endpoint) {
+        LatencyTracker tracker = latencies.get(endpoint);
+        if (tracker == null) {
+            LatencyTracker newTracker = new LatencyTracker();
+            tracker = latencies.putIfAbsent(endpoint, newTracker);
+            if (tracker == null) {
+                tracker = newTracker;
+            }
+        }
+        return tracker;
+    }
+
+    /**
+     * Decides whether a failed attempt may be retried
+     */
+    public interface RetryCondition {
+
+        /***
+         * @param failure - the exception thrown by the attempt
+         * @return true if the call may be retried
+         */
+        boolean isRetryable(RuntimeException failure);
+    }
+
+    /**
+     * Snapshot of the retry counters
+     */
+    public static class Stats {
+        private final long calls;
+        private final long retries;
+        private final long budgetExhausted;
+        private final long hedges;
+        private final long hedgeWins;
+
+        Stats(long calls, long retries, long budgetExhausted, long hedges, long hedgeWins) {
+            this.calls = calls;
+            this.retries = retries;
+            this.budgetExhausted = budgetExhausted;
+            this.hedges = hedges;
+            this.hedgeWins = hedgeWins;
+        }
+
+        public long getCalls() {
+            return calls;
+        }
+
+        public long getRetries() {
+            return retries;
+        }
+
+        /***
+         * @return the number of failures which were not retried because the retry budget was spent
+         */
+        public long getBudgetExhausted() {
+            return budgetExhausted;
+        }
+
+        public long getHedges() {
+            return hedges;
+        }
+
+        /***
+         * @return the number of hedged calls where the second attempt completed first
+         */
+        public long getHedgeWins() {
+            return hedgeWins;
+        }
+
+        public String toString() {
+            return "Calls: " + calls + " Retries: " + retries + " Budget exhausted: " + budgetExhausted
+                    + " Hedges: " + hedges + " Hedge wins: " + hedgeWins;
+        }
+    }
+}
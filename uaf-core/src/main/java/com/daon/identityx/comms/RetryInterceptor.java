@@ -0,0 +1,85 @@
+/*
+* Copyright Daon.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.daon.identityx.comms;
+
+import com.daon.identityx.exception.CommunicationsException;
+
+import java.util.concurrent.Callable;
+
+/**
+ * Retries, or hedges, idempotent requests according to a {@link RetryPolicy} if the server
+ * cannot be reached.
+ *
+ * Created by Daon
+ */
+public class RetryInterceptor implements Interceptor {
+
+    // Only failures to reach the server are retried - errors returned by the server are not
+    private static final RetryHandler.RetryCondition IS_CONNECTION_FAILURE = new RetryHandler.RetryCondition() {
+        @Override
+        public boolean isRetryable(RuntimeException failure) {
+            return failure instanceof CommunicationsException
+                    && ((CommunicationsException) failure).getError().getCode() == CommunicationsException.CONNECTION_FAILURE;
+        }
+    };
+
+    private volatile RetryHandler retryHandler;
+
+    public RetryInterceptor() {
+        this(RetryPolicy.DEFAULT);
+    }
+
+    public RetryInterceptor(RetryPolicy policy) {
+        this.retryHandler = new RetryHandler(policy, IS_CONNECTION_FAILURE);
+    }
+
+    @Override
+    public ServerResponse intercept(final Chain chain) {
+        final ServerRequest request = chain.getRequest();
+        try {
+            return retryHandler.call(request.getEndpoint(), request.isIdempotent(), new Callable<ServerResponse>() {
+                @Override
+                public ServerResponse call() {
+                    return chain.proceed(request);
+                }
+            });
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CommunicationsException(CommunicationsException.CONNECTION_FAILURE,
+                    "Unable to connect to the server.  Is the server running?");
+        }
+    }
+
+    public RetryPolicy getPolicy() {
+        return retryHandler.getPolicy();
+    }
+
+    /***
+     * Replace the retry policy.  The retry budgets and response times collected so far are reset.
+     *
+     * @param policy - the new policy, {@link RetryPolicy#NONE} turns retries off
+     */
+    public void setPolicy(RetryPolicy policy) {
+        RetryHandler previous = this.retryHandler;
+        this.retryHandler = new RetryHandler(policy, IS_CONNECTION_FAILURE);
+        previous.shutdown();
+    }
+
+    public RetryHandler.Stats getStats() {
+        return retryHandler.getStats();
+    }
+}
@@ -0,0 +1,164 @@
+/*
+* Copyright Daon.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.daon.identityx.comms;
+
+import java.util.Random;
+
+/**
+ * Settings controlling how {@link RetryHandler} retries and hedges idempotent requests.
+ *
+ * Retries back off exponentially from the initial backoff up to the maximum backoff.  Half of
+ * each backoff is fixed and half is random so that clients which failed at the same time do not
+ * retry at the same time.
+ *
+ * Retries and hedged requests are paid for from a {@link RetryBudget} per endpoint, which allows
+ * a fraction of the requests to be retried plus a small number of retries every second.
+ *
+ * Hedging is off by default.  When it is on, a second attempt is started if the first has not
+ * completed within the given percentile of the recent response times of the endpoint.
+ *
+ * Instances are immutable.
+ *
+ * Created by Daon
+ */
+public class RetryPolicy {
+
+    public static final int DEFAULT_MAX_ATTEMPTS = 3;
+    public static final long DEFAULT_INITIAL_BACKOFF = 200;
+    public static final long DEFAULT_MAX_BACKOFF = 2000;
+    public static final double DEFAULT_RETRY_RATIO = 0.2;
+    public static final int DEFAULT_MIN_RETRIES_PER_SECOND = 2;
+    public static final double DEFAULT_HEDGE_PERCENTILE = 0.95;
+    public static final long DEFAULT_MIN_HEDGE_DELAY = 50;
+
+    public static final RetryPolicy DEFAULT = new RetryPolicy(DEFAULT_MAX_ATTEMPTS, DEFAULT_INITIAL_BACKOFF, DEFAULT_MAX_BACKOFF);
+    public static final RetryPolicy NONE = new RetryPolicy(1, DEFAULT_INITIAL_BACKOFF, DEFAULT_MAX_BACKOFF);
+
+    private final int maxAttempts;
+    private final long initialBackoff;
+    private final long maxBackoff;
+    private final double retryRatio;
+    private final int minRetriesPerSecond;
+    private final double hedgePercentile;
+    private final long minHedgeDelay;
+
+    /***
+     * @param maxAttempts - the maximum number of attempts, including the first
+     * @param initialBackoff - the backoff in milliseconds before the first retry
+     * @param maxBackoff - the maximum backoff in milliseconds
+     */
+    public RetryPolicy(int maxAttempts, long initialBackoff, long maxBackoff) {
+        this(maxAttempts, initialBackoff, maxBackoff, DEFAULT_RETRY_RATIO, DEFAULT_MIN_RETRIES_PER_SECOND, 0, DEFAULT_MIN_HEDGE_DELAY);
+    }
+
+    private RetryPolicy(int maxAttempts, long initialBackoff, long maxBackoff, double retryRatio, int minRetriesPerSecond,
+                        double hedgePercentile, long minHedgeDelay) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("maxAttempts < 1: " + maxAttempts);
+        }
+        if (initialBackoff < 0 || maxBackoff < initialBackoff) {
+            throw new IllegalArgumentException("Invalid backoff: " + initialBackoff + " - " + maxBackoff);
+        }
+        if (retryRatio < 0 || minRetriesPerSecond < 0) {
+            throw new IllegalArgumentException("Invalid retry budget: " + retryRatio + ", " + minRetriesPerSecond);
+        }
+        if (hedgePercentile < 0 || hedgePercentile >= 1) {
+            throw new IllegalArgumentException("Invalid hedge percentile: " + hedgePercentile);
+        }
+        this.maxAttempts = maxAttempts;
+        this.initialBackoff = initialBackoff;
+        this.maxBackoff = maxBackoff;
+        this.retryRatio = retryRatio;
+        this.minRetriesPerSecond = minRetriesPerSecond;
+        this.hedgePercentile = hedgePercentile;
+        this.minHedgeDelay = minHedgeDelay;
+    }
+
+    /***
+     * Returns a copy of this policy with the given retry budget
+     *
+     * @param retryRatio - the fraction of requests to an endpoint which may be retried or hedged
+     * @param minRetriesPerSecond - the number of retries allowed every second regardless of the ratio
+     * @return RetryPolicy
+     */
+    public RetryPolicy withBudget(double retryRatio, int minRetriesPerSecond) {
+        return new RetryPolicy(maxAttempts, initialBackoff, maxBackoff, retryRatio, minRetriesPerSecond,
+                hedgePercentile, minHedgeDelay);
+    }
+
+    /***
+     * Returns a copy of this policy which hedges idempotent requests
+     *
+     * @param hedgePercentile - the percentile of recent response times after which a second
+     *                        attempt is started, e.g. 0.95.  Zero turns hedging off
+     * @param minHedgeDelay - the minimum time in milliseconds to wait before starting a second attempt
+     * @return RetryPolicy
+     */
+    public RetryPolicy withHedging(double hedgePercentile, long minHedgeDelay) {
+        return new RetryPolicy(maxAttempts, initialBackoff, maxBackoff, retryRatio, minRetriesPerSecond,
+                hedgePercentile, minHedgeDelay);
+    }
+
+    /***
+     * Calculate the time to wait before a retry
+     *
+     * @param retry - the number of the retry, starting at 1
+     * @param random - source of the jitter
+     * @return the backoff in milliseconds
+     */
+    public long getBackoff(int retry, Random random) {
+        long backoff = initialBackoff;
+        for (int i = 1; i < retry && backoff < maxBackoff; i++) {
+            backoff *= 2;
+        }
+        backoff = Math.min(backoff, maxBackoff);
+        long half = backoff / 2;
+        return half + (half > 0 ? (long) (random.nextDouble() * (backoff - half)) : 0);
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    public long getInitialBackoff() {
+        return initialBackoff;
+    }
+
+    public long getMaxBackoff() {
+        return maxBackoff;
+    }
+
+    public double getRetryRatio() {
+        return retryRatio;
+    }
+
+    public int getMinRetriesPerSecond() {
+        return minRetriesPerSecond;
+    }
+
+    public boolean isHedging() {
+        return hedgePercentile > 0;
+    }
+
+    public double getHedgePercentile() {
+        return hedgePercentile;
+    }
+
+    public long getMinHedgeDelay() {
+        return minHedgeDelay;
+    }
+}
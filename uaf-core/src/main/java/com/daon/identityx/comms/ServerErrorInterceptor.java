@@ -0,0 +1,56 @@
+/*
+* Copyright Daon.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.daon.identityx.comms;
+
+import com.daon.identityx.controller.model.Error;
+import com.daon.identityx.exception.ServerError;
+
+import java.net.HttpURLConnection;
+
+/**
+ * Turns unsuccessful responses into a {@link ServerError}.  If the server did not return an
+ * error body a generic error is created from the HTTP status code.
+ *
+ * A 304 Not Modified response to a conditional request is passed on for the cache to answer.
+ *
+ * Created by Daon
+ */
+public class ServerErrorInterceptor implements Interceptor {
+
+    @Override
+    public ServerResponse intercept(Chain chain) {
+        ServerRequest request = chain.getRequest();
+        ServerResponse response = chain.proceed(request);
+        if (response.isSuccessful() || (response.getStatus() == HttpURLConnection.HTTP_NOT_MODIFIED && isConditional(request))) {
+            return response;
+        }
+
+        Error error = null;
+        if (response.getBody() instanceof Error) {
+            error = (Error) response.getBody();
+        }
+        if (error == null) {
+            error = new Error(response.getStatus(), "Unexpected response from the server - HTTP status " + response.getStatus());
+        }
+        throw new ServerError(error, response.getStatus());
+    }
+
+    private static boolean isConditional(ServerRequest request) {
+        return request.getHeader(ResponseCacheInterceptor.IF_NONE_MATCH_HEADER) != null
+                || request.getHeader(ResponseCacheInterceptor.IF_MODIFIED_SINCE_HEADER) != null;
+    }
+}
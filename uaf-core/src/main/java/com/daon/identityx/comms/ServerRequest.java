@@ -0,0 +1,163 @@
+/*
+* Copyright Daon.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.daon.identityx.comms;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A request to the server as it passes through the {@link Interceptor} chain.
+ *
+ * Requests are immutable - an interceptor which needs to change a request, e.g. to add a
+ * header, passes a modified copy on down the chain.
+ *
+ * Created by Daon
+ */
+public class ServerRequest {
+
+    public static final String GET = "GET";
+    public static final String POST = "POST";
+    public static final String DELETE = "DELETE";
+
+    private final String method;
+    private final String baseUrl;
+    private final String relativeUrl;
+    private final BufferPool.Buffer body;
+    private final Class<?> responseClass;
+    private final Map<String, String> headers;
+    private final boolean cacheable;
+
+    /***
+     * @param method - the HTTP method
+     * @param baseUrl - the base URL of the server, ending with a slash
+     * @param relativeUrl - the URL relative to the base URL of the server
+     * @param body - the UTF-8 encoded JSON request body or null if there is none.  The body is
+     *             owned by the caller and must not be released until the request has completed.
+     * @param responseClass - the class of the response, String to return the raw body or null to ignore it
+     */
+    public ServerRequest(String method, String baseUrl, String relativeUrl, BufferPool.Buffer body, Class<?> responseClass) {
+        this(method, baseUrl, relativeUrl, body, responseClass, Collections.<String, String>emptyMap(), false);
+    }
+
+    private ServerRequest(String method, String baseUrl, String relativeUrl, BufferPool.Buffer body, Class<?> responseClass,
+                          Map<String, String> headers, boolean cacheable) {
+        this.method = method;
+        this.baseUrl = baseUrl;
+        this.relativeUrl = relativeUrl;
+        this.body = body;
+        this.responseClass = responseClass;
+        this.headers = headers;
+        this.cacheable = cacheable;
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public String getBaseUrl() {
+        return baseUrl;
+    }
+
+    public String getRelativeUrl() {
+        return relativeUrl;
+    }
+
+    public String getUrl() {
+        return baseUrl + relativeUrl;
+    }
+
+    public BufferPool.Buffer getBody() {
+        return body;
+    }
+
+    public Class<?> getResponseClass() {
+        return responseClass;
+    }
+
+    public Map<String, String> getHeaders() {
+        return headers;
+    }
+
+    public String getHeader(String name) {
+        return headers.get(name);
+    }
+
+    /***
+     * @return true if the request may safely be made more than once
+     */
+    public boolean isIdempotent() {
+        return GET.equals(method);
+    }
+
+    /***
+     * @return true if the response may be cached and shared with identical requests
+     */
+    public boolean isCacheable() {
+        return cacheable;
+    }
+
+    /***
+     * The endpoint used to group requests, e.g. for the retry budget - the method and the resource
+     * without any identifier or query, e.g. "GET authenticators"
+     *
+     * @return String
+     */
+    public String getEndpoint() {
+        int end = relativeUrl.length();
+        for (int i = 0; i < relativeUrl.length(); i++) {
+            char c = relativeUrl.charAt(i);
+            if (c == '/' || c == '?') {
+                end = i;
+                break;
+            }
+        }
+        return method + " " + relativeUrl.substring(0, end);
+    }
+
+    /***
+     * Identifies the request - requests with the same key get the same response
+     *
+     * @return the method, URL, headers and response class of the request
+     */
+    public String getKey() {
+        return method + " " + this.getUrl() + " " + headers + " " + (responseClass == null ? null : responseClass.getName());
+    }
+
+    /***
+     * @param name - the name of the header
+     * @param value - the value of the header
+     * @return a copy of the request with the header set
+     */
+    public ServerRequest withHeader(String name, String value) {
+        Map<String, String> newHeaders = new LinkedHashMap<>(headers);
+        newHeaders.put(name, value);
+        return new ServerRequest(method, baseUrl, relativeUrl, body, responseClass,
+                Collections.unmodifiableMap(newHeaders), cacheable);
+    }
+
+    /***
+     * @return a copy of the request whose response may be cached and shared
+     */
+    public ServerRequest asCacheable() {
+        return new ServerRequest(method, baseUrl, relativeUrl, body, responseClass, headers, true);
+    }
+
+    public String toString() {
+        return method + " " + this.getUrl();
+    }
+}
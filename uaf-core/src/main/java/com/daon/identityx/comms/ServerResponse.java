@@ -0,0 +1,85 @@
+/*
+* Copyright Daon.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.daon.identityx.comms;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A response from the server, or from an {@link Interceptor} answering in its place, as it
+ * passes back up the interceptor chain.
+ *
+ * The body has already been decoded into the response class of the request, or into an
+ * {@link com.daon.identityx.controller.model.Error} if the request was not successful.
+ *
+ * Created by Daon
+ */
+public class ServerResponse {
+
+    private final int status;
+    private final Map<String, String> headers;
+    private final Object body;
+    private final RequestTiming timing;
+
+    /***
+     * @param status - the HTTP status code
+     * @param headers - the response headers
+     * @param body - the decoded body or null if there is none
+     * @param timing - the timing of the exchange or null if it was not timed
+     */
+    public ServerResponse(int status, Map<String, String> headers, Object body, RequestTiming timing) {
+        Map<String, String> caseInsensitiveHeaders = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        caseInsensitiveHeaders.putAll(headers);
+        this.status = status;
+        this.headers = Collections.unmodifiableMap(caseInsensitiveHeaders);
+        this.body = body;
+        this.timing = timing;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public boolean isSuccessful() {
+        return status >= 200 && status <= 299;
+    }
+
+    /***
+     * @param name - the name of the header, in any case
+     * @return the value of the header or null if it was not returned
+     */
+    public String getHeader(String name) {
+        return headers.get(name);
+    }
+
+    public Map<String, String> getHeaders() {
+        return headers;
+    }
+
+    public Object getBody() {
+        return body;
+    }
+
+    /***
+     * @return the timing of the exchange with the server, or null if it was not timed or the
+     *      response did not come from the server
+     */
+    public RequestTiming getTiming() {
+        return timing;
+    }
+}
@@ -0,0 +1,141 @@
+/*
+* Copyright Daon.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.daon.identityx.comms;
+
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Joins concurrent identical calls onto one.
+ *
+ * The first caller with a key makes the call on its own thread.  Callers which arrive with the
+ * same key while it is in progress wait for it and are given the same result, or the same
+ * exception.  Once the call has finished the key is free again, so results are never reused
+ * after the event - that is the job of a cache.
+ *
+ * Only calls which return the same result however many times they are made, such as GET
+ * requests, should be joined.
+ *
+ * Created by Daon
+ */
+public class SingleFlight {
+
+    private final ConcurrentMap<String, Flight> flights = new ConcurrentHashMap<>();
+
+    private final AtomicLong calls = new AtomicLong();
+    private final AtomicLong joined = new AtomicLong();
+
+    /***
+     * Make the call, or join the identical call which is already in progress
+     *
+     * @param key - identifies the call, e.g. by method, URL and session
+     * @param call - makes the call
+     * @return the result of the call
+     * @throws InterruptedException if the thread is interrupted while waiting for a call made by
+     *      another thread
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T call(String key, Callable<T> call) throws InterruptedException {
+        calls.incrementAndGet();
+        Flight flight = new Flight();
+        Flight inFlight = flights.putIfAbsent(key, flight);
+        if (inFlight != null) {
+            joined.incrementAndGet();
+            return (T) inFlight.await();
+        }
+
+        try {
+            T result = call.call();
+            flight.result = result;
+            return result;
+        } catch (RuntimeException | Error e) {
+            flight.failure = e;
+            throw e;
+        } catch (Exception e) {
+            RuntimeException failure = new UncheckedExecutionException(e);
+            flight.failure = failure;
+            throw failure;
+        } finally {
+            flights.remove(key, flight);
+            flight.done.countDown();
+        }
+    }
+
+    public Stats getStats() {
+        return new Stats(calls.get(), joined.get(), flights.size());
+    }
+
+    /**
+     * A call in progress.  The fields are written before the latch is released and read after
+     * it has been, which makes them visible to the waiting threads.
+     */
+    private static class Flight {
+        private final CountDownLatch done = new CountDownLatch(1);
+        private Object result;
+        private Throwable failure;
+
+        Object await() throws InterruptedException {
+            done.await();
+            if (failure instanceof RuntimeException) {
+                throw (RuntimeException) failure;
+            }
+            if (failure instanceof Error) {
+                throw (Error) failure;
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Snapshot of the single flight counters
+     */
+    public static class Stats {
+        private final long calls;
+        private final long joined;
+        private final int inFlight;
+
+        Stats(long calls, long joined, int inFlight) {
+            this.calls = calls;
+            this.joined = joined;
+            this.inFlight = inFlight;
+        }
+
+        public long getCalls() {
+            return calls;
+        }
+
+        /***
+         * @return the number of calls which joined one already in progress rather than being made
+         */
+        public long getJoined() {
+            return joined;
+        }
+
+        public int getInFlight() {
+            return inFlight;
+        }
+
+        public String toString() {
+            return "Calls: " + calls + " Joined: " + joined + " In flight: " + inFlight;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+/*
+* Copyright Daon.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.daon.identityx.comms;
+
+import com.daon.identityx.exception.CommunicationsException;
+
+import java.util.concurrent.Callable;
+
+/**
+ * Joins a cacheable request made while an identical one is in progress onto it, rather than
+ * sending it to the server, using a {@link SingleFlight}.  Requests which are not cacheable,
+ * such as those returning a new challenge each time, are always sent.
+ *
+ * Created by Daon
+ */
+public class SingleFlightInterceptor implements Interceptor {
+
+    private final SingleFlight singleFlight = new SingleFlight();
+
+    @Override
+    public ServerResponse intercept(final Chain chain) {
+        final ServerRequest request = chain.getRequest();
+        if (!request.isCacheable()) {
+            return chain.proceed(request);
+        }
+        try {
+            return singleFlight.call(request.getKey(), new Callable<ServerResponse>() {
+                @Override
+                public ServerResponse call() {
+                    return chain.proceed(request);
+                }
+            });
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CommunicationsException(CommunicationsException.CONNECTION_FAILURE,
+                    "Unable to connect to the server.  Is the server running?");
+        }
+    }
+
+    public SingleFlight.Stats getStats() {
+        return singleFlight.getStats();
+    }
+}
@@ -0,0 +1,286 @@
+/*
+* Copyright Daon.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.daon.identityx.comms;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+
+import javax.net.ssl.HandshakeCompletedEvent;
+import javax.net.ssl.HandshakeCompletedListener;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSessionContext;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+import javax.net.ssl.TrustManagerFactory;
+
+/**
+ * The TLS configuration shared by all HTTPS connections to the server.
+ *
+ * A single SSLContext is built the first time it is needed, trusting the platform's certificate
+ * authorities.  Its client session cache lets later connections to the same server resume the
+ * TLS session with an abbreviated handshake, and session tickets are turned on where the
+ * platform supports them.  Using one socket factory for every connection also lets the platform
+ * keep-alive pool reuse connections, as that pool is keyed by socket factory.
+ *
+ * The socket factory times each handshake and counts how many resumed an earlier session.  It
+ * also notes when the last TLS socket was created on each thread, so that a caller timing a
+ * request can tell the TCP connection from the handshake which follows it.
+ *
+ * Created by Daon
+ */
+public class TlsContext {
+
+    public static final int DEFAULT_SESSION_CACHE_SIZE = 10;
+    public static final int DEFAULT_SESSION_TIMEOUT_SECONDS = 2 * 60 * 60;
+
+    private final int sessionCacheSize;
+    private final int sessionTimeoutSeconds;
+
+    private volatile SSLSocketFactory socketFactory;
+    private final ThreadLocal<long[]> handshakeStart = new ThreadLocal<>();
+
+    private long handshakes;
+    private long resumedHandshakes;
+    private long fullHandshakeTime;
+    private long resumedHandshakeTime;
+
+    public TlsContext() {
+        this(DEFAULT_SESSION_CACHE_SIZE, DEFAULT_SESSION_TIMEOUT_SECONDS);
+    }
+
+    /***
+     * @param sessionCacheSize - the maximum number of TLS sessions kept for resumption
+     * @param sessionTimeoutSeconds - the time after which a TLS session is no longer resumed
+     */
+    public TlsContext(int sessionCacheSize, int sessionTimeoutSeconds) {
+        this.sessionCacheSize = sessionCacheSize;
+        this.sessionTimeoutSeconds = sessionTimeoutSeconds;
+    }
+
+    /***
+     * Returns the socket factory, building the SSLContext if this is the first call
+     *
+     * @return SSLSocketFactory
+     * @throws GeneralSecurityException if the SSLContext cannot be built
+     */
+    public SSLSocketFactory getSocketFactory() throws GeneralSecurityException {
+        SSLSocketFactory result = socketFactory;
+        if (result == null) {
+            synchronized (this) {
+                result = socketFactory;
+                if (result == null) {
+                    result = new InstrumentedSocketFactory(this.createSslContext().getSocketFactory());
+                    socketFactory = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    /***
+     * Returns when the last TLS socket was created on the calling thread, which is when its
+     * handshake started, and forgets it.
+     *
+     * @return the {@link System#nanoTime()} the socket was created or 0 if none has been created
+     *      since the last call
+     */
+    public long takeHandshakeStartTime() {
+        long[] start = handshakeStart.get();
+        if (start == null || start[0] == 0) {
+            return 0;
+        }
+        long result = start[0];
+        start[0] = 0;
+        return result;
+    }
+
+    public synchronized Stats getStats() {
+        return new Stats(handshakes, resumedHandshakes, fullHandshakeTime, resumedHandshakeTime);
+    }
+
+    protected SSLContext createSslContext() throws GeneralSecurityException {
+        TrustManagerFactory trustManagerFactory = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+        trustManagerFactory.init((KeyStore) null);
+
+        SSLContext sslContext = SSLContext.getInstance("TLS");
+        sslContext.init(null, trustManagerFactory.getTrustManagers(), null);
+
+        SSLSessionContext sessionContext = sslContext.getClientSessionContext();
+        if (sessionContext != null) {
+            sessionContext.setSessionCacheSize(sessionCacheSize);
+            sessionContext.setSessionTimeout(sessionTimeoutSeconds);
+        }
+        return sslContext;
+    }
+
+    private synchronized void recordHandshake(boolean resumed, long millis) {
+        handshakes++;
+        if (resumed) {
+            resumedHandshakes++;
+            resumedHandshakeTime += millis;
+        } else {
+            fullHandshakeTime += millis;
+        }
+    }
+
+    /**
+     * Configures each socket for session resumption and times its handshake.  The handshake is
+     * timed from when the socket is created, which is after the TCP connection has been made.
+     */
+    private class InstrumentedSocketFactory extends SSLSocketFactory {
+
+        private final SSLSocketFactory delegate;
+
+        InstrumentedSocketFactory(SSLSocketFactory delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public String[] getDefaultCipherSuites() {
+            return delegate.getDefaultCipherSuites();
+        }
+
+        @Override
+        public String[] getSupportedCipherSuites() {
+            return delegate.getSupportedCipherSuites();
+        }
+
+        @Override
+        public Socket createSocket(Socket socket, String host, int port, boolean autoClose) throws IOException {
+            return this.configure(delegate.createSocket(socket, host, port, autoClose));
+        }
+
+        @Override
+        public Socket createSocket(String host, int port) throws IOException {
+            return this.configure(delegate.createSocket(host, port));
+        }
+
+        @Override
+        public Socket createSocket(String host, int port, InetAddress localHost, int localPort) throws IOException {
+            return this.configure(delegate.createSocket(host, port, localHost, localPort));
+        }
+
+        @Override
+        public Socket createSocket(InetAddress host, int port) throws IOException {
+            return this.configure(delegate.createSocket(host, port));
+        }
+
+        @Override
+        public Socket createSocket(InetAddress address, int port, InetAddress localAddress, int localPort) throws IOException {
+            return this.configure(delegate.createSocket(address, port, localAddress, localPort));
+        }
+
+        private Socket configure(Socket socket) {
+            if (!(socket instanceof SSLSocket)) {
+                return socket;
+            }
+            SSLSocket sslSocket = (SSLSocket) socket;
+            enableSessionTickets(sslSocket);
+            markHandshakeStart();
+
+            final long start = System.currentTimeMillis();
+            sslSocket.addHandshakeCompletedListener(new HandshakeCompletedListener() {
+                @Override
+                public void handshakeCompleted(HandshakeCompletedEvent event) {
+                    // A resumed session was created by an earlier handshake
+                    boolean resumed = event.getSession().getCreationTime() < start;
+                    recordHandshake(resumed, System.currentTimeMillis() - start);
+                    event.getSocket().removeHandshakeCompletedListener(this);
+                }
+            });
+            return sslSocket;
+        }
+    }
+
+    private void markHandshakeStart() {
+        long[] start = handshakeStart.get();
+        if (start == null) {
+            start = new long[1];
+            handshakeStart.set(start);
+        }
+        start[0] = System.nanoTime();
+    }
+
+    /***
+     * Turn on TLS session tickets.  The method is only present on the platform's own socket
+     * implementation, so it is called reflectively and ignored if it is missing.
+     */
+    private static void enableSessionTickets(SSLSocket socket) {
+        try {
+            Method setUseSessionTickets = socket.getClass().getMethod("setUseSessionTickets", boolean.class);
+            setUseSessionTickets.invoke(socket, true);
+        } catch (Exception e) {
+            // Not supported - sessions can still be resumed by session ID
+        }
+    }
+
+    /**
+     * Snapshot of the handshake counters
+     */
+    public static class Stats {
+        private final long handshakes;
+        private final long resumedHandshakes;
+        private final long fullHandshakeTime;
+        private final long resumedHandshakeTime;
+
+        Stats(long handshakes, long resumedHandshakes, long fullHandshakeTime, long resumedHandshakeTime) {
+            this.handshakes = handshakes;
+            this.resumedHandshakes = resumedHandshakes;
+            this.fullHandshakeTime = fullHandshakeTime;
+            this.resumedHandshakeTime = resumedHandshakeTime;
+        }
+
+        public long getHandshakes() {
+            return handshakes;
+        }
+
+        public long getResumedHandshakes() {
+            return resumedHandshakes;
+        }
+
+        /***
+         * @return the fraction of handshakes which resumed an earlier session
+         */
+        public double getResumptionRate() {
+            return handshakes == 0 ? 0 : (double) resumedHandshakes / handshakes;
+        }
+
+        /***
+         * @return the average time in milliseconds of a full handshake
+         */
+        public long getAverageFullHandshakeTime() {
+            long fullHandshakes = handshakes - resumedHandshakes;
+            return fullHandshakes == 0 ? 0 : fullHandshakeTime / fullHandshakes;
+        }
+
+        /***
+         * @return the average time in milliseconds of a resumed handshake
+         */
+        public long getAverageResumedHandshakeTime() {
+            return resumedHandshakes == 0 ? 0 : resumedHandshakeTime / resumedHandshakes;
+        }
+
+        public String toString() {
+            return "Handshakes: " + handshakes + " Resumed: " + resumedHandshakes
+                    + " Full avg: " + getAverageFullHandshakeTime() + "ms Resumed avg: " + getAverageResumedHandshakeTime() + "ms";
+        }
+    }
+}
@@ -0,0 +1,67 @@
+/*
+* Copyright Daon.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.daon.identityx.comms;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token bucket rate limiter.  The bucket holds up to its capacity in tokens and is refilled at a
+ * fixed rate; each call takes a token and calls are refused while the bucket is empty.
+ *
+ * Created by Daon
+ */
+public class TokenBucket {
+
+    private final double capacity;
+    private final double tokensPerNano;
+
+    private double tokens;
+    private long lastRefill;
+
+    /***
+     * @param capacity - the maximum number of calls which can be made at once
+     * @param tokensPerSecond - the sustained rate of calls
+     */
+    public TokenBucket(int capacity, double tokensPerSecond) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity < 1: " + capacity);
+        }
+        if (tokensPerSecond <= 0) {
+            throw new IllegalArgumentException("tokensPerSecond <= 0: " + tokensPerSecond);
+        }
+        this.capacity = capacity;
+        this.tokensPerNano = tokensPerSecond / TimeUnit.SECONDS.toNanos(1);
+        this.tokens = capacity;
+        this.lastRefill = System.nanoTime();
+    }
+
+    /***
+     * Take a token if one is available
+     *
+     * @return true if the call may be made
+     */
+    public synchronized boolean tryAcquire() {
+        long now = System.nanoTime();
+        tokens = Math.min(capacity, tokens + (now - lastRefill) * tokensPerNano);
+        lastRefill = now;
+        if (tokens >= 1) {
+            tokens -= 1;
+            return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,130 @@
+/*
+* Copyright Daon.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.daon.identityx.comms;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Counts the bytes sent and received per endpoint, both as sent over the network and before
+ * compression, so that the saving made by compression can be seen.
+ *
+ * Created by Daon
+ */
+public class TransferStats {
+
+    private final Map<String, Endpoint> endpoints = new LinkedHashMap<>();
+
+    /***
+     * @param endpoint - the endpoint called
+     * @param bytes - the size of the request body before compression
+     * @param wireBytes - the size of the request body as sent
+     */
+    public synchronized void recordRequest(String endpoint, long bytes, long wireBytes) {
+        Endpoint stats = this.getEndpoint(endpoint);
+        stats.requests++;
+        stats.requestBytes += bytes;
+        stats.requestWireBytes += wireBytes;
+    }
+
+    /***
+     * @param endpoint - the endpoint called
+     * @param wireBytes - the size of the response body as received
+     * @param bytes - the size of the response body after decompression
+     */
+    public synchronized void recordResponse(String endpoint, long wireBytes, long bytes) {
+        Endpoint stats = this.getEndpoint(endpoint);
+        stats.responses++;
+        stats.responseWireBytes += wireBytes;
+        stats.responseBytes += bytes;
+    }
+
+    /***
+     * Returns a snapshot of the counters
+     *
+     * @return the counters keyed by endpoint
+     */
+    public synchronized Map<String, Endpoint> getStats() {
+        Map<String, Endpoint> snapshot = new LinkedHashMap<>();
+        for (Map.Entry<String, Endpoint> entry : endpoints.entrySet()) {
+            snapshot.put(entry.getKey(), new Endpoint(entry.getValue()));
+        }
+        return snapshot;
+    }
+
+    private Endpoint getEndpoint(String endpoint) {
+        Endpoint stats = endpoints.get(endpoint);
+        if (stats == null) {
+            stats = new Endpoint();
+            endpoints.put(endpoint, stats);
+        }
+        return stats;
+    }
+
+    /**
+     * The counters of one endpoint
+     */
+    public static class Endpoint {
+        private long requests;
+        private long requestBytes;
+        private long requestWireBytes;
+        private long responses;
+        private long responseBytes;
+        private long responseWireBytes;
+
+        Endpoint() {
+        }
+
+        Endpoint(Endpoint other) {
+            this.requests = other.requests;
+            this.requestBytes = other.requestBytes;
+            this.requestWireBytes = other.requestWireBytes;
+            this.responses = other.responses;
+            this.responseBytes = other.responseBytes;
+            this.responseWireBytes = other.responseWireBytes;
+        }
+
+        public long getRequests() {
+            return requests;
+        }
+
+        public long getRequestBytes() {
+            return requestBytes;
+        }
+
+        public long getRequestWireBytes() {
+            return requestWireBytes;
+        }
+
+        public long getResponses() {
+            return responses;
+        }
+
+        public long getResponseBytes() {
+            return responseBytes;
+        }
+
+        public long getResponseWireBytes() {
+            return responseWireBytes;
+        }
+
+        public String toString() {
+            return "Requests: " + requests + " (" + requestBytes + " bytes, " + requestWireBytes + " sent)"
+                    + " Responses: " + responses + " (" + responseBytes + " bytes, " + responseWireBytes + " received)";
+        }
+    }
+}
@@ -24,12 +24,25 @@ import com.daon.identityx.controller.model.Error;
  */
 public class CommunicationsException extends RuntimeException {
 
+    // The codes of the errors raised by the client rather than returned by the server
+    public static final int MALFORMED_URL = -1;
+    public static final int CONNECTION_FAILURE = -2;
+    public static final int SECURITY_ERROR = -3;
+    public static final int INVALID_RESPONSE = -4;
+    public static final int RESPONSE_TOO_LARGE = -5;
+    public static final int CIRCUIT_OPEN = -6;
+    public static final int RATE_LIMITED = -7;
+
     private final Error error;
 
     public CommunicationsException(Error error) {
         this.error = error;
     }
 
+    public CommunicationsException(int code, String message) {
+        this(new Error(code, message));
+    }
+
     public Error getError() {
         return error;
     }
@@ -25,13 +25,33 @@ import com.daon.identityx.controller.model.Error;
 public class ServerError extends RuntimeException {
 
     private final Error error;
+    private final int status;
 
     public ServerError(Error error) {
+        this(error, -1);
+    }
+
+    /***
+     * @param error - the error returned by the server, or created from the HTTP status
+     * @param status - the HTTP status code of the response
+     */
+    public ServerError(Error error, int status) {
         this.error = error;
+        this.status = status;
     }
 
 
     public Error getError() {
         return error;
     }
+
+    /***
+     * The HTTP status code of the response.  Unlike the code of the {@link Error}, which is set by
+     * the server's application, this tells whether the server itself failed.
+     *
+     * @return the HTTP status code or -1 if it is not known
+     */
+    public int getStatus() {
+        return status;
+    }
 }
@@ -0,0 +1,115 @@
+/*
+* Copyright Daon.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.daon.identityx.uaf;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Utility methods for UAF deregistration request messages.
+ *
+ * A UAF request is an array holding one message per protocol version, and a DeregistrationRequest
+ * message can list any number of authenticators.  The separate requests created by the server for
+ * each authenticator can therefore be merged into one request, allowing the FIDO client to
+ * deregister all of them in a single operation.
+ *
+ * Created by Daon
+ */
+public final class DeregistrationRequests {
+
+    private DeregistrationRequests() {
+    }
+
+    /***
+     * Merge the deregistration requests into one request.
+     *
+     * The requests can only be merged if they are for the same protocol versions and, for each
+     * version, have the same header.  Authenticators appearing in more than one request are
+     * only listed once.
+     *
+     * @param uafRequests - the deregistration requests to merge
+     * @return the merged request or null if the requests cannot be merged
+     */
+    public static String merge(List<String> uafRequests) {
+        if (uafRequests.isEmpty()) {
+            return null;
+        }
+        if (uafRequests.size() == 1) {
+            return uafRequests.get(0);
+        }
+
+        JsonParser parser = new JsonParser();
+        // Keyed by the protocol version, in the order of the first request
+        Map<JsonElement, JsonObject> mergedMessages = new LinkedHashMap<>();
+        Map<JsonElement, Set<JsonElement>> mergedAuthenticators = new LinkedHashMap<>();
+        try {
+            for (int i = 0; i < uafRequests.size(); i++) {
+                JsonArray messages = parser.parse(uafRequests.get(i)).getAsJsonArray();
+                if (i > 0 && messages.size() != mergedMessages.size()) {
+                    return null;
+                }
+                for (JsonElement element : messages) {
+                    JsonObject message = element.getAsJsonObject();
+                    JsonObject header = message.getAsJsonObject("header");
+                    JsonArray messageAuthenticators = message.getAsJsonArray("authenticators");
+                    if (header == null || !header.has("upv") || messageAuthenticators == null) {
+                        return null;
+                    }
+                    JsonElement upv = header.get("upv");
+                    JsonObject merged = mergedMessages.get(upv);
+                    if (merged == null) {
+                        if (i > 0) {
+                            return null;
+                        }
+                        merged = new JsonObject();
+                        merged.add("header", header);
+                        merged.add("authenticators", new JsonArray());
+                        mergedMessages.put(upv, merged);
+                        mergedAuthenticators.put(upv, new HashSet<JsonElement>());
+                    } else if (!merged.get("header").equals(header)) {
+                        return null;
+                    }
+                    JsonArray authenticators = merged.getAsJsonArray("authenticators");
+                    Set<JsonElement> seen = mergedAuthenticators.get(upv);
+                    for (JsonElement authenticator : messageAuthenticators) {
+                        if (seen.add(authenticator)) {
+                            authenticators.add(authenticator);
+                        }
+                    }
+                }
+            }
+        } catch (JsonParseException | IllegalStateException | ClassCastException e) {
+            // Not a well formed deregistration request
+            return null;
+        }
+
+        JsonArray result = new JsonArray();
+        for (JsonObject message : mergedMessages.values()) {
+            result.add(message);
+        }
+        return result.toString();
+    }
+}
@@ -14,7 +14,7 @@
 * limitations under the License.
 */
 
-package com.daon.identityx.samplefidoapp;
+package com.daon.identityx.uaf;
 
 /**
  * Created by Daon
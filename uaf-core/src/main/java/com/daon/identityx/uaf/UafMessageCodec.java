@@ -0,0 +1,39 @@
+/*
+* Copyright Daon.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.daon.identityx.uaf;
+
+import com.google.gson.Gson;
+
+/**
+ * Encodes a {@link UAFMessage} as it is passed to and from the FIDO client: a JSON object which
+ * holds the UAF protocol message, itself JSON, as a string.
+ *
+ * Created by Daon
+ */
+public final class UafMessageCodec {
+
+    private UafMessageCodec() {
+    }
+
+    public static String toJson(UAFMessage message) {
+        return new Gson().toJson(message);
+    }
+
+    public static UAFMessage fromJson(String json) {
+        return new Gson().fromJson(json, UAFMessage.class);
+    }
+}
@@ -16,12 +16,10 @@
 
 package com.daon.identityx.uaf;
 
-import android.content.Intent;
-
-import com.daon.identityx.samplefidoapp.ErrorCode;
-import com.google.gson.Gson;
-
 /**
+ * A request to a FIDO UAF client.  The operation is independent of how it is passed to the
+ * client - on Android it is sent as an intent, see UafOperationIntents in the app.
+ *
  * Created by Daon
  */
 public class UafOperation {
@@ -44,34 +42,6 @@ public class UafOperation {
         this.responseCodeMessage = responseCodeMessage;
     }
 
-    public Intent toIntent() {
-        final Intent result = new Intent();
-        result.setAction(AndroidClientIntentParameters.intentAction);
-        result.setType(AndroidClientIntentParameters.intentType);
-        Gson gson = new Gson();
-
-        if (null != uafIntentType) {
-            result.putExtra("UAFIntentType", uafIntentType.getDescription());
-        }
-        if (message != null) {
-            result.putExtra("message", gson.toJson(message));
-        }
-        if (origin != null) {
-            result.putExtra("origin", origin);
-        }
-        if (channelBindings != null) {
-            result.putExtra("channelBindings", channelBindings);
-        }
-        if (responseCode != null) {
-            result.putExtra("responseCode", (short) responseCode);
-        }
-        if (responseCodeMessage != null) {
-            result.putExtra("responseCodeMessage", responseCodeMessage);
-        }
-
-        return result;
-    }
-
     public UAFIntentType getUafIntentType() {
         return uafIntentType;
     }
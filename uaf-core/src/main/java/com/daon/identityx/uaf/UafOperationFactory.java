@@ -16,11 +16,6 @@
 
 package com.daon.identityx.uaf;
 
-import android.content.Intent;
-
-import com.daon.identityx.samplefidoapp.ErrorCode;
-import com.google.gson.Gson;
-
 /**
  * Created by Daon
  */
@@ -0,0 +1,81 @@
+/*
+* Copyright Daon.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.daon.identityx.uaf;
+
+/**
+ * The answer of a FIDO UAF client to a {@link UafOperation}: the result type, the error code and,
+ * depending on the operation, the UAF response message or the DiscoveryData.
+ *
+ * Created by Daon
+ */
+public class UafOperationResult {
+
+    private final UAFIntentType uafIntentType;
+    private final ErrorCode     errorCode;
+    private final UAFMessage    message;
+    private final String        discoveryData;
+
+    public UafOperationResult(final UAFIntentType uafIntentType, final ErrorCode errorCode, final UAFMessage message,
+                              final String discoveryData) {
+
+        this.uafIntentType = uafIntentType;
+        this.errorCode = errorCode;
+        this.message = message;
+        this.discoveryData = discoveryData;
+    }
+
+    /***
+     * @return the result type, e.g. {@link UAFIntentType#UAF_OPERATION_RESULT} for a {@link UAFIntentType#UAF_OPERATION}
+     */
+    public UAFIntentType getUafIntentType() {
+        return uafIntentType;
+    }
+
+    public ErrorCode getErrorCode() {
+        return errorCode;
+    }
+
+    /***
+     * @return the response to a Registration or Authentication, otherwise null
+     */
+    public UAFMessage getMessage() {
+        return message;
+    }
+
+    /***
+     * @return the DiscoveryData of a discover operation, otherwise null
+     */
+    public String getDiscoveryData() {
+        return discoveryData;
+    }
+
+    /***
+     * @return the result type for an operation of the type given
+     */
+    public static UAFIntentType getResultType(UAFIntentType operationType) {
+        switch (operationType) {
+            case DISCOVER:
+                return UAFIntentType.DISCOVER_RESULT;
+            case CHECK_POLICY:
+                return UAFIntentType.CHECK_POLICY_RESULT;
+            case UAF_OPERATION:
+                return UAFIntentType.UAF_OPERATION_RESULT;
+            default:
+                throw new IllegalArgumentException("No result for UAF intent type: " + operationType);
+        }
+    }
+}
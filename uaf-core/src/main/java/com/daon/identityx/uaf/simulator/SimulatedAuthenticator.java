@@ -0,0 +1,239 @@
+/*
+* Copyright Daon.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.daon.identityx.uaf.simulator;
+
+import com.daon.identityx.uaf.ErrorCode;
+import com.daon.identityx.utils.Base64Codec;
+import com.google.common.base.Charsets;
+
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PrivateKey;
+import java.security.SecureRandom;
+import java.security.Signature;
+import java.security.spec.ECGenParameterSpec;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A software FIDO UAF authenticator.
+ *
+ * Each registration creates a new ECDSA P-256 key pair.  Registration assertions carry the public
+ * key and are signed with surrogate basic attestation, i.e. by the new key itself, and
+ * authentication assertions are signed with the registered key, so the assertions can be
+ * verified as those of a real authenticator would be.  The user is taken to be present and
+ * verified - there is no user interaction.
+ *
+ * Keys are held in memory only, for the life of the authenticator.
+ *
+ * Created by Daon
+ */
+public class SimulatedAuthenticator {
+
+    public static final String DEFAULT_AAID = "D409#0101";
+    public static final String DEFAULT_TITLE = "Simulated Authenticator";
+
+    // UAF algorithm and encoding identifiers
+    public static final int ALG_SIGN_SECP256R1_ECDSA_SHA256_DER = 0x0002;
+    public static final int ALG_KEY_ECC_X962_DER = 0x0101;
+
+    private static final int AUTHENTICATOR_VERSION = 1;
+    // The authentication modes of an assertion
+    private static final int USER_VERIFIED = 0x01;
+    private static final int TRANSACTION_CONFIRMED = 0x02;
+    private static final int KEY_ID_SIZE = 32;
+    private static final int NONCE_SIZE = 8;
+
+    private static final Base64Codec BASE64URL = Base64Codec.URL_SAFE_NO_PADDING;
+
+    private final String aaid;
+    private final String title;
+    private final SecureRandom random = new SecureRandom();
+    // Registrations by key ID, in the order they were made
+    private final Map<String, Registration> registrations = new LinkedHashMap<>();
+    private int registrationCounter;
+
+    public SimulatedAuthenticator() {
+        this(DEFAULT_AAID, DEFAULT_TITLE);
+    }
+
+    public SimulatedAuthenticator(String aaid, String title) {
+        this.aaid = aaid;
+        this.title = title;
+    }
+
+    public String getAaid() {
+        return aaid;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    /***
+     * Create a new key for the app
+     *
+     * @param appId - the application the key is for
+     * @param finalChallengeHash - the SHA-256 hash of the final challenge parameters
+     * @return the TLV encoded registration assertion
+     */
+    public synchronized byte[] register(String appId, byte[] finalChallengeHash) {
+        KeyPair keyPair = generateKeyPair();
+        byte[] keyId = this.randomBytes(KEY_ID_SIZE);
+        Registration registration = new Registration(appId, keyPair.getPrivate());
+        registrations.put(BASE64URL.encodeToString(keyId), registration);
+
+        Tlv krd = new Tlv()
+                .put(Tlv.TAG_AAID, aaid.getBytes(Charsets.UTF_8))
+                .put(Tlv.TAG_ASSERTION_INFO, new Tlv()
+                        .putShort(AUTHENTICATOR_VERSION)
+                        .putByte(USER_VERIFIED)
+                        .putShort(ALG_SIGN_SECP256R1_ECDSA_SHA256_DER)
+                        .putShort(ALG_KEY_ECC_X962_DER))
+                .put(Tlv.TAG_FINAL_CHALLENGE, finalChallengeHash)
+                .put(Tlv.TAG_KEYID, keyId)
+                .put(Tlv.TAG_COUNTERS, new Tlv().putInt(registration.signCounter).putInt(++registrationCounter))
+                .put(Tlv.TAG_PUB_KEY, keyPair.getPublic().getEncoded());
+        byte[] krdObject = new Tlv().put(Tlv.TAG_UAFV1_KRD, krd).toByteArray();
+
+        Tlv attestation = new Tlv().put(Tlv.TAG_SIGNATURE, sign(keyPair.getPrivate(), krdObject));
+        return new Tlv()
+                .put(Tlv.TAG_UAFV1_REG_ASSERTION, new Tlv()
+                        .putBytes(krdObject)
+                        .put(Tlv.TAG_ATTESTATION_BASIC_SURROGATE, attestation))
+                .toByteArray();
+    }
+
+    /***
+     * @param appId - the application
+     * @param keyIds - the key IDs the server will accept, or null for any
+     * @return the key ID of the most recently registered key for the application, or null if there is none
+     */
+    public synchronized String findKey(String appId, Set<String> keyIds) {
+        String found = null;
+        for (Map.Entry<String, Registration> entry : registrations.entrySet()) {
+            if (entry.getValue().appId.equals(appId) && (keyIds == null || keyIds.contains(entry.getKey()))) {
+                found = entry.getKey();
+            }
+        }
+        return found;
+    }
+
+    /***
+     * Sign an authentication with a registered key
+     *
+     * @param keyId - the key ID, as found by {@link #findKey(String, Set)}
+     * @param finalChallengeHash - the SHA-256 hash of the final challenge parameters
+     * @param transactionContentHash - the SHA-256 hash of the transaction confirmed, or null if there is none
+     * @return the TLV encoded authentication assertion
+     */
+    public synchronized byte[] authenticate(String keyId, byte[] finalChallengeHash, byte[] transactionContentHash) {
+        Registration registration = registrations.get(keyId);
+        if (registration == null) {
+            throw new UafClientException(ErrorCode.NO_SUITABLE_AUTHENTICATOR, "Unknown key: " + keyId);
+        }
+        registration.signCounter++;
+
+        Tlv signedData = new Tlv()
+                .put(Tlv.TAG_AAID, aaid.getBytes(Charsets.UTF_8))
+                .put(Tlv.TAG_ASSERTION_INFO, new Tlv()
+                        .putShort(AUTHENTICATOR_VERSION)
+                        .putByte(transactionContentHash != null ? TRANSACTION_CONFIRMED : USER_VERIFIED)
+                        .putShort(ALG_SIGN_SECP256R1_ECDSA_SHA256_DER))
+                .put(Tlv.TAG_AUTHENTICATOR_NONCE, this.randomBytes(NONCE_SIZE))
+                .put(Tlv.TAG_FINAL_CHALLENGE, finalChallengeHash)
+                .put(Tlv.TAG_TRANSACTION_CONTENT_HASH, transactionContentHash != null ? transactionContentHash : new byte[0])
+                .put(Tlv.TAG_KEYID, BASE64URL.decode(keyId))
+                .put(Tlv.TAG_COUNTERS, new Tlv().putInt(registration.signCounter));
+        byte[] signedDataObject = new Tlv().put(Tlv.TAG_UAFV1_SIGNED_DATA, signedData).toByteArray();
+
+        return new Tlv()
+                .put(Tlv.TAG_UAFV1_AUTH_ASSERTION, new Tlv()
+                        .putBytes(signedDataObject)
+                        .put(Tlv.TAG_SIGNATURE, sign(registration.privateKey, signedDataObject)))
+                .toByteArray();
+    }
+
+    /***
+     * Delete the key, or all of the application's keys
+     *
+     * @param appId - the application
+     * @param keyId - the key ID or an empty string for all of the application's keys
+     * @return the number of keys deleted
+     */
+    public synchronized int deregister(String appId, String keyId) {
+        int deleted = 0;
+        for (Iterator<Map.Entry<String, Registration>> i = registrations.entrySet().iterator(); i.hasNext(); ) {
+            Map.Entry<String, Registration> entry = i.next();
+            if (entry.getValue().appId.equals(appId) && (keyId.isEmpty() || keyId.equals(entry.getKey()))) {
+                i.remove();
+                deleted++;
+            }
+        }
+        return deleted;
+    }
+
+    /***
+     * @return the key IDs of all of the registered keys
+     */
+    public synchronized List<String> getKeyIds() {
+        return new ArrayList<>(registrations.keySet());
+    }
+
+    private static KeyPair generateKeyPair() {
+        try {
+            KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+            generator.initialize(new ECGenParameterSpec("secp256r1"));
+            return generator.generateKeyPair();
+        } catch (GeneralSecurityException e) {
+            throw new UafClientException(ErrorCode.UNKNOWN, "Unable to generate a P-256 key: " + e.getMessage());
+        }
+    }
+
+    private static byte[] sign(PrivateKey privateKey, byte[] data) {
+        try {
+            Signature signature = Signature.getInstance("SHA256withECDSA");
+            signature.initSign(privateKey);
+            signature.update(data);
+            return signature.sign();
+        } catch (GeneralSecurityException e) {
+            throw new UafClientException(ErrorCode.UNKNOWN, "Unable to sign: " + e.getMessage());
+        }
+    }
+
+    private byte[] randomBytes(int size) {
+        byte[] bytes = new byte[size];
+        random.nextBytes(bytes);
+        return bytes;
+    }
+
+    private static class Registration {
+        private final String appId;
+        private final PrivateKey privateKey;
+        private int signCounter;
+
+        Registration(String appId, PrivateKey privateKey) {
+            this.appId = appId;
+            this.privateKey = privateKey;
+        }
+    }
+}
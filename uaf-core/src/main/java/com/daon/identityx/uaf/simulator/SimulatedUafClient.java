@@ -0,0 +1,426 @@
+/*
+* Copyright Daon.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.daon.identityx.uaf.simulator;
+
+import com.daon.identityx.uaf.ErrorCode;
+import com.daon.identityx.uaf.UAFIntentType;
+import com.daon.identityx.uaf.UAFMessage;
+import com.daon.identityx.uaf.UafOperation;
+import com.daon.identityx.uaf.UafOperationResult;
+import com.daon.identityx.utils.Base64Codec;
+import com.google.common.base.Charsets;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * An in-process FIDO UAF client, with {@link SimulatedAuthenticator}s, which answers the UAF
+ * messages of the server without a FIDO client app or a device.
+ *
+ * It takes the operations as built by {@link com.daon.identityx.uaf.UafOperationFactory} and
+ * returns Registration, Authentication and Deregistration responses as a FIDO UAF 1.0 client
+ * would: the final challenge parameters are built from the request and the channel bindings,
+ * and the assertions are made by the first authenticator the policy accepts.  Each message is
+ * answered at once, as if the user had agreed.
+ *
+ * Created by Daon
+ */
+public class SimulatedUafClient {
+
+    public static final String DEFAULT_FACET_ID = "android:apk-key-hash:simulated";
+    public static final String DEFAULT_CHANNEL_BINDINGS = "{}";
+
+    private static final String ASSERTION_SCHEME = "UAFV1TLV";
+    private static final String CLIENT_VENDOR = "Daon";
+    // The attestation type and user verification method of the authenticators, as in the FIDO registry
+    private static final int ATTESTATION_BASIC_SURROGATE = Tlv.TAG_ATTESTATION_BASIC_SURROGATE;
+    private static final int USER_VERIFY_PRESENCE = 0x01;
+    private static final int KEY_PROTECTION_SOFTWARE = 0x01;
+    private static final int MATCHER_PROTECTION_SOFTWARE = 0x01;
+    private static final int ATTACHMENT_HINT_INTERNAL = 0x01;
+
+    // Decoding accepts the padding some servers send
+    private static final Base64Codec BASE64URL = Base64Codec.URL_SAFE_NO_PADDING;
+
+    private final String facetId;
+    private final List<SimulatedAuthenticator> authenticators;
+
+    /***
+     * A client with one authenticator, {@link SimulatedAuthenticator#DEFAULT_AAID}
+     */
+    public SimulatedUafClient() {
+        this(DEFAULT_FACET_ID, new SimulatedAuthenticator());
+    }
+
+    /***
+     * @param facetId - the facet ID of the calling app, e.g. android:apk-key-hash:...
+     * @param authenticators - the authenticators of the device, in order of preference
+     */
+    public SimulatedUafClient(String facetId, SimulatedAuthenticator... authenticators) {
+        if (authenticators.length == 0) {
+            throw new IllegalArgumentException("No authenticators");
+        }
+        this.facetId = facetId;
+        this.authenticators = new ArrayList<>(Arrays.asList(authenticators));
+    }
+
+    public List<SimulatedAuthenticator> getAuthenticators() {
+        return authenticators;
+    }
+
+    /***
+     * @return the DiscoveryData of the client
+     */
+    public String discover() {
+        JsonArray availableAuthenticators = new JsonArray();
+        for (SimulatedAuthenticator authenticator : authenticators) {
+            JsonObject info = new JsonObject();
+            info.addProperty("title", authenticator.getTitle());
+            info.addProperty("aaid", authenticator.getAaid());
+            info.addProperty("description", authenticator.getTitle());
+            info.add("supportedUAFVersions", versions());
+            info.addProperty("assertionScheme", ASSERTION_SCHEME);
+            info.addProperty("authenticationAlgorithm", SimulatedAuthenticator.ALG_SIGN_SECP256R1_ECDSA_SHA256_DER);
+            JsonArray attestationTypes = new JsonArray();
+            attestationTypes.add(new JsonPrimitive(ATTESTATION_BASIC_SURROGATE));
+            info.add("attestationTypes", attestationTypes);
+            info.addProperty("userVerification", USER_VERIFY_PRESENCE);
+            info.addProperty("keyProtection", KEY_PROTECTION_SOFTWARE);
+            info.addProperty("matcherProtection", MATCHER_PROTECTION_SOFTWARE);
+            info.addProperty("attachmentHint", ATTACHMENT_HINT_INTERNAL);
+            info.addProperty("isSecondFactorOnly", false);
+            info.addProperty("tcDisplay", 0);
+            info.add("supportedExtensionIDs", new JsonArray());
+            availableAuthenticators.add(info);
+        }
+
+        JsonObject clientVersion = new JsonObject();
+        clientVersion.addProperty("major", 1);
+        clientVersion.addProperty("minor", 0);
+        JsonObject discoveryData = new JsonObject();
+        discoveryData.add("supportedUAFVersions", versions());
+        discoveryData.addProperty("clientVendor", CLIENT_VENDOR);
+        discoveryData.add("clientVersion", clientVersion);
+        discoveryData.add("availableAuthenticators", availableAuthenticators);
+        return discoveryData.toString();
+    }
+
+    /***
+     * Check that the request could be answered by one of the authenticators
+     *
+     * @throws UafClientException if it could not
+     */
+    public void checkPolicy(UAFMessage message) {
+        JsonObject request = parseRequest(message.getUafProtocolMessage());
+        if ("Auth".equals(getOperation(request))) {
+            this.findAuthenticationKey(request);
+        } else {
+            this.findAuthenticator(request);
+        }
+    }
+
+    /***
+     * Answer an operation as the FIDO client would, with the error code of the client rather
+     * than an exception if it cannot be answered
+     *
+     * @param operation - the operation, as built by {@link com.daon.identityx.uaf.UafOperationFactory}
+     * @return the result, or null for a completion status which has no result
+     */
+    public UafOperationResult process(UafOperation operation) {
+        if (operation.getUafIntentType() == UAFIntentType.UAF_OPERATION_COMPLETION_STATUS) {
+            return null;
+        }
+        UAFIntentType resultType = UafOperationResult.getResultType(operation.getUafIntentType());
+        try {
+            switch (operation.getUafIntentType()) {
+                case DISCOVER:
+                    return new UafOperationResult(resultType, ErrorCode.NO_ERROR, null, this.discover());
+                case CHECK_POLICY:
+                    this.checkPolicy(operation.getMessage());
+                    return new UafOperationResult(resultType, ErrorCode.NO_ERROR, null, null);
+                default:
+                    UAFMessage response = this.process(operation.getMessage(), operation.getChannelBindings());
+                    return new UafOperationResult(resultType, ErrorCode.NO_ERROR, response, null);
+            }
+        } catch (UafClientException e) {
+            return new UafOperationResult(resultType, e.getErrorCode(), null, null);
+        }
+    }
+
+    /***
+     * Answer a UAF request as the FIDO client would
+     *
+     * @param message - the UAF RegistrationRequest, AuthenticationRequest or DeregistrationRequest
+     * @param channelBindings - the ChannelBinding JSON of the connection to the server, or null
+     * @return the response, or null for a deregistration which has no response
+     * @throws UafClientException with the error code of the client if the request cannot be answered
+     */
+    public UAFMessage process(UAFMessage message, String channelBindings) {
+        String response = this.process(message.getUafProtocolMessage(), channelBindings);
+        return response == null ? null : new UAFMessage(response, null);
+    }
+
+    /***
+     * @see #process(UAFMessage, String)
+     */
+    public String process(String uafRequest, String channelBindings) {
+        JsonObject request = parseRequest(uafRequest);
+        String operation = getOperation(request);
+        switch (operation) {
+            case "Reg":
+                return this.register(request, channelBindings);
+            case "Auth":
+                return this.authenticate(request, channelBindings);
+            case "Dereg":
+                this.deregister(request);
+                return null;
+            default:
+                throw new UafClientException(ErrorCode.PROTOCOL_ERROR, "Unknown UAF operation: " + operation);
+        }
+    }
+
+    private String register(JsonObject request, String channelBindings) {
+        SimulatedAuthenticator authenticator = this.findAuthenticator(request);
+        String appId = this.getAppId(request);
+        String finalChallengeParams = this.createFinalChallengeParams(request, appId, channelBindings);
+        byte[] assertion = authenticator.register(appId, sha256(finalChallengeParams.getBytes(Charsets.UTF_8)));
+        return createResponse(request, finalChallengeParams, assertion);
+    }
+
+    private String authenticate(JsonObject request, String channelBindings) {
+        KeyMatch match = this.findAuthenticationKey(request);
+        String appId = this.getAppId(request);
+        String finalChallengeParams = this.createFinalChallengeParams(request, appId, channelBindings);
+
+        byte[] transactionContentHash = null;
+        JsonArray transactions = request.getAsJsonArray("transaction");
+        if (transactions != null && transactions.size() > 0) {
+            String content = getString(transactions.get(0).getAsJsonObject(), "content");
+            transactionContentHash = sha256(BASE64URL.decode(content));
+        }
+        byte[] assertion = match.authenticator.authenticate(match.keyId, sha256(finalChallengeParams.getBytes(Charsets.UTF_8)),
+                transactionContentHash);
+        return createResponse(request, finalChallengeParams, assertion);
+    }
+
+    private void deregister(JsonObject request) {
+        String appId = this.getAppId(request);
+        JsonArray deregistrations = request.getAsJsonArray("authenticators");
+        if (deregistrations == null) {
+            throw new UafClientException(ErrorCode.PROTOCOL_ERROR, "No authenticators to deregister");
+        }
+        for (JsonElement element : deregistrations) {
+            JsonObject deregistration = element.getAsJsonObject();
+            String aaid = getString(deregistration, "aaid");
+            String keyId = getString(deregistration, "keyID");
+            for (SimulatedAuthenticator authenticator : authenticators) {
+                if (authenticator.getAaid().equals(aaid)) {
+                    authenticator.deregister(appId, keyId != null ? keyId : "");
+                }
+            }
+        }
+    }
+
+    /***
+     * Find the first authenticator accepted, and not disallowed, by the policy of the request
+     */
+    private SimulatedAuthenticator findAuthenticator(JsonObject request) {
+        JsonObject policy = request.getAsJsonObject("policy");
+        if (policy == null) {
+            throw new UafClientException(ErrorCode.PROTOCOL_ERROR, "The request has no policy");
+        }
+        Set<String> disallowed = getAaids(policy.getAsJsonArray("disallowed"));
+        for (JsonElement alternative : policy.getAsJsonArray("accepted")) {
+            for (JsonElement criteria : alternative.getAsJsonArray()) {
+                for (SimulatedAuthenticator authenticator : authenticators) {
+                    if (!disallowed.contains(authenticator.getAaid()) && matches(criteria.getAsJsonObject(), authenticator)) {
+                        return authenticator;
+                    }
+                }
+            }
+        }
+        throw new UafClientException(ErrorCode.NO_SUITABLE_AUTHENTICATOR, "No authenticator is accepted by the policy");
+    }
+
+    /***
+     * Find the most recently registered key of an authenticator accepted by the policy
+     */
+    private KeyMatch findAuthenticationKey(JsonObject request) {
+        String appId = this.getAppId(request);
+        JsonObject policy = request.getAsJsonObject("policy");
+        JsonArray accepted = policy == null ? null : policy.getAsJsonArray("accepted");
+        for (SimulatedAuthenticator authenticator : authenticators) {
+            if (accepted == null) {
+                String keyId = authenticator.findKey(appId, null);
+                if (keyId != null) {
+                    return new KeyMatch(authenticator, keyId);
+                }
+                continue;
+            }
+            for (JsonElement alternative : accepted) {
+                for (JsonElement element : alternative.getAsJsonArray()) {
+                    JsonObject criteria = element.getAsJsonObject();
+                    if (!matches(criteria, authenticator)) {
+                        continue;
+                    }
+                    JsonArray keyIds = criteria.getAsJsonArray("keyIDs");
+                    String keyId = authenticator.findKey(appId, keyIds == null ? null : toSet(keyIds));
+                    if (keyId != null) {
+                        return new KeyMatch(authenticator, keyId);
+                    }
+                }
+            }
+        }
+        throw new UafClientException(ErrorCode.NO_SUITABLE_AUTHENTICATOR, "No key is registered for " + appId);
+    }
+
+    private static boolean matches(JsonObject criteria, SimulatedAuthenticator authenticator) {
+        JsonArray aaids = criteria.getAsJsonArray("aaid");
+        return aaids == null || toSet(aaids).contains(authenticator.getAaid());
+    }
+
+    private static Set<String> getAaids(JsonArray criteriaList) {
+        Set<String> aaids = new HashSet<>();
+        if (criteriaList != null) {
+            for (JsonElement criteria : criteriaList) {
+                JsonArray criteriaAaids = criteria.getAsJsonObject().getAsJsonArray("aaid");
+                // Criteria which disallow particular keys do not disallow the whole authenticator
+                if (criteriaAaids != null && !criteria.getAsJsonObject().has("keyIDs")) {
+                    aaids.addAll(toSet(criteriaAaids));
+                }
+            }
+        }
+        return aaids;
+    }
+
+    private String getAppId(JsonObject request) {
+        String appId = getString(request.getAsJsonObject("header"), "appID");
+        // An empty AppID means the app's own facet
+        return appId == null || appId.isEmpty() ? facetId : appId;
+    }
+
+    private String createFinalChallengeParams(JsonObject request, String appId, String channelBindings) {
+        JsonObject params = new JsonObject();
+        params.addProperty("appID", appId);
+        params.addProperty("challenge", getString(request, "challenge"));
+        params.addProperty("facetID", facetId);
+        params.add("channelBinding", new JsonParser().parse(channelBindings != null ? channelBindings : DEFAULT_CHANNEL_BINDINGS));
+        return BASE64URL.encodeToString(params.toString().getBytes(Charsets.UTF_8));
+    }
+
+    private static String createResponse(JsonObject request, String finalChallengeParams, byte[] assertion) {
+        JsonObject assertionObject = new JsonObject();
+        assertionObject.addProperty("assertionScheme", ASSERTION_SCHEME);
+        assertionObject.addProperty("assertion", BASE64URL.encodeToString(assertion));
+        JsonArray assertions = new JsonArray();
+        assertions.add(assertionObject);
+
+        JsonObject response = new JsonObject();
+        response.add("header", request.get("header"));
+        response.addProperty("fcParams", finalChallengeParams);
+        response.add("assertions", assertions);
+        JsonArray responses = new JsonArray();
+        responses.add(response);
+        return responses.toString();
+    }
+
+    /***
+     * Take the request for UAF 1.0 from the message, which is an array of requests for each
+     * protocol version the server supports
+     */
+    private static JsonObject parseRequest(String uafRequest) {
+        if (uafRequest == null) {
+            throw new UafClientException(ErrorCode.PROTOCOL_ERROR, "No UAF message");
+        }
+        try {
+            JsonElement parsed = new JsonParser().parse(uafRequest);
+            JsonArray requests = parsed.isJsonArray() ? parsed.getAsJsonArray() : null;
+            if (requests == null) {
+                requests = new JsonArray();
+                requests.add(parsed);
+            }
+            for (JsonElement element : requests) {
+                JsonObject request = element.getAsJsonObject();
+                JsonObject version = request.getAsJsonObject("header").getAsJsonObject("upv");
+                if (version.get("major").getAsInt() == 1 && version.get("minor").getAsInt() == 0) {
+                    return request;
+                }
+            }
+        } catch (JsonParseException | IllegalStateException | NullPointerException | ClassCastException e) {
+            throw new UafClientException(ErrorCode.PROTOCOL_ERROR, "Invalid UAF message: " + e.getMessage());
+        }
+        throw new UafClientException(ErrorCode.UNSUPPORTED_VERSION, "No request for UAF version 1.0");
+    }
+
+    private static String getOperation(JsonObject request) {
+        return getString(request.getAsJsonObject("header"), "op");
+    }
+
+    private static String getString(JsonObject object, String name) {
+        JsonElement value = object.get(name);
+        return value == null || value.isJsonNull() ? null : value.getAsString();
+    }
+
+    private static Set<String> toSet(JsonArray array) {
+        Set<String> values = new HashSet<>();
+        for (JsonElement value : array) {
+            values.add(value.getAsString());
+        }
+        return values;
+    }
+
+    private static JsonArray versions() {
+        JsonObject version = new JsonObject();
+        version.addProperty("major", 1);
+        version.addProperty("minor", 0);
+        JsonArray versions = new JsonArray();
+        versions.add(version);
+        return versions;
+    }
+
+    private static byte[] sha256(byte[] data) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(data);
+        } catch (NoSuchAlgorithmException e) {
+            throw new UafClientException(ErrorCode.UNKNOWN, "SHA-256 is not available");
+        }
+    }
+
+    /**
+     * A registered key which can answer an authentication request
+     */
+    private static class KeyMatch {
+        private final SimulatedAuthenticator authenticator;
+        private final String keyId;
+
+        KeyMatch(SimulatedAuthenticator authenticator, String keyId) {
+            this.authenticator = authenticator;
+            this.keyId = keyId;
+        }
+    }
+}
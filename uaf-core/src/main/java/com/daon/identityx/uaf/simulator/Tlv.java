@@ -0,0 +1,94 @@
+/*
+* Copyright Daon.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.daon.identityx.uaf.simulator;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * Writes the tag-length-value structures of UAF V1 assertions.  Tags, lengths and numbers are
+ * 16 or 32 bit little-endian values, as in the FIDO UAF Authenticator Commands specification.
+ *
+ * Created by Daon
+ */
+public class Tlv {
+
+    public static final int TAG_UAFV1_REG_ASSERTION = 0x3E01;
+    public static final int TAG_UAFV1_AUTH_ASSERTION = 0x3E02;
+    public static final int TAG_UAFV1_KRD = 0x3E03;
+    public static final int TAG_UAFV1_SIGNED_DATA = 0x3E04;
+    public static final int TAG_ATTESTATION_BASIC_SURROGATE = 0x3E08;
+    public static final int TAG_SIGNATURE = 0x2E06;
+    public static final int TAG_KEYID = 0x2E09;
+    public static final int TAG_FINAL_CHALLENGE = 0x2E0A;
+    public static final int TAG_AAID = 0x2E0B;
+    public static final int TAG_PUB_KEY = 0x2E0C;
+    public static final int TAG_COUNTERS = 0x2E0D;
+    public static final int TAG_ASSERTION_INFO = 0x2E0E;
+    public static final int TAG_AUTHENTICATOR_NONCE = 0x2E0F;
+    public static final int TAG_TRANSACTION_CONTENT_HASH = 0x2E10;
+
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+    public Tlv put(int tag, byte[] value) {
+        this.putShort(tag);
+        this.putShort(value.length);
+        out.write(value, 0, value.length);
+        return this;
+    }
+
+    /***
+     * Add a composite value, e.g. the KRD within a registration assertion
+     */
+    public Tlv put(int tag, Tlv value) {
+        return this.put(tag, value.toByteArray());
+    }
+
+    /***
+     * Add a number, such as a counter, without a tag
+     */
+    public Tlv putInt(int value) {
+        this.putShort(value & 0xffff);
+        this.putShort(value >>> 16);
+        return this;
+    }
+
+    /***
+     * Add a 16 bit number, such as an algorithm, without a tag
+     */
+    public Tlv putShort(int value) {
+        out.write(value & 0xff);
+        out.write((value >>> 8) & 0xff);
+        return this;
+    }
+
+    /***
+     * Add encoded TLV objects, e.g. a KRD which has been signed
+     */
+    public Tlv putBytes(byte[] value) {
+        out.write(value, 0, value.length);
+        return this;
+    }
+
+    public Tlv putByte(int value) {
+        out.write(value & 0xff);
+        return this;
+    }
+
+    public byte[] toByteArray() {
+        return out.toByteArray();
+    }
+}
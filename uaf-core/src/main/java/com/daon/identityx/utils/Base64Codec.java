@@ -0,0 +1,518 @@
+/*
+* Copyright Daon.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.daon.identityx.utils;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Base64 and base64url encoding, as in RFC 4648, with or without padding.
+ *
+ * The encode and decode methods which take a destination write into the array or buffer given
+ * and allocate nothing, so that the base64url values of UAF messages - challenges, assertions and
+ * key IDs - can be encoded and decoded in reused buffers.  Unlike {@link Base64}, there are no line
+ * separators.
+ *
+ * Encoding takes three bytes per step and looks up each 12 bits in a table of character pairs.
+ * Decoding takes four characters per step and ORs together their 6 bit values, which are looked
+ * up already shifted into place; an invalid character sets the sign bit, so each step is checked
+ * once.
+ *
+ * Decoding accepts input with or without padding, whichever the codec writes, but no whitespace.
+ * Instances are immutable and may be shared.
+ *
+ * Created by Daon
+ */
+public final class Base64Codec {
+
+    private static final String STANDARD_ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+    private static final String URL_SAFE_ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_";
+    private static final byte PAD = '=';
+    // Set in the decoded value of an invalid character
+    private static final int INVALID = 0x80000000;
+
+    private static final Tables STANDARD_TABLES = new Tables(STANDARD_ALPHABET);
+    private static final Tables URL_SAFE_TABLES = new Tables(URL_SAFE_ALPHABET);
+
+    public static final Base64Codec STANDARD = new Base64Codec(STANDARD_TABLES, true);
+    public static final Base64Codec STANDARD_NO_PADDING = new Base64Codec(STANDARD_TABLES, false);
+    public static final Base64Codec URL_SAFE = new Base64Codec(URL_SAFE_TABLES, true);
+    /** The encoding of the values of UAF messages */
+    public static final Base64Codec URL_SAFE_NO_PADDING = new Base64Codec(URL_SAFE_TABLES, false);
+
+    private final byte[] alphabet;
+    private final short[] pairs;
+    private final int[] decode0;
+    private final int[] decode1;
+    private final int[] decode2;
+    private final int[] decode3;
+    private final boolean padding;
+
+    private Base64Codec(Tables tables, boolean padding) {
+        this.alphabet = tables.alphabet;
+        this.pairs = tables.pairs;
+        this.decode0 = tables.decode0;
+        this.decode1 = tables.decode1;
+        this.decode2 = tables.decode2;
+        this.decode3 = tables.decode3;
+        this.padding = padding;
+    }
+
+    /***
+     * @return the number of characters the given number of bytes are encoded as
+     */
+    public int encodedLength(int length) {
+        return padding ? (length + 2) / 3 * 4 : (length * 4 + 2) / 3;
+    }
+
+    /***
+     * @return the number of bytes the characters decode to
+     * @throws IllegalArgumentException if the length is not that of any encoding
+     */
+    public int decodedLength(CharSequence src, int start, int end) {
+        return decodedLength(end - start, paddingLength(src, start, end));
+    }
+
+    /***
+     * @return the number of bytes the characters decode to
+     * @throws IllegalArgumentException if the length is not that of any encoding
+     */
+    public int decodedLength(byte[] src, int srcOff, int srcLen) {
+        return decodedLength(srcLen, paddingLength(src, srcOff, srcOff + srcLen));
+    }
+
+    // ****************************************************************************************
+    // *  Encoding
+    // ****************************************************************************************
+
+    /***
+     * Encode the bytes as ASCII characters
+     *
+     * @return the number of bytes written, see {@link #encodedLength(int)}
+     * @throws IndexOutOfBoundsException if the destination is too small
+     */
+    public int encode(byte[] src, int srcOff, int srcLen, byte[] dst, int dstOff) {
+        checkRange(src.length, srcOff, srcLen);
+        checkRange(dst.length, dstOff, this.encodedLength(srcLen));
+
+        int s = srcOff;
+        int d = dstOff;
+        for (int end = srcOff + srcLen / 3 * 3; s < end; s += 3, d += 4) {
+            int bits = (src[s] & 0xff) << 16 | (src[s + 1] & 0xff) << 8 | (src[s + 2] & 0xff);
+            short high = pairs[bits >>> 12];
+            short low = pairs[bits & 0xfff];
+            dst[d] = (byte) (high >>> 8);
+            dst[d + 1] = (byte) high;
+            dst[d + 2] = (byte) (low >>> 8);
+            dst[d + 3] = (byte) low;
+        }
+
+        int remaining = srcOff + srcLen - s;
+        if (remaining > 0) {
+            int bits = tailBits(src[s], remaining == 2 ? src[s + 1] : 0);
+            dst[d++] = alphabet[bits >>> 12];
+            dst[d++] = alphabet[(bits >>> 6) & 0x3f];
+            if (remaining == 2) {
+                dst[d++] = alphabet[bits & 0x3f];
+            } else if (padding) {
+                dst[d++] = PAD;
+            }
+            if (padding) {
+                dst[d++] = PAD;
+            }
+        }
+        return d - dstOff;
+    }
+
+    /***
+     * Encode the bytes as characters
+     *
+     * @return the number of characters written, see {@link #encodedLength(int)}
+     * @throws IndexOutOfBoundsException if the destination is too small
+     */
+    public int encode(byte[] src, int srcOff, int srcLen, char[] dst, int dstOff) {
+        checkRange(src.length, srcOff, srcLen);
+        checkRange(dst.length, dstOff, this.encodedLength(srcLen));
+
+        int s = srcOff;
+        int d = dstOff;
+        for (int end = srcOff + srcLen / 3 * 3; s < end; s += 3, d += 4) {
+            int bits = (src[s] & 0xff) << 16 | (src[s + 1] & 0xff) << 8 | (src[s + 2] & 0xff);
+            short high = pairs[bits >>> 12];
+            short low = pairs[bits & 0xfff];
+            dst[d] = (char) (high >>> 8);
+            dst[d + 1] = (char) (high & 0xff);
+            dst[d + 2] = (char) (low >>> 8);
+            dst[d + 3] = (char) (low & 0xff);
+        }
+
+        int remaining = srcOff + srcLen - s;
+        if (remaining > 0) {
+            int bits = tailBits(src[s], remaining == 2 ? src[s + 1] : 0);
+            dst[d++] = (char) alphabet[bits >>> 12];
+            dst[d++] = (char) alphabet[(bits >>> 6) & 0x3f];
+            if (remaining == 2) {
+                dst[d++] = (char) alphabet[bits & 0x3f];
+            } else if (padding) {
+                dst[d++] = (char) PAD;
+            }
+            if (padding) {
+                dst[d++] = (char) PAD;
+            }
+        }
+        return d - dstOff;
+    }
+
+    /***
+     * Encode the remaining bytes of the source as ASCII characters.  The position of the source is
+     * moved to its limit and that of the destination past the characters written.
+     *
+     * @return the number of bytes written
+     * @throws BufferOverflowException if the destination has too little space remaining
+     */
+    public int encode(ByteBuffer src, ByteBuffer dst) {
+        int srcLen = src.remaining();
+        int length = this.encodedLength(srcLen);
+        if (dst.remaining() < length) {
+            throw new BufferOverflowException();
+        }
+        if (src.hasArray() && dst.hasArray() && !dst.isReadOnly()) {
+            this.encode(src.array(), src.arrayOffset() + src.position(), srcLen,
+                    dst.array(), dst.arrayOffset() + dst.position());
+            src.position(src.limit());
+            dst.position(dst.position() + length);
+            return length;
+        }
+
+        for (int i = srcLen / 3; i > 0; i--) {
+            int bits = (src.get() & 0xff) << 16 | (src.get() & 0xff) << 8 | (src.get() & 0xff);
+            short high = pairs[bits >>> 12];
+            short low = pairs[bits & 0xfff];
+            dst.put((byte) (high >>> 8));
+            dst.put((byte) high);
+            dst.put((byte) (low >>> 8));
+            dst.put((byte) low);
+        }
+
+        int remaining = src.remaining();
+        if (remaining > 0) {
+            int bits = tailBits(src.get(), remaining == 2 ? src.get() : 0);
+            dst.put(alphabet[bits >>> 12]);
+            dst.put(alphabet[(bits >>> 6) & 0x3f]);
+            if (remaining == 2) {
+                dst.put(alphabet[bits & 0x3f]);
+            } else if (padding) {
+                dst.put(PAD);
+            }
+            if (padding) {
+                dst.put(PAD);
+            }
+        }
+        return length;
+    }
+
+    /***
+     * Encode the bytes as a new String
+     */
+    public String encodeToString(byte[] src) {
+        char[] chars = new char[this.encodedLength(src.length)];
+        this.encode(src, 0, src.length, chars, 0);
+        return new String(chars);
+    }
+
+    // ****************************************************************************************
+    // *  Decoding
+    // ****************************************************************************************
+
+    /***
+     * Decode ASCII characters
+     *
+     * @return the number of bytes written
+     * @throws IllegalArgumentException if the source is not base64 in the alphabet of the codec
+     * @throws IndexOutOfBoundsException if the destination is too small
+     */
+    public int decode(byte[] src, int srcOff, int srcLen, byte[] dst, int dstOff) {
+        checkRange(src.length, srcOff, srcLen);
+        int end = srcOff + srcLen;
+        int padding = paddingLength(src, srcOff, end);
+        checkRange(dst.length, dstOff, decodedLength(srcLen, padding));
+        end -= padding;
+
+        int s = srcOff;
+        int d = dstOff;
+        for (int quantaEnd = srcOff + (end - srcOff) / 4 * 4; s < quantaEnd; s += 4, d += 3) {
+            int bits = decode0[src[s] & 0xff] | decode1[src[s + 1] & 0xff]
+                    | decode2[src[s + 2] & 0xff] | decode3[src[s + 3] & 0xff];
+            if (bits < 0) {
+                throw invalidCharacter(s - srcOff);
+            }
+            dst[d] = (byte) (bits >>> 16);
+            dst[d + 1] = (byte) (bits >>> 8);
+            dst[d + 2] = (byte) bits;
+        }
+
+        int remaining = end - s;
+        if (remaining > 0) {
+            int bits = decode0[src[s] & 0xff] | decode1[src[s + 1] & 0xff]
+                    | (remaining == 3 ? decode2[src[s + 2] & 0xff] : 0);
+            if (bits < 0) {
+                throw invalidCharacter(s - srcOff);
+            }
+            d = writeTail(bits, remaining, dst, d);
+        }
+        return d - dstOff;
+    }
+
+    /***
+     * Decode characters
+     *
+     * @return the number of bytes written
+     * @throws IllegalArgumentException if the source is not base64 in the alphabet of the codec
+     * @throws IndexOutOfBoundsException if the destination is too small
+     */
+    public int decode(char[] src, int srcOff, int srcLen, byte[] dst, int dstOff) {
+        checkRange(src.length, srcOff, srcLen);
+        int end = srcOff + srcLen;
+        int padding = paddingLength(src, srcOff, end);
+        checkRange(dst.length, dstOff, decodedLength(srcLen, padding));
+        end -= padding;
+
+        int s = srcOff;
+        int d = dstOff;
+        for (int quantaEnd = srcOff + (end - srcOff) / 4 * 4; s < quantaEnd; s += 4, d += 3) {
+            char c0 = src[s];
+            char c1 = src[s + 1];
+            char c2 = src[s + 2];
+            char c3 = src[s + 3];
+            int bits = decode0[c0 & 0xff] | decode1[c1 & 0xff] | decode2[c2 & 0xff] | decode3[c3 & 0xff];
+            if (bits < 0 || (c0 | c1 | c2 | c3) > 0xff) {
+                throw invalidCharacter(s - srcOff);
+            }
+            dst[d] = (byte) (bits >>> 16);
+            dst[d + 1] = (byte) (bits >>> 8);
+            dst[d + 2] = (byte) bits;
+        }
+
+        int remaining = end - s;
+        if (remaining > 0) {
+            d = this.decodeTail(src[s], src[s + 1], remaining == 3 ? src[s + 2] : 'A', remaining, dst, d, s - srcOff);
+        }
+        return d - dstOff;
+    }
+
+    /***
+     * Decode characters, e.g. part of a String without taking a substring
+     *
+     * @return the number of bytes written
+     * @throws IllegalArgumentException if the source is not base64 in the alphabet of the codec
+     * @throws IndexOutOfBoundsException if the destination is too small
+     */
+    public int decode(CharSequence src, int start, int end, byte[] dst, int dstOff) {
+        checkRange(src.length(), start, end - start);
+        int padding = paddingLength(src, start, end);
+        checkRange(dst.length, dstOff, decodedLength(end - start, padding));
+        end -= padding;
+
+        int s = start;
+        int d = dstOff;
+        for (int quantaEnd = start + (end - start) / 4 * 4; s < quantaEnd; s += 4, d += 3) {
+            char c0 = src.charAt(s);
+            char c1 = src.charAt(s + 1);
+            char c2 = src.charAt(s + 2);
+            char c3 = src.charAt(s + 3);
+            int bits = decode0[c0 & 0xff] | decode1[c1 & 0xff] | decode2[c2 & 0xff] | decode3[c3 & 0xff];
+            if (bits < 0 || (c0 | c1 | c2 | c3) > 0xff) {
+                throw invalidCharacter(s - start);
+            }
+            dst[d] = (byte) (bits >>> 16);
+            dst[d + 1] = (byte) (bits >>> 8);
+            dst[d + 2] = (byte) bits;
+        }
+
+        int remaining = end - s;
+        if (remaining > 0) {
+            d = this.decodeTail(src.charAt(s), src.charAt(s + 1), remaining == 3 ? src.charAt(s + 2) : 'A', remaining,
+                    dst, d, s - start);
+        }
+        return d - dstOff;
+    }
+
+    /***
+     * Decode the remaining ASCII characters of the source.  The position of the source is moved to
+     * its limit and that of the destination past the bytes written.
+     *
+     * @return the number of bytes written
+     * @throws IllegalArgumentException if the source is not base64 in the alphabet of the codec
+     * @throws BufferOverflowException if the destination has too little space remaining
+     */
+    public int decode(ByteBuffer src, ByteBuffer dst) {
+        int start = src.position();
+        int end = src.limit();
+        int padding = 0;
+        while (padding < 2 && end - padding > start && src.get(end - padding - 1) == PAD) {
+            padding++;
+        }
+        int length = decodedLength(end - start, padding);
+        if (dst.remaining() < length) {
+            throw new BufferOverflowException();
+        }
+        if (src.hasArray() && dst.hasArray() && !dst.isReadOnly()) {
+            this.decode(src.array(), src.arrayOffset() + start, end - start, dst.array(), dst.arrayOffset() + dst.position());
+            src.position(end);
+            dst.position(dst.position() + length);
+            return length;
+        }
+        end -= padding;
+
+        for (int i = (end - start) / 4; i > 0; i--) {
+            int s = src.position();
+            int bits = decode0[src.get() & 0xff] | decode1[src.get() & 0xff] | decode2[src.get() & 0xff] | decode3[src.get() & 0xff];
+            if (bits < 0) {
+                throw invalidCharacter(s - start);
+            }
+            dst.put((byte) (bits >>> 16));
+            dst.put((byte) (bits >>> 8));
+            dst.put((byte) bits);
+        }
+
+        int remaining = end - src.position();
+        if (remaining > 0) {
+            int s = src.position();
+            int bits = decode0[src.get() & 0xff] | decode1[src.get() & 0xff] | (remaining == 3 ? decode2[src.get() & 0xff] : 0);
+            if (bits < 0) {
+                throw invalidCharacter(s - start);
+            }
+            dst.put((byte) (bits >>> 16));
+            if (remaining == 3) {
+                dst.put((byte) (bits >>> 8));
+            }
+        }
+        src.position(src.limit());
+        return length;
+    }
+
+    /***
+     * Decode the characters into a new array
+     *
+     * @throws IllegalArgumentException if the source is not base64 in the alphabet of the codec
+     */
+    public byte[] decode(CharSequence src) {
+        byte[] bytes = new byte[this.decodedLength(src, 0, src.length())];
+        this.decode(src, 0, src.length(), bytes, 0);
+        return bytes;
+    }
+
+    private static int tailBits(byte b0, int b1) {
+        // The last one or two bytes in the top 16 of 18 bits, i.e. three 6 bit characters
+        return (b0 & 0xff) << 10 | (b1 & 0xff) << 2;
+    }
+
+    private int decodeTail(char c0, char c1, char c2, int remaining, byte[] dst, int d, int position) {
+        int bits = decode0[c0 & 0xff] | decode1[c1 & 0xff] | (remaining == 3 ? decode2[c2 & 0xff] : 0);
+        if (bits < 0 || (c0 | c1 | c2) > 0xff) {
+            throw invalidCharacter(position);
+        }
+        return writeTail(bits, remaining, dst, d);
+    }
+
+    private static int writeTail(int bits, int remaining, byte[] dst, int d) {
+        dst[d++] = (byte) (bits >>> 16);
+        if (remaining == 3) {
+            dst[d++] = (byte) (bits >>> 8);
+        }
+        return d;
+    }
+
+    private static int paddingLength(byte[] src, int start, int end) {
+        int padding = 0;
+        while (padding < 2 && end - padding > start && src[end - padding - 1] == PAD) {
+            padding++;
+        }
+        return padding;
+    }
+
+    private static int paddingLength(char[] src, int start, int end) {
+        int padding = 0;
+        while (padding < 2 && end - padding > start && src[end - padding - 1] == PAD) {
+            padding++;
+        }
+        return padding;
+    }
+
+    private static int paddingLength(CharSequence src, int start, int end) {
+        int padding = 0;
+        while (padding < 2 && end - padding > start && src.charAt(end - padding - 1) == PAD) {
+            padding++;
+        }
+        return padding;
+    }
+
+    private static int decodedLength(int length, int padding) {
+        int unpadded = length - padding;
+        int remaining = unpadded % 4;
+        // Padding is only valid to complete the last four characters
+        if (remaining == 1 || (padding > 0 && length % 4 != 0)) {
+            throw new IllegalArgumentException("Invalid base64 length: " + length);
+        }
+        return unpadded / 4 * 3 + (remaining == 0 ? 0 : remaining - 1);
+    }
+
+    private static void checkRange(int arrayLength, int offset, int length) {
+        if (offset < 0 || length < 0 || offset > arrayLength - length) {
+            throw new IndexOutOfBoundsException("Offset " + offset + " and length " + length
+                    + " out of bounds for length " + arrayLength);
+        }
+    }
+
+    private static IllegalArgumentException invalidCharacter(int position) {
+        return new IllegalArgumentException("Invalid base64 character at or after index " + position);
+    }
+
+    /**
+     * The lookup tables of an alphabet, shared by the codecs with and without padding
+     */
+    private static class Tables {
+        private final byte[] alphabet = new byte[64];
+        // The two characters of each 12 bit value, in the high and low byte
+        private final short[] pairs = new short[4096];
+        // The value of each character of a quantum, shifted into place, or INVALID
+        private final int[] decode0 = new int[256];
+        private final int[] decode1 = new int[256];
+        private final int[] decode2 = new int[256];
+        private final int[] decode3 = new int[256];
+
+        Tables(String characters) {
+            for (int i = 0; i < 64; i++) {
+                alphabet[i] = (byte) characters.charAt(i);
+            }
+            for (int i = 0; i < 4096; i++) {
+                pairs[i] = (short) (alphabet[i >>> 6] << 8 | alphabet[i & 0x3f]);
+            }
+            Arrays.fill(decode0, INVALID);
+            Arrays.fill(decode1, INVALID);
+            Arrays.fill(decode2, INVALID);
+            Arrays.fill(decode3, INVALID);
+            for (int i = 0; i < 64; i++) {
+                decode0[alphabet[i]] = i << 18;
+                decode1[alphabet[i]] = i << 12;
+                decode2[alphabet[i]] = i << 6;
+                decode3[alphabet[i]] = i;
+            }
+        }
+    }
+}